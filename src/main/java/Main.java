@@ -4,7 +4,6 @@ import ppu.PPUImpl;
 
 import javax.swing.*;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 
 public class Main {
@@ -15,15 +14,16 @@ public class Main {
         }
 
         String romPath = args[0];
-        byte[] romData = loadRomFile(romPath);
-
-        Cartridge cartridge = Cartridge.fromNesFile(romData);
+        Cartridge cartridge = loadCartridge(romPath);
         WRAMImpl wram = new WRAMImpl();
         PPUImpl ppu = new PPUImpl(cartridge);
         APU apu = new APU(); // Create APU instance first
         CPUBus bus = new CPUBus(wram, cartridge, ppu, apu); // Pass APU to CPUBus
         apu.setBus(bus); // Give APU the bus reference (for DMC)
-        CPU cpu = new CPU(bus);
+        // -Dcpu.mode=instruction or =recompiled trades sub-instruction bus timing for speed
+        ExecutionMode cpuMode = ExecutionMode.valueOf(System.getProperty("cpu.mode", "cycle").toUpperCase());
+        CPU cpu = new CPU(bus, cpuMode);
+        cpu.setIdleLoopSkipping(Boolean.parseBoolean(System.getProperty("cpu.idleLoopSkipping", "true")));
         bus.setCpu(cpu); // Set the CPU instance in the bus
 
         if (apu != null) {
@@ -31,6 +31,10 @@ public class Main {
         }
 
         ppu.setCpu(cpu); // Set core.CPU instance in PPU for NMI
+        // -Dppu.scanlineRendering=false draws every dot on its own, for comparing against the one-pass scanline renderer
+        ppu.setScanlineRendering(Boolean.parseBoolean(System.getProperty("ppu.scanlineRendering", "true")));
+        // -Dppu.parallelRendering=true runs the PPU on a second core, replaying the CPU's register writes
+        ppu.setParallelRendering(Boolean.parseBoolean(System.getProperty("ppu.parallelRendering", "false")));
         ppu.setCpuBus(bus); // Ensure PPUImpl gets a reference to CPUBus
 
         cpu.fetchProgramCounter();
@@ -46,9 +50,9 @@ public class Main {
     }
 
 
-    private static byte[] loadRomFile(String filePath) {
+    private static Cartridge loadCartridge(String filePath) {
         try {
-            return Files.readAllBytes(Paths.get(filePath));
+            return Cartridge.fromNesFile(Paths.get(filePath));
         } catch (IOException e) {
             System.err.println("Error loading ROM file: " + e.getMessage());
             System.exit(1);
@@ -1,17 +1,30 @@
 package core;
 
 public enum AddressingMode {
-    IMM,
-    ZPG,
-    ZPG_X,
-    ZPG_Y,
-    ABS,
-    ABS_X,
-    ABS_Y,
-    IND,
-    IND_X, //(indirect,X)
-    IND_Y, //(indirect),Y
-    IMP,
-    ACC, // accumulator mode
-    REL
+    IMM(1),
+    ZPG(1),
+    ZPG_X(1),
+    ZPG_Y(1),
+    ABS(2),
+    ABS_X(2),
+    ABS_Y(2),
+    IND(2),
+    IND_X(1), //(indirect,X)
+    IND_Y(1), //(indirect),Y
+    IMP(0),
+    ACC(0), // accumulator mode
+    REL(1);
+
+    private final int operandBytes;
+
+    AddressingMode(int operandBytes) {
+        this.operandBytes = operandBytes;
+    }
+
+    /**
+     * Number of operand bytes following the opcode.
+     */
+    public int getOperandBytes() {
+        return operandBytes;
+    }
 }
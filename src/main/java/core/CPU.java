@@ -1,14 +1,21 @@
 package core;
 
 import core.apu.APU; // Updated import
+import core.dynarec.BlockState;
+import core.dynarec.CompiledBlock;
+import core.dynarec.Dynarec;
+import ppu.PPU;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 
 public class CPU {
 
     private int pc;
-    private final EightBitRegister sp;
-    private final EightBitRegister a, x, y;
+    private final EightBitRegister sp = new EightBitRegister(0xFD);
+    private final EightBitRegister a = new EightBitRegister(0x00);
+    private final EightBitRegister x = new EightBitRegister(0x00);
+    private final EightBitRegister y = new EightBitRegister(0x00);
     private boolean carry;
     private boolean zero;
     private boolean interruptDisable;
@@ -18,31 +25,94 @@ public class CPU {
 
     private final Bus bus;
     private final APU apu; // Added direct reference to APU
+    private final PPU ppu;
 
     private int remainingCycles;
 
     private boolean nmiPending = false;
     private boolean processingNMI = false;
     private int dmaStallCycles = 0; // Added for OAMDMA
-    private boolean irqLineAsserted = false; // CPU's internal IRQ line state
+    private boolean irqLineAsserted = false; // IRQ line driven by the cartridge
+    private boolean apuIrqAsserted = false;  // IRQ line driven by the APU frame counter and DMC
     private boolean processingIRQ = false; // Flag to indicate CPU is in IRQ sequence
 
+    private ExecutionMode executionMode;
+    // Cycles of an instruction already executed by runInstruction() that runCycle() still has to idle through.
+    private int instructionCyclesOwed = 0;
+
+    // Decoded instructions for $8000-$FFFF, indexed by (address - 0x8000). Only used in instruction mode and
+    // only when the bus is a CPUBus, where that range is cartridge ROM that can change only through a bank
+    // switch. Code running from RAM or PRG RAM ($0000-$7FFF) is writable and always decoded from the bus.
+    private static final int DECODED_BASE = 0x8000;
+    private final Opcode[] decodedOpcodes;
+    private final int[] decodedOperands;
+    // Operand bytes of the current cached instruction, handed out by fetch() instead of reading the bus.
+    private int prefetchedOperand;
+    private int prefetchedBytes;
+
+    // Block compiler for recompiled mode, created the first time it is needed.
+    private Dynarec dynarec;
+
+    // CPU cycles run so far, counted at instruction boundaries in instruction mode.
+    private long cycleCount;
+
+    // Idle loop detection. A short backward jump makes its target a candidate loop start; the loop is idle if its
+    // body only reads RAM, ROM or PPUSTATUS and one whole iteration brought the registers back to where they were.
+    // Such a loop can be fast-forwarded by whole iterations until the PPU or APU could change what it reads.
+    private static final int IDLE_LOOP_MAX_BYTES = 16;
+    private static final int IDLE_LOOP_MAX_INSTRUCTIONS = 8;
+    private static final int MAX_IDLE_LOOP_SKIP_CYCLES = 256;
+    private boolean idleLoopSkipping = true;
+    private int lastInstructionPc = -1;
+    private int idleLoopStart = -1;
+    private int idleLoopCycles;       // Cycles per iteration, 0 if the candidate isn't an idle loop
+    private boolean idleLoopReadsStatus;
+    private long idleLoopVisitCycle;  // cycleCount at the last visit of the loop start
+    private long idleLoopRegisters;
+    private int idleLoopStatusChanges;
+
+    // Batched execution through runCycles(). The caller clocks the PPU only between batches, so a batch ends
+    // early when something happens that the PPU has to see in time or that the caller must react to.
+    private boolean syncRequested;       // An NMI, IRQ or DMA stall came up during the batch
+    private boolean accessingPpu;        // The current instruction or block may touch the PPU; run it on its own
+    private int batchCycles;             // Cycles run so far in the batch, which the PPU hasn't caught up with
+
     public CPU(Bus bus) {
+        this(bus, ExecutionMode.CYCLE);
+    }
+
+    public CPU(Bus bus, ExecutionMode executionMode) {
         this.bus = bus;
-        if (bus instanceof CPUBus) { // Get APU from CPUBus
-            this.apu = ((CPUBus) bus).getAPU();
+        this.executionMode = Objects.requireNonNull(executionMode);
+        if (bus instanceof CPUBus cpuBus) { // Get APU from CPUBus
+            this.apu = cpuBus.getAPU();
+            this.ppu = cpuBus.getPPU();
         } else {
             // This case should ideally not happen if CPUBus is always used.
             // Or, throw an IllegalArgumentException if APU is essential.
             System.err.println("Warning: CPUBus not used, APU functionality might be missing.");
             this.apu = null; // Or a NullAPU object
+            this.ppu = null;
+        }
+
+        Cartridge cartridge = bus instanceof CPUBus cpuBus ? cpuBus.getCartridge() : null;
+        if (cartridge != null) {
+            decodedOpcodes = new Opcode[0x10000 - DECODED_BASE];
+            decodedOperands = new int[0x10000 - DECODED_BASE];
+            cartridge.addBankSwitchListener(this::invalidateDecodedInstructions);
+            cartridge.connectIrqLine(asserted -> {
+                if (asserted) {
+                    assertIRQLine();
+                } else {
+                    deassertIRQLine();
+                }
+            });
+        } else {
+            decodedOpcodes = null;
+            decodedOperands = null;
         }
 
         pc = 0x00;
-        sp = new EightBitRegister(0xFD);
-        a = new EightBitRegister(0x00);
-        x = new EightBitRegister(0x00);
-        y = new EightBitRegister(0x00);
         //TODO find the correct initial values for the status flags
         carry = false;
         zero = false;
@@ -58,8 +128,38 @@ public class CPU {
         return bus;
     }
 
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Switches the execution mode. The switch takes effect at the next instruction boundary: an instruction
+     * that is half way through in cycle mode is finished by the next {@link #runInstruction()}, and the idle
+     * cycles of an instruction already executed in instruction mode are still consumed by {@link #runCycle()}.
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = Objects.requireNonNull(executionMode);
+    }
+
+    public boolean isIdleLoopSkipping() {
+        return idleLoopSkipping;
+    }
+
+    /**
+     * Enables or disables fast-forwarding of idle polling loops. Skipping is exact: the CPU, PPU and APU end up
+     * in the same state with it on or off.
+     */
+    public void setIdleLoopSkipping(boolean idleLoopSkipping) {
+        this.idleLoopSkipping = idleLoopSkipping;
+        idleLoopStart = -1;
+    }
+
     public void stallForDMA(int cycles) { // Added for OAMDMA
         this.dmaStallCycles += cycles;
+        syncRequested = true;
+        if (dynarec != null) {
+            dynarec.requestExit();
+        }
     }
 
     public void loadState(EmulatorState emulatorState) {
@@ -84,8 +184,7 @@ public class CPU {
     }
 
     private static class InstructionState {
-        Instruction instruction;
-        AddressingMode addressingMode;
+        Opcode opcode;
 
         int effectiveAddress;
         int operand;
@@ -119,6 +218,13 @@ public class CPU {
     }
 
     public int fetch() {
+        if (prefetchedBytes > 0) {
+            int value = prefetchedOperand & 0xFF;
+            prefetchedOperand >>>= 8;
+            prefetchedBytes--;
+            pc++;
+            return value;
+        }
         return read(pc++) & 0xFF;
     }
 
@@ -132,12 +238,19 @@ public class CPU {
 
     public void triggerNMI() {
         nmiPending = true;
+        syncRequested = true;
+        if (dynarec != null) {
+            dynarec.requestExit();
+        }
     }
 
     /**
      * Asserts the CPU's IRQ line. The IRQ will only be processed if CPU interrupts are not disabled (I flag is clear).
      */
     public void assertIRQLine() {
+        if (!irqLineAsserted) {
+            syncRequested = true;
+        }
         this.irqLineAsserted = true;
     }
 
@@ -149,20 +262,24 @@ public class CPU {
     }
 
     public void runCycle() {
-        // Clock the APU at the beginning of each CPU cycle
-        if (apu != null) {
-            apu.clock();
-            // After APU clock, check for APU triggered IRQs and assert/de-assert CPU's IRQ line
-            boolean apuWantsIRQ = apu.isDmcIrqAsserted() || apu.isFrameIrqAsserted();
-            if (apuWantsIRQ) {
-                assertIRQLine();
-            } else {
-                // If the APU is the only source controlling the IRQ line via this mechanism,
-                // or if no other source is currently asserting IRQ.
-                deassertIRQLine(); // Sets this.irqLineAsserted = false;
-            }
+        if (instructionCyclesOwed > 0) {
+            // The instruction was already executed by runInstruction(); just let the time pass.
+            cycleCount++;
+            instructionCyclesOwed--;
+            return;
         }
 
+        if (executionMode != ExecutionMode.CYCLE) {
+            // runInstruction() counts the whole instruction; all but its first cycle are counted as they pass.
+            instructionCyclesOwed = runInstruction() - 1;
+            cycleCount -= instructionCyclesOwed;
+            return;
+        }
+
+        cycleCount++;
+        // Clock the APU at the beginning of each CPU cycle
+        clockAPU(1);
+
         if (dmaStallCycles > 0) {
             dmaStallCycles--;
             // PPU clocking should continue during DMA stall
@@ -171,310 +288,793 @@ public class CPU {
         }
 
         if (remainingCycles == 0) {
-            // Interrupt polling happens before fetching the next instruction.
-            if (nmiPending && !processingNMI) {
-                processingNMI = true; // Start NMI sequence
-                remainingCycles = 7;  // NMI takes 7 cycles
-                // NMI processing will begin in the next block
-            } else if (irqLineAsserted && !interruptDisable && !processingNMI && !processingIRQ) {
-                // Only process IRQ if I flag is clear, and not already in NMI or another IRQ sequence.
-                processingIRQ = true; // Start IRQ sequence
-                remainingCycles = 7;  // IRQ also takes 7 cycles
-                // IRQ processing will begin in the next block
+            pollInterrupts();
+        }
+
+        if (isOpCode()) { // No active interrupt sequence, proceed with instruction
+            int skipped = idleLoopSkipping ? skipIdleLoop(cycleCount, MAX_IDLE_LOOP_SKIP_CYCLES) : 0;
+            if (skipped > 0) {
+                // This cycle is the first of the skipped ones; the rest are idled through like an instruction's.
+                clockAPU(skipped - 1);
+                instructionCyclesOwed = skipped - 1;
+                return;
             }
+            decodeOpCode(fetch());
+        } else {
+            stepCurrentInstruction();
         }
+        remainingCycles--;
+    }
 
+    /**
+     * Runs the CPU up to the next instruction boundary in a single call and returns how many CPU cycles that
+     * took, so the caller can clock the PPU in bulk. The returned count includes interrupt sequences and DMA
+     * stalls; the APU is clocked for all of them before returning.
+     *
+     * <p>Bus accesses happen in the same order as in cycle mode, but all of them at the start of the
+     * returned window. If cycle mode left an instruction half way through, only its remaining cycles are run.</p>
+     */
+    public int runInstruction() {
+        return runInstruction(MAX_IDLE_LOOP_SKIP_CYCLES);
+    }
+
+    /**
+     * Runs the CPU for about {@code budget} cycles in one call and returns the cycles actually run, so the
+     * caller can clock the PPU in chunks instead of after every cycle or instruction. The APU is clocked as usual.
+     *
+     * <p>The batch ends early, so the caller can bring the PPU up to date:</p>
+     * <ul>
+     *     <li>after the cycle or instruction during which an NMI was triggered, the IRQ line went up or a DMA
+     *     stall was requested;</li>
+     *     <li>before an instruction that may access a PPU register, start an OAM DMA or write to the mapper.
+     *     Such an instruction is then run on its own by the next call: one cycle per call in cycle mode, the
+     *     whole instruction in the other modes. In recompiled mode every compiled block is run on its own,
+     *     since the addresses it accesses aren't known up front.</li>
+     * </ul>
+     * <p>With the PPU clocked for the returned cycles after every call, this gives the same results as stepping
+     * both in lockstep, as long as the budget doesn't reach past the PPU's next NMI
+     * ({@link PPU#dotsUntilNextEvent(boolean)}). In cycle mode exactly {@code budget} cycles are run unless the
+     * batch ends early; the other modes stop at the first instruction boundary at or after the budget.</p>
+     */
+    public int runCycles(int budget) {
+        syncRequested = false;
+        int cycles = 0;
+        while (cycles < budget && !syncRequested) {
+            batchCycles = cycles;
+            if (remainingCycles == 0) {
+                accessingPpu = instructionCyclesOwed == 0
+                        && (executionMode != ExecutionMode.CYCLE || dmaStallCycles == 0)
+                        && (mayAccessPpu() || mayRunCompiledBlock());
+                if (accessingPpu && cycles > 0) {
+                    break;
+                }
+            }
+            if (executionMode == ExecutionMode.CYCLE) {
+                runCycle();
+                cycles++;
+            } else {
+                cycles += runInstruction(budget - cycles);
+            }
+            if (accessingPpu) {
+                break;
+            }
+        }
+        batchCycles = 0;
+        return cycles;
+    }
+
+    /**
+     * Whether the instruction at pc may read or write a PPU register, start an OAM DMA or write to the mapper,
+     * going by the registers as they are now. Errs on the side of true.
+     */
+    private boolean mayAccessPpu() {
+        if (pc >= 0x2000 && pc < 0x6000) {
+            return true;
+        }
+        Opcode opcode = OPCODES[read(pc)];
+        if (opcode == null) {
+            return true;
+        }
+        int operand = 0;
+        for (int i = 0; i < opcode.addressingMode.getOperandBytes(); i++) {
+            operand |= read((pc + 1 + i) & 0xFFFF) << (8 * i);
+        }
+        int address;
+        switch (opcode.addressingMode) {
+            case ABS -> {
+                if (opcode.instruction == Instruction.JMP || opcode.instruction == Instruction.JSR) {
+                    return false;
+                }
+                address = operand;
+            }
+            case ABS_X -> address = (operand + x.getValue()) & 0xFFFF;
+            case ABS_Y -> address = (operand + y.getValue()) & 0xFFFF;
+            case IND -> address = operand;
+            case IND_X -> {
+                int pointer = (operand + x.getValue()) & 0xFF;
+                address = read(pointer) | read((pointer + 1) & 0xFF) << 8;
+            }
+            case IND_Y -> {
+                int base = read(operand) | read((operand + 1) & 0xFF) << 8;
+                address = (base + y.getValue()) & 0xFFFF;
+            }
+            default -> {
+                return false; // Zero page, stack and vectors only
+            }
+        }
+        if ((address >= 0x2000 && address < 0x4000) || address == 0x4014) {
+            return true;
+        }
+        boolean writes = switch (opcode.instruction) {
+            case STA, STX, STY, ASL, LSR, ROL, ROR, INC, DEC -> true;
+            default -> false;
+        };
+        return writes && address >= 0x4020 && (address < 0x6000 || address >= 0x8000);
+    }
+
+    private boolean mayRunCompiledBlock() {
+        return executionMode == ExecutionMode.RECOMPILED && dynarec != null && dynarec.mayHaveBlock(pc);
+    }
+
+    // Like runInstruction(), but never skips more than maxSkipCycles of an idle loop.
+    private int runInstruction(int maxSkipCycles) {
+        if (instructionCyclesOwed > 0) {
+            int cycles = instructionCyclesOwed;
+            instructionCyclesOwed = 0;
+            return countCycles(cycles);
+        }
+
+        int cycles = runDMAStall();
+        int instructionCycles = 0;
+        if (remainingCycles == 0) {
+            pollInterrupts();
+            if (isOpCode() && idleLoopSkipping) {
+                int skipped = skipIdleLoop(cycleCount + cycles, maxSkipCycles);
+                if (skipped > 0) {
+                    clockAPU(skipped);
+                    return countCycles(cycles + skipped);
+                }
+            }
+            if (isOpCode() && executionMode == ExecutionMode.RECOMPILED) {
+                int blockCycles = runCompiledBlock();
+                if (blockCycles > 0) {
+                    clockAPU(blockCycles);
+                    return countCycles(cycles + blockCycles + runDMAStall());
+                }
+            }
+            if (isOpCode()) {
+                if (!decodeFromCache()) {
+                    decodeOpCode(fetch());
+                }
+                remainingCycles--;
+                instructionCycles++;
+            }
+        }
+        while (remainingCycles > 0) {
+            stepCurrentInstruction();
+            remainingCycles--;
+            instructionCycles++;
+        }
+        prefetchedBytes = 0;
+        clockAPU(instructionCycles);
+        return countCycles(cycles + instructionCycles + runDMAStall());
+    }
+
+    private int countCycles(int cycles) {
+        cycleCount += cycles;
+        return cycles;
+    }
+
+    /**
+     * Called at an instruction boundary. If pc is the start of an idle loop whose last iteration left everything
+     * as it was, returns the cycles of as many further iterations as can run before the PPU or APU could change
+     * the outcome, but no more than {@code maxCycles}; otherwise 0. The caller accounts for the returned cycles
+     * instead of executing the iterations.
+     */
+    private int skipIdleLoop(long now, int maxCycles) {
+        int previousPc = lastInstructionPc;
+        lastInstructionPc = pc;
+        if (pc > previousPc || previousPc - pc >= IDLE_LOOP_MAX_BYTES || nmiPending) {
+            return 0;
+        }
+        long registers = packRegisters();
+        boolean sameIteration = pc == idleLoopStart && idleLoopCycles > 0
+                && now - idleLoopVisitCycle == idleLoopCycles
+                && registers == idleLoopRegisters;
+        if (pc != idleLoopStart) {
+            idleLoopStart = pc;
+            idleLoopCycles = analyzeIdleLoop(pc);
+        }
+        // Only asked for loops that poll PPUSTATUS, since it makes a PPU that fell behind catch up
+        int statusChanges = idleLoopReadsStatus && ppu != null ? ppu.getStatusChangeCount() : 0;
+        sameIteration &= !idleLoopReadsStatus || statusChanges == idleLoopStatusChanges;
+        idleLoopVisitCycle = now;
+        idleLoopRegisters = registers;
+        idleLoopStatusChanges = statusChanges;
+        if (!sameIteration) {
+            return 0;
+        }
+
+        int window = maxCycles;
+        if (ppu != null) {
+            // The PPU hasn't been clocked yet for the cycles run earlier in this batch or instruction
+            long ppuLag = batchCycles + (now - cycleCount);
+            window = (int) Math.max(Math.min(window, ppu.dotsUntilNextEvent(idleLoopReadsStatus) / 3 - ppuLag), 0);
+        }
+        if (apu != null) {
+            window = Math.min(window, apu.cyclesUntilNextEvent());
+        }
+        int skipped = (window / idleLoopCycles) * idleLoopCycles;
+        if (skipped > 0) {
+            // The next visit lands right after the skipped iterations and must still look like one iteration later.
+            idleLoopVisitCycle = now + skipped - idleLoopCycles;
+        }
+        return skipped;
+    }
+
+    private long packRegisters() {
+        return (long) a.getValue() << 32 | (long) x.getValue() << 24 | y.getValue() << 16 | sp.getValue() << 8
+                | flagsToBits(false);
+    }
+
+    /**
+     * Returns the cycles of one iteration of the loop starting at {@code start} if it is a straight run of
+     * instructions without side effects that ends in a branch or JMP back to {@code start}, 0 otherwise.
+     */
+    private int analyzeIdleLoop(int start) {
+        idleLoopReadsStatus = false;
+        if (start < 0x6000 && start + IDLE_LOOP_MAX_BYTES + 2 > 0x2000) {
+            return 0; // Reading the code itself could have side effects
+        }
+        int address = start;
+        int cycles = 0;
+        for (int i = 0; i < IDLE_LOOP_MAX_INSTRUCTIONS; i++) {
+            Opcode opcode = OPCODES[read(address)];
+            if (opcode == null) {
+                return 0;
+            }
+            int operand = 0;
+            for (int b = 0; b < opcode.addressingMode.getOperandBytes(); b++) {
+                operand |= read((address + 1 + b) & 0xFFFF) << (8 * b);
+            }
+            int next = (address + 1 + opcode.addressingMode.getOperandBytes()) & 0xFFFF;
+            switch (opcode.instruction) {
+                case BCC, BCS, BEQ, BMI, BNE, BPL, BVC, BVS -> {
+                    int target = (next + (byte) operand) & 0xFFFF;
+                    // The opcode table counts the page crossing cycle; a taken branch costs one less without it.
+                    int taken = (target & 0xFF00) != (next & 0xFF00) ? opcode.cycles : opcode.cycles - 1;
+                    return target == start ? cycles + taken : 0;
+                }
+                case JMP -> {
+                    return opcode.addressingMode == AddressingMode.ABS && operand == start ? cycles + opcode.cycles : 0;
+                }
+                case LDA, LDX, LDY, AND, ORA, EOR, ADC, SBC, CMP, CPX, CPY, BIT -> {
+                    switch (opcode.addressingMode) {
+                        case IMM, ZPG -> {
+                        }
+                        case ABS -> {
+                            if (operand >= 0x2000 && operand < 0x4000 && (operand & 0x07) == 0x02) {
+                                idleLoopReadsStatus = true;
+                            } else if (operand >= 0x2000 && operand < 0x6000) {
+                                return 0; // Other registers have read side effects
+                            }
+                        }
+                        default -> {
+                            return 0;
+                        }
+                    }
+                }
+                case ASL, LSR, ROL, ROR -> {
+                    if (opcode.addressingMode != AddressingMode.ACC) {
+                        return 0;
+                    }
+                }
+                case TAX, TAY, TXA, TYA, TSX, TXS, INX, INY, DEX, DEY, CLC, SEC, CLD, SED, CLV, NOP -> {
+                }
+                default -> {
+                    return 0;
+                }
+            }
+            cycles += opcode.cycles;
+            address = next;
+        }
+        return 0;
+    }
+
+    /**
+     * Runs the compiled block starting at pc, if there is one, and returns its cycles; 0 if pc has to be interpreted.
+     */
+    private int runCompiledBlock() {
+        if (dynarec == null) {
+            if (!(bus instanceof CPUBus cpuBus) || cpuBus.getCartridge() == null || cpuBus.getWram() == null) {
+                return 0;
+            }
+            dynarec = new Dynarec(cpuBus.getCartridge(), bus);
+        }
+        CompiledBlock block = dynarec.lookup(pc);
+        if (block == null) {
+            return 0;
+        }
+        BlockState state = dynarec.getState();
+        state.ram = ((CPUBus) bus).getWram().getMemory(); // Loading a save state may swap in a new array
+        state.a = a.getValue();
+        state.x = x.getValue();
+        state.y = y.getValue();
+        state.sp = sp.getValue();
+        state.pc = pc;
+        state.carry = carry;
+        state.zero = zero;
+        state.interruptDisable = interruptDisable;
+        state.decimal = decimal;
+        state.overflow = overflow;
+        state.negative = negative;
+        state.exitRequested = false;
+
+        int cycles = block.run(state);
+
+        a.setValue(state.a);
+        x.setValue(state.x);
+        y.setValue(state.y);
+        sp.setValue(state.sp);
+        pc = state.pc;
+        carry = state.carry;
+        zero = state.zero;
+        interruptDisable = state.interruptDisable;
+        decimal = state.decimal;
+        overflow = state.overflow;
+        negative = state.negative;
+        return cycles;
+    }
+
+    private boolean isOpCode() {
+        return remainingCycles == 0;
+    }
+
+    /**
+     * Decodes the instruction at pc from the decoded-instruction cache, filling the cache entry first if needed.
+     * Consumes the opcode byte and arms fetch() with the operand bytes, so the instruction runs without touching
+     * the bus for its own bytes. Returns false if the instruction can't be cached; the caller decodes it normally.
+     */
+    private boolean decodeFromCache() {
+        if (decodedOpcodes == null || pc < DECODED_BASE) {
+            return false;
+        }
+        int index = pc - DECODED_BASE;
+        Opcode opcode = decodedOpcodes[index];
+        if (opcode == null) {
+            opcode = OPCODES[read(pc)];
+            // Unofficial opcodes and instructions running off the end of the address space are not cached.
+            if (opcode == null || pc + opcode.addressingMode.getOperandBytes() > 0xFFFF) {
+                return false;
+            }
+            int operand = 0;
+            for (int i = 0; i < opcode.addressingMode.getOperandBytes(); i++) {
+                operand |= read(pc + 1 + i) << (8 * i);
+            }
+            decodedOperands[index] = operand;
+            decodedOpcodes[index] = opcode;
+        }
+        pc++;
+        prefetchedOperand = decodedOperands[index];
+        prefetchedBytes = opcode.addressingMode.getOperandBytes();
+        remainingCycles = opcode.cycles;
+        currInstruction.opcode = opcode;
+        return true;
+    }
+
+    private void invalidateDecodedInstructions(int cpuAddress, int length) {
+        idleLoopStart = -1;
+        // An instruction that starts up to two bytes before the window has operand bytes inside it.
+        int from = Math.max(cpuAddress - 2, DECODED_BASE) - DECODED_BASE;
+        int to = Math.min(cpuAddress + length, 0x10000) - DECODED_BASE;
+        if (from < to) {
+            Arrays.fill(decodedOpcodes, from, to, null);
+        }
+    }
+
+    // Interrupt polling happens before fetching the next instruction.
+    private void pollInterrupts() {
+        if (nmiPending && !processingNMI) {
+            idleLoopStart = -1;
+            processingNMI = true; // Start NMI sequence
+            remainingCycles = 7;  // NMI takes 7 cycles
+        } else if ((irqLineAsserted || apuIrqAsserted) && !interruptDisable && !processingNMI && !processingIRQ) {
+            // Only process IRQ if I flag is clear, and not already in NMI or another IRQ sequence.
+            idleLoopStart = -1;
+            processingIRQ = true; // Start IRQ sequence
+            remainingCycles = 7;  // IRQ also takes 7 cycles
+        }
+    }
+
+    private void stepCurrentInstruction() {
         if (processingNMI) {
             handleNMI();
         } else if (processingIRQ) {
             handleIRQ();
-        } else if (isOpCode()) { // No active interrupt sequence, proceed with instruction
-            decodeOpCode(fetch());
         } else {
-            executeInstruction();
+            currInstruction.opcode.handler.step(this);
         }
-        remainingCycles--;
     }
 
-    private boolean isOpCode() {
-        return remainingCycles == 0;
+    private void clockAPU(int cycles) {
+        if (apu == null) {
+            return;
+        }
+        for (int i = 0; i < cycles; i++) {
+            apu.clock();
+        }
+        // After APU clock, check for APU triggered IRQs. The APU drives its own input of the wired-OR IRQ line,
+        // so releasing it leaves an IRQ held by the cartridge alone.
+        boolean apuWantsIRQ = apu.isDmcIrqAsserted() || apu.isFrameIrqAsserted();
+        if (apuWantsIRQ && !apuIrqAsserted) {
+            syncRequested = true;
+        }
+        apuIrqAsserted = apuWantsIRQ;
+    }
+
+    // Runs pending DMA stall cycles in one go. Clocking the APU may start a DMC fetch, which stalls further.
+    private int runDMAStall() {
+        int cycles = 0;
+        while (dmaStallCycles > 0) {
+            int stall = dmaStallCycles;
+            dmaStallCycles = 0;
+            clockAPU(stall);
+            cycles += stall;
+        }
+        return cycles;
     }
 
     private void decodeOpCode(int opCode) {
-        switch (opCode) {
-            case 0xA1 -> loadInstructionInitialState(6, Instruction.LDA, AddressingMode.IND_X);
-            case 0xA5 -> loadInstructionInitialState(3, Instruction.LDA, AddressingMode.ZPG);
-            case 0xA9 -> loadInstructionInitialState(2, Instruction.LDA, AddressingMode.IMM);
-            case 0xAD -> loadInstructionInitialState(4, Instruction.LDA, AddressingMode.ABS);
-            case 0xB1 -> loadInstructionInitialState(6, Instruction.LDA, AddressingMode.IND_Y);
-            case 0xB5 -> loadInstructionInitialState(4, Instruction.LDA, AddressingMode.ZPG_X);
-            case 0xB9 -> loadInstructionInitialState(5, Instruction.LDA, AddressingMode.ABS_Y);
-            case 0xBD -> loadInstructionInitialState(5, Instruction.LDA, AddressingMode.ABS_X);
-            // LDX opcodes:
-            case 0xA2 -> loadInstructionInitialState(2, Instruction.LDX, AddressingMode.IMM);
-            case 0xA6 -> loadInstructionInitialState(3, Instruction.LDX, AddressingMode.ZPG);
-            case 0xB6 -> loadInstructionInitialState(4, Instruction.LDX, AddressingMode.ZPG_Y);
-            case 0xAE -> loadInstructionInitialState(4, Instruction.LDX, AddressingMode.ABS);
-            case 0xBE -> loadInstructionInitialState(5, Instruction.LDX, AddressingMode.ABS_Y);
-            // LDY opcodes:
-            case 0xA0 -> loadInstructionInitialState(2, Instruction.LDY, AddressingMode.IMM);
-            case 0xA4 -> loadInstructionInitialState(3, Instruction.LDY, AddressingMode.ZPG);
-            case 0xAC -> loadInstructionInitialState(4, Instruction.LDY, AddressingMode.ABS);
-            case 0xB4 -> loadInstructionInitialState(4, Instruction.LDY, AddressingMode.ZPG_X);
-            case 0xBC -> loadInstructionInitialState(5, Instruction.LDY, AddressingMode.ABS_X);
-            // STA opcodes:
-            case 0x85 -> loadInstructionInitialState(3, Instruction.STA, AddressingMode.ZPG);
-            case 0x95 -> loadInstructionInitialState(4, Instruction.STA, AddressingMode.ZPG_X);
-            case 0x8D -> loadInstructionInitialState(4, Instruction.STA, AddressingMode.ABS);
-            case 0x9D -> loadInstructionInitialState(5, Instruction.STA, AddressingMode.ABS_X);
-            case 0x99 -> loadInstructionInitialState(5, Instruction.STA, AddressingMode.ABS_Y);
-            case 0x81 -> loadInstructionInitialState(6, Instruction.STA, AddressingMode.IND_X);
-            case 0x91 -> loadInstructionInitialState(6, Instruction.STA, AddressingMode.IND_Y);
-            // STX opcodes:
-            case 0x86 -> loadInstructionInitialState(3, Instruction.STX, AddressingMode.ZPG);
-            case 0x96 -> loadInstructionInitialState(4, Instruction.STX, AddressingMode.ZPG_Y);
-            case 0x8E -> loadInstructionInitialState(4, Instruction.STX, AddressingMode.ABS);
-            // STY opcodes:
-            case 0x84 -> loadInstructionInitialState(3, Instruction.STY, AddressingMode.ZPG);
-            case 0x94 -> loadInstructionInitialState(4, Instruction.STY, AddressingMode.ZPG_X);
-            case 0x8C -> loadInstructionInitialState(4, Instruction.STY, AddressingMode.ABS);
-            // TAX opcode
-            case 0xAA -> loadInstructionInitialState(2, Instruction.TAX, AddressingMode.IMP);
-            // TAY opcode:
-            case 0xA8 -> loadInstructionInitialState(2, Instruction.TAY, AddressingMode.IMP);
-            // TSX opcode
-            case 0xBA -> loadInstructionInitialState(2, Instruction.TSX, AddressingMode.IMP);
-            // TXA opcode:
-            case 0x8A -> loadInstructionInitialState(2, Instruction.TXA, AddressingMode.IMP);
-            // TXS opcode:
-            case 0x9A -> loadInstructionInitialState(2, Instruction.TXS, AddressingMode.IMP);
-            // TYA opcode:
-            case 0x98 -> loadInstructionInitialState(2, Instruction.TYA, AddressingMode.IMP);
-            // PHA opcode:
-            case 0x48 -> loadInstructionInitialState(3, Instruction.PHA, AddressingMode.IMP);
-            // PHP opcode:
-            case 0x08 -> loadInstructionInitialState(3, Instruction.PHP, AddressingMode.IMP);
-            // PLA opcode:
-            case 0x68 -> loadInstructionInitialState(4, Instruction.PLA, AddressingMode.IMP);
-            //PLP opcode
-            case 0x28 -> loadInstructionInitialState(4, Instruction.PLP, AddressingMode.IMP);
-            //DEC opcodes:
-            case 0xC6 -> loadInstructionInitialState(5, Instruction.DEC, AddressingMode.ZPG);
-            case 0xD6 -> loadInstructionInitialState(6, Instruction.DEC, AddressingMode.ZPG_X);
-            case 0xCE -> loadInstructionInitialState(6, Instruction.DEC, AddressingMode.ABS);
-            case 0xDE -> loadInstructionInitialState(7, Instruction.DEC, AddressingMode.ABS_X);
-            //DEX opcode:
-            case 0xCA -> loadInstructionInitialState(2, Instruction.DEX, AddressingMode.IMP);
-            //DEY opcode:
-            case 0x88 -> loadInstructionInitialState(2, Instruction.DEY, AddressingMode.IMP);
-            //INC opcode:
-            case 0xE6 -> loadInstructionInitialState(5, Instruction.INC, AddressingMode.ZPG);
-            case 0xF6 -> loadInstructionInitialState(6, Instruction.INC, AddressingMode.ZPG_X);
-            case 0xEE -> loadInstructionInitialState(6, Instruction.INC, AddressingMode.ABS);
-            case 0xFE -> loadInstructionInitialState(7, Instruction.INC, AddressingMode.ABS_X);
-            //INX opcode:
-            case 0xE8 -> loadInstructionInitialState(2, Instruction.INX, AddressingMode.IMP);
-            //INY opcode:
-            case 0xC8 -> loadInstructionInitialState(2, Instruction.INY, AddressingMode.IMP);
-            // ORA opcodes:
-            case 0x09 -> loadInstructionInitialState(2, Instruction.ORA, AddressingMode.IMM);
-            case 0x05 -> loadInstructionInitialState(3, Instruction.ORA, AddressingMode.ZPG);
-            case 0x15 -> loadInstructionInitialState(4, Instruction.ORA, AddressingMode.ZPG_X);
-            case 0x0D -> loadInstructionInitialState(4, Instruction.ORA, AddressingMode.ABS);
-            case 0x1D -> loadInstructionInitialState(5, Instruction.ORA, AddressingMode.ABS_X);
-            case 0x19 -> loadInstructionInitialState(5, Instruction.ORA, AddressingMode.ABS_Y);
-            case 0x01 -> loadInstructionInitialState(6, Instruction.ORA, AddressingMode.IND_X);
-            case 0x11 -> loadInstructionInitialState(6, Instruction.ORA, AddressingMode.IND_Y);
-            // EOR opcodes:
-            case 0x49 -> loadInstructionInitialState(2, Instruction.EOR, AddressingMode.IMM);
-            case 0x45 -> loadInstructionInitialState(3, Instruction.EOR, AddressingMode.ZPG);
-            case 0x55 -> loadInstructionInitialState(4, Instruction.EOR, AddressingMode.ZPG_X);
-            case 0x4D -> loadInstructionInitialState(4, Instruction.EOR, AddressingMode.ABS);
-            case 0x5D -> loadInstructionInitialState(5, Instruction.EOR, AddressingMode.ABS_X);
-            case 0x59 -> loadInstructionInitialState(5, Instruction.EOR, AddressingMode.ABS_Y);
-            case 0x41 -> loadInstructionInitialState(6, Instruction.EOR, AddressingMode.IND_X);
-            case 0x51 -> loadInstructionInitialState(6, Instruction.EOR, AddressingMode.IND_Y);
-            // AND opcodes:
-            case 0x29 -> loadInstructionInitialState(2, Instruction.AND, AddressingMode.IMM);
-            case 0x25 -> loadInstructionInitialState(3, Instruction.AND, AddressingMode.ZPG);
-            case 0x35 -> loadInstructionInitialState(4, Instruction.AND, AddressingMode.ZPG_X);
-            case 0x2D -> loadInstructionInitialState(4, Instruction.AND, AddressingMode.ABS);
-            case 0x3D -> loadInstructionInitialState(5, Instruction.AND, AddressingMode.ABS_X);
-            case 0x39 -> loadInstructionInitialState(5, Instruction.AND, AddressingMode.ABS_Y);
-            case 0x21 -> loadInstructionInitialState(6, Instruction.AND, AddressingMode.IND_X);
-            case 0x31 -> loadInstructionInitialState(6, Instruction.AND, AddressingMode.IND_Y);
-            // ASL opcodes:
-            case 0x0A -> loadInstructionInitialState(2, Instruction.ASL, AddressingMode.ACC);
-            case 0x06 -> loadInstructionInitialState(5, Instruction.ASL, AddressingMode.ZPG);
-            case 0x16 -> loadInstructionInitialState(6, Instruction.ASL, AddressingMode.ZPG_X);
-            case 0x0E -> loadInstructionInitialState(6, Instruction.ASL, AddressingMode.ABS);
-            case 0x1E -> loadInstructionInitialState(7, Instruction.ASL, AddressingMode.ABS_X);
-            // LSR opcodes:
-            case 0x4A -> loadInstructionInitialState(2, Instruction.LSR, AddressingMode.ACC);
-            case 0x46 -> loadInstructionInitialState(5, Instruction.LSR, AddressingMode.ZPG);
-            case 0x56 -> loadInstructionInitialState(6, Instruction.LSR, AddressingMode.ZPG_X);
-            case 0x4E -> loadInstructionInitialState(6, Instruction.LSR, AddressingMode.ABS);
-            case 0x5E -> loadInstructionInitialState(7, Instruction.LSR, AddressingMode.ABS_X);
-            // ROL opcodes:
-            case 0x2A -> loadInstructionInitialState(2, Instruction.ROL, AddressingMode.ACC);
-            case 0x26 -> loadInstructionInitialState(5, Instruction.ROL, AddressingMode.ZPG);
-            case 0x36 -> loadInstructionInitialState(6, Instruction.ROL, AddressingMode.ZPG_X);
-            case 0x2E -> loadInstructionInitialState(6, Instruction.ROL, AddressingMode.ABS);
-            case 0x3E -> loadInstructionInitialState(7, Instruction.ROL, AddressingMode.ABS_X);
-            // ROR opcodes:
-            case 0x6A -> loadInstructionInitialState(2, Instruction.ROR, AddressingMode.ACC);
-            case 0x66 -> loadInstructionInitialState(5, Instruction.ROR, AddressingMode.ZPG);
-            case 0x76 -> loadInstructionInitialState(6, Instruction.ROR, AddressingMode.ZPG_X);
-            case 0x6E -> loadInstructionInitialState(6, Instruction.ROR, AddressingMode.ABS);
-            case 0x7E -> loadInstructionInitialState(7, Instruction.ROR, AddressingMode.ABS_X);
-            // Clear Flag instructions:
-            case 0x18 -> loadInstructionInitialState(2, Instruction.CLC, AddressingMode.IMP);
-            case 0xD8 -> loadInstructionInitialState(2, Instruction.CLD, AddressingMode.IMP);
-            case 0x58 -> loadInstructionInitialState(2, Instruction.CLI, AddressingMode.IMP);
-            case 0xB8 -> loadInstructionInitialState(2, Instruction.CLV, AddressingMode.IMP);
-            // Set Flag instructions:
-            case 0x38 -> loadInstructionInitialState(2, Instruction.SEC, AddressingMode.IMP);
-            case 0xF8 -> loadInstructionInitialState(2, Instruction.SED, AddressingMode.IMP);
-            case 0x78 -> loadInstructionInitialState(2, Instruction.SEI, AddressingMode.IMP);
-            // CMP opcodes:
-            case 0xC9 -> loadInstructionInitialState(2, Instruction.CMP, AddressingMode.IMM);
-            case 0xC5 -> loadInstructionInitialState(3, Instruction.CMP, AddressingMode.ZPG);
-            case 0xD5 -> loadInstructionInitialState(4, Instruction.CMP, AddressingMode.ZPG_X);
-            case 0xCD -> loadInstructionInitialState(4, Instruction.CMP, AddressingMode.ABS);
-            case 0xDD -> loadInstructionInitialState(5, Instruction.CMP, AddressingMode.ABS_X);
-            case 0xD9 -> loadInstructionInitialState(5, Instruction.CMP, AddressingMode.ABS_Y);
-            case 0xC1 -> loadInstructionInitialState(6, Instruction.CMP, AddressingMode.IND_X);
-            case 0xD1 -> loadInstructionInitialState(6, Instruction.CMP, AddressingMode.IND_Y);
-            // CPX opcodes:
-            case 0xE0 -> loadInstructionInitialState(2, Instruction.CPX, AddressingMode.IMM);
-            case 0xE4 -> loadInstructionInitialState(3, Instruction.CPX, AddressingMode.ZPG);
-            case 0xEC -> loadInstructionInitialState(4, Instruction.CPX, AddressingMode.ABS);
-            // CPY opcodes:
-            case 0xC0 -> loadInstructionInitialState(2, Instruction.CPY, AddressingMode.IMM);
-            case 0xC4 -> loadInstructionInitialState(3, Instruction.CPY, AddressingMode.ZPG);
-            case 0xCC -> loadInstructionInitialState(4, Instruction.CPY, AddressingMode.ABS);
-            // Branch instructions opcode:
-            case 0x90 -> loadInstructionInitialState(4, Instruction.BCC, AddressingMode.REL);
-            case 0xB0 -> loadInstructionInitialState(4, Instruction.BCS, AddressingMode.REL);
-            case 0xF0 -> loadInstructionInitialState(4, Instruction.BEQ, AddressingMode.REL);
-            case 0x30 -> loadInstructionInitialState(4, Instruction.BMI, AddressingMode.REL);
-            case 0xD0 -> loadInstructionInitialState(4, Instruction.BNE, AddressingMode.REL);
-            case 0x10 -> loadInstructionInitialState(4, Instruction.BPL, AddressingMode.REL);
-            case 0x50 -> loadInstructionInitialState(4, Instruction.BVC, AddressingMode.REL);
-            case 0x70 -> loadInstructionInitialState(4, Instruction.BVS, AddressingMode.REL);
-            //JMP opcodes
-            case 0x4C -> loadInstructionInitialState(3, Instruction.JMP, AddressingMode.ABS);
-            case 0x6C -> loadInstructionInitialState(5, Instruction.JMP, AddressingMode.IND);
-            //JSR opcode
-            case 0x20 -> loadInstructionInitialState(6, Instruction.JSR, AddressingMode.ABS);
-            //RTS opcode:
-            case 0x60 -> loadInstructionInitialState(6, Instruction.RTS, AddressingMode.IMP);
-            //BRK opcode:
-            case 0x00 -> loadInstructionInitialState(7,Instruction.BRK, AddressingMode.IMP);
-            //RTI opcode:
-            case 0x40 -> loadInstructionInitialState(6, Instruction.RTI, AddressingMode.IMP);
-            //NOP opcode:
-            case 0xEA -> loadInstructionInitialState(2, Instruction.NOP, AddressingMode.IMP);
-            //ADC opcodes
-            case 0x69 -> loadInstructionInitialState(2, Instruction.ADC, AddressingMode.IMM);
-            case 0x65 -> loadInstructionInitialState(3, Instruction.ADC, AddressingMode.ZPG);
-            case 0x75 -> loadInstructionInitialState(4, Instruction.ADC, AddressingMode.ZPG_X);
-            case 0x6D -> loadInstructionInitialState(4, Instruction.ADC, AddressingMode.ABS);
-            case 0x7D -> loadInstructionInitialState(5, Instruction.ADC, AddressingMode.ABS_X);
-            case 0x79 -> loadInstructionInitialState(5, Instruction.ADC, AddressingMode.ABS_Y);
-            case 0x61 -> loadInstructionInitialState(6, Instruction.ADC, AddressingMode.IND_X);
-            case 0x71 -> loadInstructionInitialState(6, Instruction.ADC, AddressingMode.IND_Y);
-            // SBC opcodes
-            case 0xE9 -> loadInstructionInitialState(2, Instruction.SBC, AddressingMode.IMM);
-            case 0xE5 -> loadInstructionInitialState(3, Instruction.SBC, AddressingMode.ZPG);
-            case 0xF5 -> loadInstructionInitialState(4, Instruction.SBC, AddressingMode.ZPG_X);
-            case 0xED -> loadInstructionInitialState(4, Instruction.SBC, AddressingMode.ABS);
-            case 0xFD -> loadInstructionInitialState(5, Instruction.SBC, AddressingMode.ABS_X);
-            case 0xF9 -> loadInstructionInitialState(5, Instruction.SBC, AddressingMode.ABS_Y);
-            case 0xE1 -> loadInstructionInitialState(6, Instruction.SBC, AddressingMode.IND_X);
-            case 0xF1 -> loadInstructionInitialState(6, Instruction.SBC, AddressingMode.IND_Y);
-            // BIT opcodes
-            case 0x24 -> loadInstructionInitialState(3, Instruction.BIT, AddressingMode.ZPG);
-            case 0x2C -> loadInstructionInitialState(4, Instruction.BIT, AddressingMode.ABS);
-            default -> throw new RuntimeException(String.format("Invalid opcode: 0x%x at address 0x%x", opCode, --pc));
-        }
-    }
-
-    private void executeInstruction() {
-        switch (currInstruction.instruction) {
-            case LDA -> LDA();
-            case LDX -> LDX();
-            case LDY -> LDY();
-            case STA -> STA();
-            case STX -> STX();
-            case STY -> STY();
-            case TAX -> TAX();
-            case TAY -> TAY();
-            case TSX -> TSX();
-            case TXA -> TXA();
-            case TXS -> TXS();
-            case TYA -> TYA();
-            case PHA -> PHA();
-            case PHP -> PHP();
-            case PLA -> PLA();
-            case PLP -> PLP();
-            case DEC -> DEC();
-            case DEX -> DEX();
-            case DEY -> DEY();
-            case INC -> INC();
-            case INX -> INX();
-            case INY -> INY();
-            case ORA -> ORA();
-            case EOR -> EOR();
-            case AND -> AND();
-            case ASL -> ASL();
-            case LSR -> LSR();
-            case ROL -> ROL();
-            case ROR -> ROR();
-            case CLC -> CLC();
-            case CLD -> CLD();
-            case CLI -> CLI();
-            case CLV -> CLV();
-            case SEC -> SEC();
-            case SED -> SED();
-            case SEI -> SEI();
-            case CMP -> CMP();
-            case CPX -> CPX();
-            case CPY -> CPY();
-            case BCC -> BCC();
-            case BCS -> BCS();
-            case BEQ -> BEQ();
-            case BMI -> BMI();
-            case BNE -> BNE();
-            case BPL -> BPL();
-            case BVC -> BVC();
-            case BVS -> BVS();
-            case JMP -> JMP();
-            case RTS -> RTS();
-            case JSR -> JSR();
-            case BRK -> BRK();
-            case RTI -> RTI();
-            case NOP -> NOP();
-            case ADC -> ADC();
-            case SBC -> SBC();
-            case BIT -> BIT();
-            default -> throw new RuntimeException("Unimplemented instruction: " + currInstruction.instruction);
-        }
-    }
-
-    private void loadInstructionInitialState(
-            int cycles, Instruction instruction, AddressingMode addressingMode
-    ) {
-        this.remainingCycles = cycles;
-        this.currInstruction.instruction = instruction;
-        this.currInstruction.addressingMode = addressingMode;
-    }
-
-    private void handlePageCrossingInLoadInstruction(int address, EightBitRegister register, Function<Integer, Integer> operation) {
+        Opcode opcode = OPCODES[opCode];
+        if (opcode == null) {
+            throw new RuntimeException(String.format("Invalid opcode: 0x%x at address 0x%x", opCode, --pc));
+        }
+        this.remainingCycles = opcode.cycles;
+        this.currInstruction.opcode = opcode;
+    }
+
+    /**
+     * Runs one cycle of the instruction currently being executed. Implementations switch on
+     * {@code remainingCycles} to pick the micro-step, exactly like the instruction methods did
+     * when they were reached through the instruction/addressing-mode switches.
+     */
+    @FunctionalInterface
+    private interface CycleHandler {
+        void step(CPU cpu);
+    }
+
+    /**
+     * Everything the CPU needs to know about an opcode once it has been fetched: its base cycle count
+     * and the handler that runs the remaining cycles. Instruction and addressing mode are kept for
+     * debugging and tooling only; dispatch never looks at them.
+     */
+    private static final class Opcode {
+        final int code;
+        final int cycles;
+        final Instruction instruction;
+        final AddressingMode addressingMode;
+        final CycleHandler handler;
+
+        Opcode(int code, int cycles, Instruction instruction, AddressingMode addressingMode, CycleHandler handler) {
+            this.code = code;
+            this.cycles = cycles;
+            this.instruction = instruction;
+            this.addressingMode = addressingMode;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Public view of an opcode table entry. {@code cycles} includes the optional cycles of page-crossing reads
+     * and taken branches.
+     */
+    public record OpcodeInfo(Instruction instruction, AddressingMode addressingMode, int cycles) {
+    }
+
+    /**
+     * Describes an official opcode, or returns null for an unofficial one.
+     */
+    public static OpcodeInfo describeOpcode(int opCode) {
+        Opcode opcode = OPCODES[opCode & 0xFF];
+        return opcode != null ? new OpcodeInfo(opcode.instruction, opcode.addressingMode, opcode.cycles) : null;
+    }
+
+    // Indexed by opcode byte. Unofficial opcodes are left null and rejected in decodeOpCode.
+    private static final Opcode[] OPCODES = new Opcode[256];
+
+    private static void define(int code, int cycles, Instruction instruction, AddressingMode addressingMode, CycleHandler handler) {
+        if (OPCODES[code] != null) {
+            throw new IllegalStateException(String.format("Opcode 0x%02X defined twice", code));
+        }
+        OPCODES[code] = new Opcode(code, cycles, instruction, addressingMode, handler);
+    }
+
+    static {
+        define(0xA1, 6, Instruction.LDA, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.loadOperation));
+        define(0xA5, 3, Instruction.LDA, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.loadOperation));
+        define(0xA9, 2, Instruction.LDA, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.loadOperation));
+        define(0xAD, 4, Instruction.LDA, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.loadOperation));
+        define(0xB1, 6, Instruction.LDA, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.loadOperation));
+        define(0xB5, 4, Instruction.LDA, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.loadOperation));
+        define(0xB9, 5, Instruction.LDA, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.loadOperation));
+        define(0xBD, 5, Instruction.LDA, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.loadOperation));
+        // LDX opcodes:
+        define(0xA2, 2, Instruction.LDX, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.x, cpu.loadOperation));
+        define(0xA6, 3, Instruction.LDX, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.x, cpu.loadOperation));
+        define(0xB6, 4, Instruction.LDX, AddressingMode.ZPG_Y, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.x, cpu.y, cpu.loadOperation));
+        define(0xAE, 4, Instruction.LDX, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.x, cpu.loadOperation));
+        define(0xBE, 5, Instruction.LDX, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.x, cpu.y, cpu.loadOperation));
+        // LDY opcodes:
+        define(0xA0, 2, Instruction.LDY, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.y, cpu.loadOperation));
+        define(0xA4, 3, Instruction.LDY, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.y, cpu.loadOperation));
+        define(0xAC, 4, Instruction.LDY, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.y, cpu.loadOperation));
+        define(0xB4, 4, Instruction.LDY, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.y, cpu.x, cpu.loadOperation));
+        define(0xBC, 5, Instruction.LDY, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.y, cpu.x, cpu.loadOperation));
+        // STA opcodes:
+        define(0x85, 3, Instruction.STA, AddressingMode.ZPG, cpu -> cpu.handleStore_ZeroPage(cpu.a));
+        define(0x95, 4, Instruction.STA, AddressingMode.ZPG_X, cpu -> cpu.handleStore_ZeroPageIndexed(cpu.a, cpu.x));
+        define(0x8D, 4, Instruction.STA, AddressingMode.ABS, cpu -> cpu.handleStore_Absolute(cpu.a));
+        define(0x9D, 5, Instruction.STA, AddressingMode.ABS_X, cpu -> cpu.handleSTAAbsoluteIndexed(cpu.x));
+        define(0x99, 5, Instruction.STA, AddressingMode.ABS_Y, cpu -> cpu.handleSTAAbsoluteIndexed(cpu.y));
+        define(0x81, 6, Instruction.STA, AddressingMode.IND_X, CPU::handleSTAIndirectX);
+        define(0x91, 6, Instruction.STA, AddressingMode.IND_Y, CPU::handleSTAIndirectY);
+        // STX opcodes:
+        define(0x86, 3, Instruction.STX, AddressingMode.ZPG, cpu -> cpu.handleStore_ZeroPage(cpu.x));
+        define(0x96, 4, Instruction.STX, AddressingMode.ZPG_Y, cpu -> cpu.handleStore_ZeroPageIndexed(cpu.x, cpu.y));
+        define(0x8E, 4, Instruction.STX, AddressingMode.ABS, cpu -> cpu.handleStore_Absolute(cpu.x));
+        // STY opcodes:
+        define(0x84, 3, Instruction.STY, AddressingMode.ZPG, cpu -> cpu.handleStore_ZeroPage(cpu.y));
+        define(0x94, 4, Instruction.STY, AddressingMode.ZPG_X, cpu -> cpu.handleStore_ZeroPageIndexed(cpu.y, cpu.x));
+        define(0x8C, 4, Instruction.STY, AddressingMode.ABS, cpu -> cpu.handleStore_Absolute(cpu.y));
+        // TAX opcode
+        define(0xAA, 2, Instruction.TAX, AddressingMode.IMP, CPU::TAX);
+        // TAY opcode:
+        define(0xA8, 2, Instruction.TAY, AddressingMode.IMP, CPU::TAY);
+        // TSX opcode
+        define(0xBA, 2, Instruction.TSX, AddressingMode.IMP, CPU::TSX);
+        // TXA opcode:
+        define(0x8A, 2, Instruction.TXA, AddressingMode.IMP, CPU::TXA);
+        // TXS opcode:
+        define(0x9A, 2, Instruction.TXS, AddressingMode.IMP, CPU::TXS);
+        // TYA opcode:
+        define(0x98, 2, Instruction.TYA, AddressingMode.IMP, CPU::TYA);
+        // PHA opcode:
+        define(0x48, 3, Instruction.PHA, AddressingMode.IMP, CPU::PHA);
+        // PHP opcode:
+        define(0x08, 3, Instruction.PHP, AddressingMode.IMP, CPU::PHP);
+        // PLA opcode:
+        define(0x68, 4, Instruction.PLA, AddressingMode.IMP, CPU::PLA);
+        //PLP opcode
+        define(0x28, 4, Instruction.PLP, AddressingMode.IMP, CPU::PLP);
+        //DEC opcodes:
+        define(0xC6, 5, Instruction.DEC, AddressingMode.ZPG, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageMode(cpu.decrementOperation));
+        define(0xD6, 6, Instruction.DEC, AddressingMode.ZPG_X, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageIndexed(cpu.x, cpu.decrementOperation));
+        define(0xCE, 6, Instruction.DEC, AddressingMode.ABS, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteMode(cpu.decrementOperation));
+        define(0xDE, 7, Instruction.DEC, AddressingMode.ABS_X, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteIndexed(cpu.x, cpu.decrementOperation));
+        //DEX opcode:
+        define(0xCA, 2, Instruction.DEX, AddressingMode.IMP, CPU::DEX);
+        //DEY opcode:
+        define(0x88, 2, Instruction.DEY, AddressingMode.IMP, CPU::DEY);
+        //INC opcode:
+        define(0xE6, 5, Instruction.INC, AddressingMode.ZPG, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageMode(cpu.incrementOperation));
+        define(0xF6, 6, Instruction.INC, AddressingMode.ZPG_X, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageIndexed(cpu.x, cpu.incrementOperation));
+        define(0xEE, 6, Instruction.INC, AddressingMode.ABS, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteMode(cpu.incrementOperation));
+        define(0xFE, 7, Instruction.INC, AddressingMode.ABS_X, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteIndexed(cpu.x, cpu.incrementOperation));
+        //INX opcode:
+        define(0xE8, 2, Instruction.INX, AddressingMode.IMP, CPU::INX);
+        //INY opcode:
+        define(0xC8, 2, Instruction.INY, AddressingMode.IMP, CPU::INY);
+        // ORA opcodes:
+        define(0x09, 2, Instruction.ORA, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.orOperation));
+        define(0x05, 3, Instruction.ORA, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.orOperation));
+        define(0x15, 4, Instruction.ORA, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.orOperation));
+        define(0x0D, 4, Instruction.ORA, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.orOperation));
+        define(0x1D, 5, Instruction.ORA, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.orOperation));
+        define(0x19, 5, Instruction.ORA, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.orOperation));
+        define(0x01, 6, Instruction.ORA, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.orOperation));
+        define(0x11, 6, Instruction.ORA, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.orOperation));
+        // EOR opcodes:
+        define(0x49, 2, Instruction.EOR, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.exclusiveOrOperation));
+        define(0x45, 3, Instruction.EOR, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.exclusiveOrOperation));
+        define(0x55, 4, Instruction.EOR, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.exclusiveOrOperation));
+        define(0x4D, 4, Instruction.EOR, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.exclusiveOrOperation));
+        define(0x5D, 5, Instruction.EOR, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.exclusiveOrOperation));
+        define(0x59, 5, Instruction.EOR, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.exclusiveOrOperation));
+        define(0x41, 6, Instruction.EOR, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.exclusiveOrOperation));
+        define(0x51, 6, Instruction.EOR, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.exclusiveOrOperation));
+        // AND opcodes:
+        define(0x29, 2, Instruction.AND, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.andOperation));
+        define(0x25, 3, Instruction.AND, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.andOperation));
+        define(0x35, 4, Instruction.AND, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.andOperation));
+        define(0x2D, 4, Instruction.AND, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.andOperation));
+        define(0x3D, 5, Instruction.AND, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.andOperation));
+        define(0x39, 5, Instruction.AND, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.andOperation));
+        define(0x21, 6, Instruction.AND, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.andOperation));
+        define(0x31, 6, Instruction.AND, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.andOperation));
+        // ASL opcodes:
+        define(0x0A, 2, Instruction.ASL, AddressingMode.ACC, cpu -> cpu.handleReadModifyWrite_Accumulator(cpu.shiftLeftOperation));
+        define(0x06, 5, Instruction.ASL, AddressingMode.ZPG, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageMode(cpu.shiftLeftOperation));
+        define(0x16, 6, Instruction.ASL, AddressingMode.ZPG_X, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageIndexed(cpu.x, cpu.shiftLeftOperation));
+        define(0x0E, 6, Instruction.ASL, AddressingMode.ABS, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteMode(cpu.shiftLeftOperation));
+        define(0x1E, 7, Instruction.ASL, AddressingMode.ABS_X, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteIndexed(cpu.x, cpu.shiftLeftOperation));
+        // LSR opcodes:
+        define(0x4A, 2, Instruction.LSR, AddressingMode.ACC, cpu -> cpu.handleReadModifyWrite_Accumulator(cpu.shiftRightOperation));
+        define(0x46, 5, Instruction.LSR, AddressingMode.ZPG, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageMode(cpu.shiftRightOperation));
+        define(0x56, 6, Instruction.LSR, AddressingMode.ZPG_X, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageIndexed(cpu.x, cpu.shiftRightOperation));
+        define(0x4E, 6, Instruction.LSR, AddressingMode.ABS, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteMode(cpu.shiftRightOperation));
+        define(0x5E, 7, Instruction.LSR, AddressingMode.ABS_X, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteIndexed(cpu.x, cpu.shiftRightOperation));
+        // ROL opcodes:
+        define(0x2A, 2, Instruction.ROL, AddressingMode.ACC, cpu -> cpu.handleReadModifyWrite_Accumulator(cpu.rotateLeftOperation));
+        define(0x26, 5, Instruction.ROL, AddressingMode.ZPG, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageMode(cpu.rotateLeftOperation));
+        define(0x36, 6, Instruction.ROL, AddressingMode.ZPG_X, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageIndexed(cpu.x, cpu.rotateLeftOperation));
+        define(0x2E, 6, Instruction.ROL, AddressingMode.ABS, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteMode(cpu.rotateLeftOperation));
+        define(0x3E, 7, Instruction.ROL, AddressingMode.ABS_X, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteIndexed(cpu.x, cpu.rotateLeftOperation));
+        // ROR opcodes:
+        define(0x6A, 2, Instruction.ROR, AddressingMode.ACC, cpu -> cpu.handleReadModifyWrite_Accumulator(cpu.rotateRightOperation));
+        define(0x66, 5, Instruction.ROR, AddressingMode.ZPG, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageMode(cpu.rotateRightOperation));
+        define(0x76, 6, Instruction.ROR, AddressingMode.ZPG_X, cpu -> cpu.handleReadModifyWriteInstructions_ZeroPageIndexed(cpu.x, cpu.rotateRightOperation));
+        define(0x6E, 6, Instruction.ROR, AddressingMode.ABS, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteMode(cpu.rotateRightOperation));
+        define(0x7E, 7, Instruction.ROR, AddressingMode.ABS_X, cpu -> cpu.handleReadModifyWriteInstructions_AbsoluteIndexed(cpu.x, cpu.rotateRightOperation));
+        // Clear Flag instructions:
+        define(0x18, 2, Instruction.CLC, AddressingMode.IMP, CPU::CLC);
+        define(0xD8, 2, Instruction.CLD, AddressingMode.IMP, CPU::CLD);
+        define(0x58, 2, Instruction.CLI, AddressingMode.IMP, CPU::CLI);
+        define(0xB8, 2, Instruction.CLV, AddressingMode.IMP, CPU::CLV);
+        // Set Flag instructions:
+        define(0x38, 2, Instruction.SEC, AddressingMode.IMP, CPU::SEC);
+        define(0xF8, 2, Instruction.SED, AddressingMode.IMP, CPU::SED);
+        define(0x78, 2, Instruction.SEI, AddressingMode.IMP, CPU::SEI);
+        // CMP opcodes:
+        define(0xC9, 2, Instruction.CMP, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.compareAOperation));
+        define(0xC5, 3, Instruction.CMP, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.compareAOperation));
+        define(0xD5, 4, Instruction.CMP, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.compareAOperation));
+        define(0xCD, 4, Instruction.CMP, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.compareAOperation));
+        define(0xDD, 5, Instruction.CMP, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.compareAOperation));
+        define(0xD9, 5, Instruction.CMP, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.compareAOperation));
+        define(0xC1, 6, Instruction.CMP, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.compareAOperation));
+        define(0xD1, 6, Instruction.CMP, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.compareAOperation));
+        // CPX opcodes:
+        define(0xE0, 2, Instruction.CPX, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.x, cpu.compareXOperation));
+        define(0xE4, 3, Instruction.CPX, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.x, cpu.compareXOperation));
+        define(0xEC, 4, Instruction.CPX, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.x, cpu.compareXOperation));
+        // CPY opcodes:
+        define(0xC0, 2, Instruction.CPY, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.y, cpu.compareYOperation));
+        define(0xC4, 3, Instruction.CPY, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.y, cpu.compareYOperation));
+        define(0xCC, 4, Instruction.CPY, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.y, cpu.compareYOperation));
+        // Branch instructions opcode:
+        define(0x90, 4, Instruction.BCC, AddressingMode.REL, CPU::BCC);
+        define(0xB0, 4, Instruction.BCS, AddressingMode.REL, CPU::BCS);
+        define(0xF0, 4, Instruction.BEQ, AddressingMode.REL, CPU::BEQ);
+        define(0x30, 4, Instruction.BMI, AddressingMode.REL, CPU::BMI);
+        define(0xD0, 4, Instruction.BNE, AddressingMode.REL, CPU::BNE);
+        define(0x10, 4, Instruction.BPL, AddressingMode.REL, CPU::BPL);
+        define(0x50, 4, Instruction.BVC, AddressingMode.REL, CPU::BVC);
+        define(0x70, 4, Instruction.BVS, AddressingMode.REL, CPU::BVS);
+        //JMP opcodes
+        define(0x4C, 3, Instruction.JMP, AddressingMode.ABS, CPU::JMP_Absolute);
+        define(0x6C, 5, Instruction.JMP, AddressingMode.IND, CPU::JMP_Indirect);
+        //JSR opcode
+        define(0x20, 6, Instruction.JSR, AddressingMode.ABS, CPU::JSR);
+        //RTS opcode:
+        define(0x60, 6, Instruction.RTS, AddressingMode.IMP, CPU::RTS);
+        //BRK opcode:
+        define(0x00, 7, Instruction.BRK, AddressingMode.IMP, CPU::BRK);
+        //RTI opcode:
+        define(0x40, 6, Instruction.RTI, AddressingMode.IMP, CPU::RTI);
+        //NOP opcode:
+        define(0xEA, 2, Instruction.NOP, AddressingMode.IMP, CPU::NOP);
+        //ADC opcodes
+        define(0x69, 2, Instruction.ADC, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.addWithCarryOperation));
+        define(0x65, 3, Instruction.ADC, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.addWithCarryOperation));
+        define(0x75, 4, Instruction.ADC, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.addWithCarryOperation));
+        define(0x6D, 4, Instruction.ADC, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.addWithCarryOperation));
+        define(0x7D, 5, Instruction.ADC, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.addWithCarryOperation));
+        define(0x79, 5, Instruction.ADC, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.addWithCarryOperation));
+        define(0x61, 6, Instruction.ADC, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.addWithCarryOperation));
+        define(0x71, 6, Instruction.ADC, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.addWithCarryOperation));
+        // SBC opcodes
+        define(0xE9, 2, Instruction.SBC, AddressingMode.IMM, cpu -> cpu.handleRead_Immediate(cpu.a, cpu.subtractWithCarryOperation));
+        define(0xE5, 3, Instruction.SBC, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.subtractWithCarryOperation));
+        define(0xF5, 4, Instruction.SBC, AddressingMode.ZPG_X, cpu -> cpu.handleRead_ZeroPageIndexed(cpu.a, cpu.x, cpu.subtractWithCarryOperation));
+        define(0xED, 4, Instruction.SBC, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.subtractWithCarryOperation));
+        define(0xFD, 5, Instruction.SBC, AddressingMode.ABS_X, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.x, cpu.subtractWithCarryOperation));
+        define(0xF9, 5, Instruction.SBC, AddressingMode.ABS_Y, cpu -> cpu.handleRead_AbsoluteIndexed(cpu.a, cpu.y, cpu.subtractWithCarryOperation));
+        define(0xE1, 6, Instruction.SBC, AddressingMode.IND_X, cpu -> cpu.handleRead_IndirectXIndexed(cpu.a, cpu.subtractWithCarryOperation));
+        define(0xF1, 6, Instruction.SBC, AddressingMode.IND_Y, cpu -> cpu.handleRead_IndirectYIndexed(cpu.a, cpu.subtractWithCarryOperation));
+        // BIT opcodes
+        define(0x24, 3, Instruction.BIT, AddressingMode.ZPG, cpu -> cpu.handleRead_ZeroPageMode(cpu.a, cpu.bitTestOperation));
+        define(0x2C, 4, Instruction.BIT, AddressingMode.ABS, cpu -> cpu.handleRead_AbsoluteMode(cpu.a, cpu.bitTestOperation));
+    }
+
+    // Operations used by the read and read-modify-write helpers. Each one receives the value read
+    // from memory, updates the flags and returns the new value for the target register/memory cell.
+    private final IntUnaryOperator loadOperation = value -> {
+        zero = (value == 0);
+        negative = (value & 0x80) != 0;
+        return value;
+    };
+
+    private final IntUnaryOperator orOperation = operand -> {
+        int result = a.getValue() | operand;
+        zero = (result == 0);
+        negative = (result & 0x80) != 0;
+        return result;
+    };
+
+    private final IntUnaryOperator exclusiveOrOperation = operand -> {
+        int result = a.getValue() ^ operand;
+        zero = (result == 0);
+        negative = (result & 0x80) != 0;
+        return result;
+    };
+
+    private final IntUnaryOperator andOperation = operand -> {
+        int result = a.getValue() & operand;
+        zero = (result == 0);
+        negative = (result & 0x80) != 0;
+        return result;
+    };
+
+    private final IntUnaryOperator compareAOperation = operand -> compare(a.getValue(), operand);
+    private final IntUnaryOperator compareXOperation = operand -> compare(x.getValue(), operand);
+    private final IntUnaryOperator compareYOperation = operand -> compare(y.getValue(), operand);
+
+    private final IntUnaryOperator addWithCarryOperation = fetched -> {
+        currInstruction.operand = fetched;
+        currInstruction.tempLatch = a.getValue() + fetched + (carry ? 1 : 0);
+        setADCFlags();
+        return currInstruction.tempLatch;
+    };
+
+    // For SBC: A = A - fetched - (carry ? 0 : 1)
+    private final IntUnaryOperator subtractWithCarryOperation = fetched -> {
+        currInstruction.operand = fetched;
+        int borrow = (carry ? 0 : 1);
+        currInstruction.tempLatch = a.getValue() - fetched - borrow;
+        setSBCFlags();
+        return currInstruction.tempLatch;
+    };
+
+    private final IntUnaryOperator bitTestOperation = fetched -> {
+        currInstruction.operand = fetched;
+        int andResult = a.getValue() & fetched;
+        zero = (andResult == 0);
+        negative = (fetched & 0x80) != 0;
+        overflow = (fetched & 0x40) != 0;
+        return a.getValue();
+    };
+
+    private final IntUnaryOperator decrementOperation = value -> value - 1;
+
+    private final IntUnaryOperator incrementOperation = value -> value + 1;
+
+    private final IntUnaryOperator shiftLeftOperation = value -> {
+        carry = (value & 0x80) != 0;
+        return (value << 1) & 0xFF;
+    };
+
+    private final IntUnaryOperator shiftRightOperation = value -> {
+        carry = (value & 0x01) != 0;
+        return (value >>> 1) & 0xFF;
+    };
+
+    private final IntUnaryOperator rotateLeftOperation = value -> {
+        int result = ((value << 1) | (carry ? 1 : 0)) & 0xFF;
+        carry = (value & 0x80) != 0;
+        return result;
+    };
+
+    private final IntUnaryOperator rotateRightOperation = value -> {
+        int result = ((carry ? 0x80 : 0) | (value >>> 1)) & 0xFF;
+        carry = (value & 0x01) != 0;
+        return result;
+    };
+
+    private void handlePageCrossingInLoadInstruction(int address, EightBitRegister register, IntUnaryOperator operation) {
         if((address & 0xFF00) == (currInstruction.effectiveAddress & 0xFF00)) {
 
             int read = read(currInstruction.effectiveAddress);
-            register.setValue(operation.apply(read));
+            register.setValue(operation.applyAsInt(read));
             //avoid case 1 if no extra cycle is needed. This variable is already
             //decremented outside of this function, so if we decrement it here, we
             //make sure it will not reach case 1.
@@ -565,89 +1165,6 @@ public class CPU {
         }
     }
 
-    private void LDA() {
-        switch (currInstruction.addressingMode) {
-            case IMM -> a.setValue(fetch());
-            case ZPG -> handleRead_ZeroPageMode(a, Function.identity());
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, Function.identity());
-            case ABS -> handleRead_AbsoluteMode(a, Function.identity());
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, Function.identity());
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, Function.identity());
-            case IND_X -> handleRead_IndirectXIndexed(a, Function.identity());
-            case IND_Y -> handleRead_IndirectYIndexed(a, Function.identity());
-        }
-
-        if(remainingCycles == 1) {
-            zero = (a.getValue() == 0);
-            // Update Negative Flag (bit 7 of A)
-            negative = (a.getValue() & 0x80) != 0;
-        }
-    }
-
-    private void LDX() {
-        switch (currInstruction.addressingMode) {
-            case IMM -> x.setValue(fetch());
-            case ZPG -> handleRead_ZeroPageMode(x, Function.identity());
-            case ZPG_Y -> handleRead_ZeroPageIndexed(x, y, Function.identity());
-            case ABS -> handleRead_AbsoluteMode(x, Function.identity());
-            case ABS_Y -> handleRead_AbsoluteIndexed(x, y, Function.identity());
-            default -> throw new RuntimeException("Unsupported addressing mode for LDX: " + currInstruction.addressingMode);
-        }
-
-        if(remainingCycles == 1) {
-            // Update Zero and Negative flags based on X
-            zero = (x.getValue() == 0);
-            negative = (x.getValue() & 0x80) != 0;
-        }
-    }
-
-    private void LDY() {
-        switch (currInstruction.addressingMode) {
-            case IMM -> y.setValue(fetch());
-            case ZPG -> handleRead_ZeroPageMode(y, Function.identity());
-            case ZPG_X -> handleRead_ZeroPageIndexed(y, x, Function.identity());
-            case ABS -> handleRead_AbsoluteMode(y, Function.identity());
-            case ABS_X -> handleRead_AbsoluteIndexed(y, x, Function.identity());
-            default -> throw new RuntimeException("Unsupported addressing mode for LDY: " + currInstruction.addressingMode);
-        }
-
-        if(remainingCycles == 1) {
-            zero = (y.getValue() == 0);
-            negative = (y.getValue() & 0x80) != 0;
-        }
-    }
-
-    private void STA() {
-        switch (currInstruction.addressingMode) {
-            case ZPG -> handleStore_ZeroPage(a);
-            case ZPG_X -> handleStore_ZeroPageIndexed(a, x);
-            case ABS -> handleStore_Absolute(a);
-            case ABS_X -> handleSTAAbsoluteIndexed(x);
-            case ABS_Y -> handleSTAAbsoluteIndexed(y);
-            case IND_X -> handleSTAIndirectX();
-            case IND_Y -> handleSTAIndirectY();
-            default -> throw new RuntimeException("Unsupported addressing mode for STA: " + currInstruction.addressingMode);
-        }
-    }
-
-    private void STX() {
-        switch (currInstruction.addressingMode) {
-            case ZPG -> handleStore_ZeroPage(x);
-            case ZPG_Y -> handleStore_ZeroPageIndexed(x, y);
-            case ABS -> handleStore_Absolute(x);
-            default -> throw new RuntimeException("Unsupported addressing mode for STX: " + currInstruction.addressingMode);
-        }
-    }
-
-    private void STY() {
-        switch (currInstruction.addressingMode) {
-            case ZPG -> handleStore_ZeroPage(y);
-            case ZPG_X -> handleStore_ZeroPageIndexed(y, x);
-            case ABS -> handleStore_Absolute(y);
-            default -> throw new RuntimeException("Unsupported addressing mode for STY: " + currInstruction.addressingMode);
-        }
-    }
-
     private void TAX() {
         x.setValue(a.getValue());
         zero = (x.getValue() == 0);
@@ -753,22 +1270,6 @@ public class CPU {
         }
     }
 
-    private void DEC() {
-        Function<Integer, Integer> decrementOperation = value -> value - 1;
-        switch (currInstruction.addressingMode) {
-            case ZPG -> handleReadModifyWriteInstructions_ZeroPageMode(decrementOperation);
-            case ZPG_X -> handleReadModifyWriteInstructions_ZeroPageIndexed(x, decrementOperation);
-            case ABS -> handleReadModifyWriteInstructions_AbsoluteMode(decrementOperation);
-            case ABS_X -> handleReadModifyWriteInstructions_AbsoluteIndexed(x, decrementOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for DEC: " + currInstruction.addressingMode);
-        }
-
-        if(remainingCycles == 1) {
-            zero = (currInstruction.tempLatch == 0);
-            negative = (currInstruction.tempLatch & 0x80) != 0;
-        }
-    }
-
     private void DEX() {
         assert(remainingCycles == 1);
         x.setValue((x.getValue() - 1) & 0xFF);
@@ -783,22 +1284,6 @@ public class CPU {
         negative = (y.getValue() & 0x80) != 0;
     }
 
-    private void INC() {
-        Function<Integer, Integer> decrementOperation = value -> value + 1;
-        switch (currInstruction.addressingMode) {
-            case ZPG -> handleReadModifyWriteInstructions_ZeroPageMode(decrementOperation);
-            case ZPG_X -> handleReadModifyWriteInstructions_ZeroPageIndexed(x, decrementOperation);
-            case ABS -> handleReadModifyWriteInstructions_AbsoluteMode(decrementOperation);
-            case ABS_X -> handleReadModifyWriteInstructions_AbsoluteIndexed(x, decrementOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for INC: " + currInstruction.addressingMode);
-        }
-
-        if(remainingCycles == 1) {
-            zero = (currInstruction.tempLatch == 0);
-            negative = (currInstruction.tempLatch & 0x80) != 0;
-        }
-    }
-
     private void INX() {
         assert(remainingCycles == 1);
         x.setValue((x.getValue() + 1) & 0xFF);
@@ -813,155 +1298,6 @@ public class CPU {
         negative = (y.getValue() & 0x80) != 0;
     }
 
-    private void ORA() {
-        switch (currInstruction.addressingMode) {
-            case IMM -> a.setValue(a.getValue() | fetch());
-            case ZPG -> handleRead_ZeroPageMode(a, operand -> a.getValue() | operand);
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, operand -> a.getValue() | operand);
-            case ABS -> handleRead_AbsoluteMode(a, operand -> a.getValue() | operand);
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, operand -> a.getValue() | operand);
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, operand -> a.getValue() | operand);
-            case IND_X -> handleRead_IndirectXIndexed(a, operand -> a.getValue() | operand);
-            case IND_Y -> handleRead_IndirectYIndexed(a, operand -> a.getValue() | operand);
-            default -> throw new RuntimeException("Unsupported addressing mode for ORA: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            zero = (a.getValue() == 0);
-            negative = (a.getValue() & 0x80) != 0;
-        }
-    }
-
-    private void EOR() {
-        switch (currInstruction.addressingMode) {
-            case IMM -> a.setValue(a.getValue() ^ fetch());
-            case ZPG -> handleRead_ZeroPageMode(a, operand -> a.getValue() ^ operand);
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, operand -> a.getValue() ^ operand);
-            case ABS -> handleRead_AbsoluteMode(a, operand -> a.getValue() ^ operand);
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, operand -> a.getValue() ^ operand);
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, operand -> a.getValue() ^ operand);
-            case IND_X -> handleRead_IndirectXIndexed(a, operand -> a.getValue() ^ operand);
-            case IND_Y -> handleRead_IndirectYIndexed(a, operand -> a.getValue() ^ operand);
-            default -> throw new RuntimeException("Unsupported addressing mode for EOR: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            zero = (a.getValue() == 0);
-            negative = (a.getValue() & 0x80) != 0;
-        }
-    }
-
-    private void AND() {
-        switch (currInstruction.addressingMode) {
-            case IMM -> a.setValue(a.getValue() & fetch());
-            case ZPG -> handleRead_ZeroPageMode(a, operand -> a.getValue() & operand);
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, operand -> a.getValue() & operand);
-            case ABS -> handleRead_AbsoluteMode(a, operand -> a.getValue() & operand);
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, operand -> a.getValue() & operand);
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, operand -> a.getValue() & operand);
-            case IND_X -> handleRead_IndirectXIndexed(a, operand -> a.getValue() & operand);
-            case IND_Y -> handleRead_IndirectYIndexed(a, operand -> a.getValue() & operand);
-            default -> throw new RuntimeException("Unsupported addressing mode for AND: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            zero = (a.getValue() == 0);
-            negative = (a.getValue() & 0x80) != 0;
-        }
-    }
-
-    private void ASL() {
-        Function<Integer, Integer> shiftOperation = value -> {
-            carry = (value & 0x80) != 0;
-            return (value << 1) & 0xFF;
-        };
-        switch (currInstruction.addressingMode) {
-            case ACC -> {
-                currInstruction.tempLatch = shiftOperation.apply(a.getValue());
-                a.setValue(currInstruction.tempLatch);
-            }
-            case ZPG -> handleReadModifyWriteInstructions_ZeroPageMode(shiftOperation);
-            case ZPG_X -> handleReadModifyWriteInstructions_ZeroPageIndexed(x, shiftOperation);
-            case ABS -> handleReadModifyWriteInstructions_AbsoluteMode(shiftOperation);
-            case ABS_X -> handleReadModifyWriteInstructions_AbsoluteIndexed(x, shiftOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for ASL: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            int result = currInstruction.tempLatch;
-            zero = (result == 0);
-            negative = (result & 0x80) != 0;
-            //carry flag is being updated in the shiftOperation Function.
-        }
-    }
-
-    private void LSR() {
-        Function<Integer, Integer> shiftOperation = value -> {
-            carry = (value & 0x01) != 0;
-            return (value >>> 1) & 0xFF;
-        };
-        switch (currInstruction.addressingMode) {
-            case ACC -> {
-                currInstruction.tempLatch = shiftOperation.apply(a.getValue());
-                a.setValue(currInstruction.tempLatch);
-            }
-            case ZPG -> handleReadModifyWriteInstructions_ZeroPageMode(shiftOperation);
-            case ZPG_X -> handleReadModifyWriteInstructions_ZeroPageIndexed(x, shiftOperation);
-            case ABS -> handleReadModifyWriteInstructions_AbsoluteMode(shiftOperation);
-            case ABS_X -> handleReadModifyWriteInstructions_AbsoluteIndexed(x, shiftOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for LSR: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            int result = currInstruction.tempLatch;
-            zero = (result == 0);
-            negative = false;
-        }
-    }
-
-    private void ROL() {
-        Function<Integer, Integer> rotateOperation = value -> {
-            int result = ((value << 1) | (carry ? 1 : 0)) & 0xFF;
-            carry = (value & 0x80) != 0;
-            return result;
-        };
-        switch (currInstruction.addressingMode) {
-            case ACC -> {
-                currInstruction.tempLatch = rotateOperation.apply(a.getValue());
-                a.setValue(currInstruction.tempLatch);
-            }
-            case ZPG -> handleReadModifyWriteInstructions_ZeroPageMode(rotateOperation);
-            case ZPG_X -> handleReadModifyWriteInstructions_ZeroPageIndexed(x, rotateOperation);
-            case ABS -> handleReadModifyWriteInstructions_AbsoluteMode(rotateOperation);
-            case ABS_X -> handleReadModifyWriteInstructions_AbsoluteIndexed(x, rotateOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for ROL: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            int result = currInstruction.tempLatch;
-            zero = (result == 0);
-            negative = (result & 0x80) != 0;
-        }
-    }
-
-    private void ROR() {
-        Function<Integer, Integer> rotateOperation = value -> {
-            int result = ((carry ? 0x80 : 0) | (value >>> 1)) & 0xFF;
-            carry = (value & 0x01) != 0;
-            return result;
-        };
-        switch (currInstruction.addressingMode) {
-            case ACC -> {
-                currInstruction.tempLatch = rotateOperation.apply(a.getValue());
-                a.setValue(currInstruction.tempLatch);
-            }
-            case ZPG -> handleReadModifyWriteInstructions_ZeroPageMode(rotateOperation);
-            case ZPG_X -> handleReadModifyWriteInstructions_ZeroPageIndexed(x, rotateOperation);
-            case ABS -> handleReadModifyWriteInstructions_AbsoluteMode(rotateOperation);
-            case ABS_X -> handleReadModifyWriteInstructions_AbsoluteIndexed(x, rotateOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for ROR: " + currInstruction.addressingMode);
-        }
-        if (remainingCycles == 1) {
-            int result = currInstruction.tempLatch;
-            zero = (result == 0);
-            negative = (result & 0x80) != 0;
-        }
-    }
-
     private void CLC() {
         carry = false;
     }
@@ -990,50 +1326,12 @@ public class CPU {
         interruptDisable = true;
     }
 
-    private Function<Integer, Integer> getCmpFunction(EightBitRegister register) {
-        return operand -> {
-            int regValue = register.getValue() & 0xFF;
-            int diff = regValue - operand;
-            carry = regValue >= operand;
-            zero = (regValue == operand);
-            negative = ((diff & 0x80) != 0);
-            return regValue;
-        };
-    }
-
-    private void CMP() {
-        Function<Integer, Integer> cmpOperation = getCmpFunction(a);
-        switch (currInstruction.addressingMode) {
-            case IMM -> a.setValue(cmpOperation.apply(fetch()));
-            case ZPG -> handleRead_ZeroPageMode(a, cmpOperation);
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, cmpOperation);
-            case ABS -> handleRead_AbsoluteMode(a, cmpOperation);
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, cmpOperation);
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, cmpOperation);
-            case IND_X -> handleRead_IndirectXIndexed(a, cmpOperation);
-            case IND_Y -> handleRead_IndirectYIndexed(a, cmpOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for CMP: " + currInstruction.addressingMode);
-        }
-    }
-
-    private void CPX() {
-        Function<Integer, Integer> cpxOperation = getCmpFunction(x);
-        switch (currInstruction.addressingMode) {
-            case IMM -> x.setValue(cpxOperation.apply(fetch()));
-            case ZPG -> handleRead_ZeroPageMode(x, cpxOperation);
-            case ABS -> handleRead_AbsoluteMode(x, cpxOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for CPX: " + currInstruction.addressingMode);
-        }
-    }
-
-    private void CPY() {
-        Function<Integer, Integer> cpyOperation = getCmpFunction(y);
-        switch (currInstruction.addressingMode) {
-            case IMM -> y.setValue(cpyOperation.apply(fetch()));
-            case ZPG -> handleRead_ZeroPageMode(y, cpyOperation);
-            case ABS -> handleRead_AbsoluteMode(y, cpyOperation);
-            default -> throw new RuntimeException("Unsupported addressing mode for CPY: " + currInstruction.addressingMode);
-        }
+    private int compare(int regValue, int operand) {
+        int diff = regValue - operand;
+        carry = regValue >= operand;
+        zero = (regValue == operand);
+        negative = ((diff & 0x80) != 0);
+        return regValue;
     }
 
     private void BCC() {
@@ -1068,30 +1366,27 @@ public class CPU {
         handleRelativeInstructions(!overflow);
     }
 
-    private void JMP() {
-        switch (currInstruction.addressingMode){
-            case ABS -> {
-                switch (remainingCycles){
-                    case 2 -> currInstruction.effectiveAddress = fetch();
-                    case 1 -> {
-                        currInstruction.effectiveAddress = (fetch() << 8) | currInstruction.effectiveAddress;
-                        pc = currInstruction.effectiveAddress;
-                    }
-                }
+    private void JMP_Absolute() {
+        switch (remainingCycles){
+            case 2 -> currInstruction.effectiveAddress = fetch();
+            case 1 -> {
+                currInstruction.effectiveAddress = (fetch() << 8) | currInstruction.effectiveAddress;
+                pc = currInstruction.effectiveAddress;
             }
-            case IND -> {
-                switch (remainingCycles) {
-                    case 4 -> currInstruction.operand = fetch();
-                    case 3 -> currInstruction.operand = (fetch() << 8) | currInstruction.operand;
-                    case 2 -> currInstruction.effectiveAddress = read(currInstruction.operand) & 0xFF;
-                    case 1 -> {
-                        int pointerHighAddress = ((currInstruction.operand & 0xFF) == 0xFF)
-                                ? (currInstruction.operand & 0xFF00)
-                                : (currInstruction.operand + 1);
-                        currInstruction.effectiveAddress = (read(pointerHighAddress) & 0xFF) << 8 | currInstruction.effectiveAddress;
-                        pc = currInstruction.effectiveAddress;
-                    }
-                }
+        }
+    }
+
+    private void JMP_Indirect() {
+        switch (remainingCycles) {
+            case 4 -> currInstruction.operand = fetch();
+            case 3 -> currInstruction.operand = (fetch() << 8) | currInstruction.operand;
+            case 2 -> currInstruction.effectiveAddress = read(currInstruction.operand) & 0xFF;
+            case 1 -> {
+                int pointerHighAddress = ((currInstruction.operand & 0xFF) == 0xFF)
+                        ? (currInstruction.operand & 0xFF00)
+                        : (currInstruction.operand + 1);
+                currInstruction.effectiveAddress = (read(pointerHighAddress) & 0xFF) << 8 | currInstruction.effectiveAddress;
+                pc = currInstruction.effectiveAddress;
             }
         }
     }
@@ -1184,28 +1479,6 @@ public class CPU {
         }
     }
 
-    private void ADC() {
-        Function<Integer, Integer> op = (fetched) -> {
-            currInstruction.operand = fetched;
-            currInstruction.tempLatch = a.getValue() + fetched + (carry ? 1 : 0);
-            setADCFlags();
-            return currInstruction.tempLatch;
-        };
-        switch (currInstruction.addressingMode) {
-            case IMM -> {
-                int fetched = fetch();
-                a.setValue(op.apply(fetched));
-            }
-            case ZPG -> handleRead_ZeroPageMode(a, op);
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, op);
-            case ABS -> handleRead_AbsoluteMode(a, op);
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, op);
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, op);
-            case IND_X -> handleRead_IndirectXIndexed(a, op);
-            case IND_Y -> handleRead_IndirectYIndexed(a, op);
-        }
-    }
-
     private void setADCFlags() {
         carry = currInstruction.tempLatch > 0xFF;
         zero = (currInstruction.tempLatch & 0xFF) == 0;
@@ -1213,32 +1486,6 @@ public class CPU {
         overflow = (((~a.getValue() ^ currInstruction.operand) & (a.getValue() ^ currInstruction.tempLatch)) & 0x80) != 0;
     }
 
-    private void SBC() {
-        // Define an operation lambda that computes the subtraction result
-        // For SBC: A = A - fetched - (carry ? 0 : 1)
-        Function<Integer, Integer> op = (fetched) -> {
-            currInstruction.operand = fetched;
-            int borrow = (carry ? 0 : 1);
-            currInstruction.tempLatch = a.getValue() - fetched - borrow;
-            setSBCFlags();
-            return currInstruction.tempLatch;
-        };
-
-        switch (currInstruction.addressingMode) {
-            case IMM -> {
-                int fetched = fetch();
-                a.setValue(op.apply(fetched));
-            }
-            case ZPG -> handleRead_ZeroPageMode(a, op);
-            case ZPG_X -> handleRead_ZeroPageIndexed(a, x, op);
-            case ABS -> handleRead_AbsoluteMode(a, op);
-            case ABS_X -> handleRead_AbsoluteIndexed(a, x, op);
-            case ABS_Y -> handleRead_AbsoluteIndexed(a, y, op);
-            case IND_X -> handleRead_IndirectXIndexed(a, op);
-            case IND_Y -> handleRead_IndirectYIndexed(a, op);
-        }
-    }
-
     private void setSBCFlags() {
         int originalA = a.getValue();
         int borrow = (carry ? 0 : 1);
@@ -1252,23 +1499,6 @@ public class CPU {
         overflow = (((originalA ^ currInstruction.tempLatch) & (originalA ^ currInstruction.operand)) & 0x80) != 0;
     }
 
-    private void BIT() {
-        Function<Integer, Integer> op = (fetched) -> {
-            currInstruction.operand = fetched;
-            int andResult = a.getValue() & fetched;
-            zero = (andResult == 0);
-            negative = (fetched & 0x80) != 0;
-            overflow = (fetched & 0x40) != 0;
-            return a.getValue();
-        };
-
-        switch (currInstruction.addressingMode) {
-            case ZPG -> handleRead_ZeroPageMode(a, op);
-            case ABS -> handleRead_AbsoluteMode(a, op);
-            default -> throw new RuntimeException("Unsupported addressing mode for BIT: " + currInstruction.addressingMode);
-        }
-    }
-
     private void handleRelativeInstructions(boolean branchNotTakenCondition) {
         switch (remainingCycles) {
             case 3 -> {
@@ -1290,80 +1520,95 @@ public class CPU {
         }
     }
 
-    private void handleReadModifyWriteInstructions_AbsoluteMode(Function<Integer, Integer> operation) {
+    private void handleReadModifyWrite_Accumulator(IntUnaryOperator operation) {
+        currInstruction.tempLatch = operation.applyAsInt(a.getValue()) & 0xFF;
+        a.setValue(currInstruction.tempLatch);
+        zero = (currInstruction.tempLatch == 0);
+        negative = (currInstruction.tempLatch & 0x80) != 0;
+    }
+
+    private void writeModifiedValue() {
+        write(currInstruction.effectiveAddress, currInstruction.tempLatch);
+        zero = (currInstruction.tempLatch == 0);
+        negative = (currInstruction.tempLatch & 0x80) != 0;
+    }
+
+    private void handleReadModifyWriteInstructions_AbsoluteMode(IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 5 -> currInstruction.effectiveAddress = fetch();
             case 4 -> currInstruction.effectiveAddress = (fetch() << 8) | currInstruction.effectiveAddress;
             case 3 -> currInstruction.tempLatch = read(currInstruction.effectiveAddress);
-            case 2 -> currInstruction.tempLatch = operation.apply(currInstruction.tempLatch) & 0xFF;
-            case 1 -> write(currInstruction.effectiveAddress, currInstruction.tempLatch);
-
+            case 2 -> currInstruction.tempLatch = operation.applyAsInt(currInstruction.tempLatch) & 0xFF;
+            case 1 -> writeModifiedValue();
         }
     }
-    private void handleReadModifyWriteInstructions_AbsoluteIndexed(EightBitRegister register, Function<Integer, Integer> operation) {
+    private void handleReadModifyWriteInstructions_AbsoluteIndexed(EightBitRegister register, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 6 -> currInstruction.effectiveAddress = fetch();
             case 5 -> currInstruction.effectiveAddress = (fetch() << 8) | currInstruction.effectiveAddress;
             case 4 -> currInstruction.effectiveAddress = (currInstruction.effectiveAddress + register.getValue()) & 0xFFFF;
             case 3 -> currInstruction.tempLatch = read(currInstruction.effectiveAddress);
-            case 2 -> currInstruction.tempLatch = operation.apply(currInstruction.tempLatch) & 0xFF;
-            case 1 -> write(currInstruction.effectiveAddress, currInstruction.tempLatch);
-
+            case 2 -> currInstruction.tempLatch = operation.applyAsInt(currInstruction.tempLatch) & 0xFF;
+            case 1 -> writeModifiedValue();
         }
     }
 
-    private void handleReadModifyWriteInstructions_ZeroPageMode(Function<Integer, Integer> operation) {
+    private void handleReadModifyWriteInstructions_ZeroPageMode(IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 4 -> currInstruction.effectiveAddress = fetch();
             case 3 -> currInstruction.tempLatch = read(currInstruction.effectiveAddress);
-            case 2 -> currInstruction.tempLatch = operation.apply(currInstruction.tempLatch) & 0xFF;
-            case 1 -> write(currInstruction.effectiveAddress, currInstruction.tempLatch);
+            case 2 -> currInstruction.tempLatch = operation.applyAsInt(currInstruction.tempLatch) & 0xFF;
+            case 1 -> writeModifiedValue();
         }
     }
 
-    private void handleReadModifyWriteInstructions_ZeroPageIndexed(EightBitRegister register, Function<Integer, Integer> operation) {
+    private void handleReadModifyWriteInstructions_ZeroPageIndexed(EightBitRegister register, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 5 -> currInstruction.effectiveAddress = fetch();
             case 4 -> currInstruction.effectiveAddress = (currInstruction.effectiveAddress + register.getValue()) & 0xFF;
             case 3 -> currInstruction.tempLatch = read(currInstruction.effectiveAddress);
-            case 2 -> currInstruction.tempLatch = operation.apply(currInstruction.tempLatch) & 0xFF;
-            case 1 -> write(currInstruction.effectiveAddress, currInstruction.tempLatch);
+            case 2 -> currInstruction.tempLatch = operation.applyAsInt(currInstruction.tempLatch) & 0xFF;
+            case 1 -> writeModifiedValue();
         }
     }
 
-    private void handleRead_ZeroPageMode(EightBitRegister register, Function<Integer,Integer> operation) {
+    private void handleRead_Immediate(EightBitRegister register, IntUnaryOperator operation) {
+        register.setValue(operation.applyAsInt(fetch()));
+    }
+
+    private void handleRead_ZeroPageMode(EightBitRegister register, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 2 -> currInstruction.effectiveAddress = fetch();
             case 1 -> {
                 int read = read(currInstruction.effectiveAddress);
-                register.setValue(operation.apply(read));
+                register.setValue(operation.applyAsInt(read));
             }
         }
     }
 
-    private void handleRead_AbsoluteMode(EightBitRegister register, Function<Integer,Integer> operation) {
+    private void handleRead_AbsoluteMode(EightBitRegister register, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 3 -> currInstruction.effectiveAddress = fetch();
             case 2 -> currInstruction.effectiveAddress = (fetch() << 8) | currInstruction.effectiveAddress;
             case 1 -> {
                 int read = read(currInstruction.effectiveAddress);
-                register.setValue(operation.apply(read));
+                register.setValue(operation.applyAsInt(read));
             }
         }
     }
 
-    private void handleRead_ZeroPageIndexed(EightBitRegister register, EightBitRegister indexRegister, Function<Integer,Integer> operation) {
+    private void handleRead_ZeroPageIndexed(EightBitRegister register, EightBitRegister indexRegister, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 3 -> currInstruction.effectiveAddress = fetch();
             case 2 -> currInstruction.effectiveAddress = (currInstruction.effectiveAddress + indexRegister.getValue()) & 0xFF;
             case 1 -> {
                 int read = read(currInstruction.effectiveAddress);
-                register.setValue(operation.apply(read));
+                register.setValue(operation.applyAsInt(read));
             }
         }
     }
 
-    private void handleRead_AbsoluteIndexed(EightBitRegister register, EightBitRegister indexRegister, Function<Integer, Integer> operation) {
+    private void handleRead_AbsoluteIndexed(EightBitRegister register, EightBitRegister indexRegister, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 4 -> currInstruction.effectiveAddress = fetch();
             case 3 -> currInstruction.effectiveAddress = (fetch() << 8) | currInstruction.effectiveAddress;
@@ -1374,12 +1619,12 @@ public class CPU {
             }
             case 1 -> {
                 int read = read(currInstruction.effectiveAddress);
-                register.setValue(operation.apply(read));
+                register.setValue(operation.applyAsInt(read));
             }
         }
     }
 
-    private void handleRead_IndirectXIndexed(EightBitRegister register, Function<Integer, Integer> operation) {
+    private void handleRead_IndirectXIndexed(EightBitRegister register, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 5 -> currInstruction.operand = fetch();
             case 4 -> currInstruction.operand = (currInstruction.operand + x.getValue()) & 0xFF;
@@ -1390,12 +1635,12 @@ public class CPU {
             }
             case 1 -> {
                 int read = read(currInstruction.effectiveAddress);
-                register.setValue(operation.apply(read));
+                register.setValue(operation.applyAsInt(read));
             }
         }
     }
 
-    private void handleRead_IndirectYIndexed(EightBitRegister register, Function<Integer, Integer> operation) {
+    private void handleRead_IndirectYIndexed(EightBitRegister register, IntUnaryOperator operation) {
         switch (remainingCycles) {
             case 5 -> currInstruction.operand = fetch();
             case 4 -> currInstruction.effectiveAddress = read(currInstruction.operand & 0xFF) ;
@@ -1410,7 +1655,7 @@ public class CPU {
             }
             case 1 -> {
                 int read = read(currInstruction.effectiveAddress);
-                register.setValue(operation.apply(read));
+                register.setValue(operation.applyAsInt(read));
             }
         }
     }
@@ -3,7 +3,7 @@ package core;
 import core.apu.APU; // Updated import
 import ppu.PPU;
 
-public class CPUBus implements Bus {
+public final class CPUBus implements Bus {
     private final WRAM wram;
     private final Cartridge cartridge;
     private final PPU ppu;
@@ -12,6 +12,17 @@ public class CPUBus implements Bus {
     private Controller controller2;
     private CPU cpu; // Reference to the CPU
 
+    // Memory map with one entry per 256-byte page. A page backed by memory is read directly from
+    // readPages[page] at pageOffsets[page] + (address & 0xFF), and written the same way if writePages[page] is set.
+    // Pages without backing memory (I/O and mapper registers) go through readIo() and writeIo().
+    // Since the PPU is allowed to fall behind (PPU#addDots), those bring it up to date before touching the PPU
+    // registers, OAM DMA or the mapper.
+    private static final int PAGE_COUNT = 0x100;
+    private static final int PAGE_SIZE = 0x100;
+    private final byte[][] readPages = new byte[PAGE_COUNT][];
+    private final byte[][] writePages = new byte[PAGE_COUNT][];
+    private final int[] pageOffsets = new int[PAGE_COUNT];
+
     // Modified constructor to accept APU
     public CPUBus(WRAM wram, Cartridge cartridge, PPU ppu, APU apu) {
         this.wram = wram;
@@ -20,6 +31,52 @@ public class CPUBus implements Bus {
         this.apu = apu; // Initialize APU from parameter
         this.controller1 = new Controller();
         this.controller2 = new Controller();
+        mapWram();
+        if (cartridge != null) {
+            mapPages(0x6000, 0x2000, cartridge.getPrgRam(), 0, true);
+            mapPrgRom(0x8000, 0x8000);
+            cartridge.addBankSwitchListener(this::mapPrgRom);
+        }
+    }
+
+    // $0000-$1FFF: the 2KB of internal RAM, mirrored four times
+    private void mapWram() {
+        byte[] memory = wram != null ? wram.getMemory() : null;
+        if (memory == null || memory.length != 0x800) {
+            return; // Left to the WRAM implementation
+        }
+        for (int address = 0; address < 0x2000; address += 0x800) {
+            mapPages(address, 0x800, memory, 0, true);
+        }
+    }
+
+    // Points the pages of a PRG ROM window at the banks the mapper has switched in. Called again on every bank switch.
+    private void mapPrgRom(int cpuAddress, int length) {
+        byte[] prgRom = cartridge.getPrgRom();
+        int end = Math.min(cpuAddress + length, 0x10000);
+        for (int address = Math.max(cpuAddress & ~(PAGE_SIZE - 1), 0x8000); address < end; address += PAGE_SIZE) {
+            int offset = cartridge.getPrgRomOffset(address);
+            if (offset >= 0 && offset + PAGE_SIZE <= prgRom.length) {
+                mapPages(address, PAGE_SIZE, prgRom, offset, false);
+            } else {
+                unmapPage(address);
+            }
+        }
+    }
+
+    private void mapPages(int cpuAddress, int length, byte[] memory, int offset, boolean writable) {
+        for (int i = 0; i < length; i += PAGE_SIZE) {
+            int page = (cpuAddress + i) >>> 8;
+            readPages[page] = memory;
+            writePages[page] = writable ? memory : null;
+            pageOffsets[page] = offset + i;
+        }
+    }
+
+    private void unmapPage(int cpuAddress) {
+        int page = cpuAddress >>> 8;
+        readPages[page] = null;
+        writePages[page] = null;
     }
 
     public void setCpu(CPU cpu) {
@@ -33,9 +90,19 @@ public class CPUBus implements Bus {
     @Override
     public int read(int address) {
         address &= 0xFFFF; // Ensure address is within 16-bit range
+        int page = address >>> 8;
+        byte[] memory = readPages[page];
+        if (memory != null) {
+            return memory[pageOffsets[page] + (address & 0xFF)] & 0xFF;
+        }
+        return readIo(address);
+    }
+
+    private int readIo(int address) {
         if (address < 0x2000) { // $0000-$1FFF: core.WRAM
             return wram.read(address);
         } else if (address < 0x4000) { // $2000-$3FFF: PPU registers
+            ppu.catchUp();
             return ppu.read(address);
         } else if (address >= 0x4000 && address <= 0x401F) { // APU and I/O Registers ($4000-$401F)
             if (address == 0x4015) {
@@ -59,13 +126,27 @@ public class CPUBus implements Bus {
         address &= 0xFFFF; // Ensure address is within 16-bit range
         value &= 0xFF;   // Ensure value is a byte
 
+        int page = address >>> 8;
+        byte[] memory = writePages[page];
+        if (memory != null) {
+            memory[pageOffsets[page] + (address & 0xFF)] = (byte) value;
+        } else {
+            writeIo(address, value);
+        }
+    }
+
+    private void writeIo(int address, int value) {
         if (address < 0x2000) { // $0000-$1FFF: core.WRAM (mirrored every 0x800 bytes)
             wram.write(address, value);
         } else if (address < 0x4000) { // $2000-$3FFF: PPU registers (mirrored every 8 bytes)
+            ppu.catchUp();
             ppu.write(address, value);
         } else if (address >= 0x4000 && address <= 0x401F) { // APU and I/O Registers ($4000-$401F)
             if (address == 0x4014) { // OAMDMA register
-                if (ppu != null) ppu.startOAMDMA(value); // Delegate to PPU
+                if (ppu != null) {
+                    ppu.catchUp(); // Sprite evaluation must see the old OAM up to now
+                    ppu.startOAMDMA(value); // Delegate to PPU
+                }
             } else if (address == 0x4016) { // Controller 1 Strobe / Data
                 if (controller1 != null) controller1.write(value);
             } else if (address == 0x4017) { // APU Frame Counter Control / Controller 2 Strobe
@@ -75,6 +156,9 @@ public class CPUBus implements Bus {
                 if (apu != null) apu.writeRegister(address, (byte) value);
             }
         } else if (address >= 0x4020) { // Cartridge space (often $6000+ or $8000+ depending on mapper)
+            if (ppu != null) {
+                ppu.catchUp(); // Mapper registers may switch CHR banks or reload a scanline counter the PPU clocks
+            }
             cartridge.cpuWrite(address, value);
         }
     }
@@ -82,6 +166,7 @@ public class CPUBus implements Bus {
     @Override
     public void loadWRamState(WRAM wram) {
         this.wram.loadMemoryState(wram);
+        mapWram(); // The implementation may have swapped in a new array
     }
 
     public Controller getController1() {
@@ -103,4 +188,16 @@ public class CPUBus implements Bus {
     public APU getAPU() {
         return apu;
     }
+
+    public PPU getPPU() {
+        return ppu;
+    }
+
+    public Cartridge getCartridge() {
+        return cartridge;
+    }
+
+    public WRAM getWram() {
+        return wram;
+    }
 }
@@ -1,30 +1,51 @@
 package core;
 
+import mapper.BankSwitchListener;
+import mapper.BankedMapper;
+import mapper.IrqLine;
 import mapper.Mapper;
+import mapper.PpuMappingListener;
+import mapper.ScanlineCounter;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
-public class Cartridge {
+public final class Cartridge {
     private static final Logger logger = Logger.getLogger(Cartridge.class.getName());
     private static final int EIGHT_KB = 8192;
     private static final int SIXTEEN_KB = 16384;
     private static final int PRG_ROM_UNIT_SIZE = SIXTEEN_KB; // 16KB
     private static final int CHR_ROM_UNIT_SIZE = EIGHT_KB;  // 8KB
 
-    // ROM and RAM data
-    private final int[] prgRom;
-    private final int[] prgRam;
-    private final int[] chrRom;
-    private int[] chrRam;
+    // ROM and RAM data, one byte per address; reads mask with 0xFF
+    private final byte[] prgRom;
+    private final byte[] prgRam;
+    private final byte[] chrRom;
+    private final byte[] chrRam;
 
     // Configuration
     private final Mapper mapper;
+    private final BankedMapper bankedMapper; // Same as mapper when it is table-driven, for monomorphic accesses
     private final boolean useChrRam;
     private final boolean hasBatteryBackedRam;
     private final MirroringMode mirroringMode;
+    private final List<PpuMappingListener> ppuMappingListeners = new ArrayList<>();
 
     public Cartridge(
-            int[] prgRom,
-            int[] chrRom,
+            byte[] prgRom,
+            byte[] chrRom,
             Mapper mapper,
             boolean hasBatteryBackedRam,
             MirroringMode mirroringMode) {
@@ -43,138 +64,210 @@ public class Cartridge {
         this.prgRom = prgRom;
         this.chrRom = chrRom;
         this.mapper = mapper;
+        this.bankedMapper = mapper instanceof BankedMapper banked ? banked : null;
         useChrRam = chrRom.length == 0;
         this.hasBatteryBackedRam = hasBatteryBackedRam;
         this.mirroringMode = mirroringMode;
 
-        this.prgRam = new int[EIGHT_KB];
-
+        this.prgRam = new byte[EIGHT_KB];
+        this.chrRam = useChrRam ? new byte[CHR_ROM_UNIT_SIZE] : null;
+        mapper.connect(prgRom, prgRam, useChrRam ? chrRam : chrRom, useChrRam);
     }
 
+    // Each access goes through the final BankedMapper methods when it can. Those calls bind statically, while a
+    // call through the Mapper interface turns megamorphic once a few board types have been loaded.
     public int cpuRead(int address) {
-        if (address >= 0x8000 && address <= 0xFFFF) {
-            int index = mapper.mapPrgRomAddress(address);
-            if (index >= 0 && index < prgRom.length) {
-                return prgRom[index];
-            }
-        } else if (address >= 0x6000 && address <= 0x7FFF) {
-            return prgRam[address - 0x6000];
-        }
-        return 0;
+        BankedMapper banked = bankedMapper;
+        return banked != null ? banked.cpuRead(address) : mapper.cpuRead(address);
     }
 
-    //TODO handle this:
-    /*
-    Yes, in a more robust and flexible NES emulator design, it's generally better for the Mapper to handle the actual read and write operations for the cartridge's memory spaces (PRG ROM, PRG RAM, CHR ROM/RAM).
-
-        Here's why:
-
-
-        Encapsulation of Mapper Logic: Mappers can be complex. They don't just translate addresses; many have internal registers that control bank switching, mirroring, IRQs, etc. These registers are typically accessed via writes to specific addresses in the core.CPU's address space (often in the $8000-$FFFF range for PRG ROM control). If the mapper handles the write operations, it can directly process these register writes and update its internal state.
-        Handling Writes to ROM Space: core.CPU writes to the PRG ROM address range ($8000-$FFFF) are often intended for mapper registers. If the core.Cartridge class simply tries to write to its prgRom array (which should be read-only), this logic is missed. A Mapper handling the write can distinguish between an attempt to write to ROM (which it might ignore) and a write to one of its control registers.
-        PRG RAM Control: Some mappers also control PRG RAM banking or enable/disable PRG RAM. If the mapper handles reads/writes to the PRG RAM space ($6000-$7FFF), it can implement this logic. In your current core.Cartridge code, PRG RAM access bypasses the mapper.
-        Simplified core.Cartridge Class: The core.Cartridge class can become simpler, primarily acting as a container for the ROM/RAM data and the mapper instance. It would delegate memory access operations to the mapper.
-        To implement this, you would typically:
-
-
-        Modify the Mapper interface to include methods like cpuRead(int address), cpuWrite(int address, int value), ppuRead(int address), and ppuWrite(int address, int value).
-        Ensure that Mapper implementations have access to the necessary memory arrays (e.g., by passing them in the constructor or passing a reference to the core.Cartridge itself).
-        Update the core.Cartridge class to call these methods on its mapper instance for the relevant address ranges.
-        Ensure the core.CPUBus correctly routes all relevant core.CPU reads/writes (including those to $8000-$FFFF for mapper registers) to the core.Cartridge, which then delegates to the Mapper. Your current core.CPUBus does not seem to pass writes in the $8000-$FFFF range to the cartridge.
-        While your current approach (mapper for address translation, cartridge for data access) can work for simple mappers like NROM, it becomes less tenable for more complex mappers. Delegating full read/write handling to the mapper provides a cleaner and more extensible design.
-     */
     public void cpuWrite(int address, int value) {
-        if (address >= 0x6000 && address <= 0x7FFF) {
-            prgRam[address - 0x6000] = value;
+        BankedMapper banked = bankedMapper;
+        if (banked != null) {
+            banked.cpuWrite(address, value);
+        } else {
+            mapper.cpuWrite(address, value);
         }
     }
 
     public int ppuRead(int address) {
-        if (address >= 0x0000 && address <= 0x1FFF) {
-            int index = mapper.mapChrRomAddress(address);
-
-            if (useChrRam) {
-                if (chrRam == null) {
-                    chrRam = new int[CHR_ROM_UNIT_SIZE];
-                }
-                return index < chrRam.length ? chrRam[index] : 0;
-            } else {
-                return index < chrRom.length ? chrRom[index] : 0;
-            }
-        }
-        return 0;
+        BankedMapper banked = bankedMapper;
+        return banked != null ? banked.ppuRead(address) : mapper.ppuRead(address);
     }
 
     public void ppuWrite(int address, int value) {
-        if (address >= 0x0000 && address <= 0x1FFF && useChrRam) {
-            int index = mapper.mapChrRomAddress(address);
-            if (chrRam == null) {
-                chrRam = new int[CHR_ROM_UNIT_SIZE];
-            }
-            if (index >= 0 && index < chrRam.length) {
-                chrRam[index] = value;
+        BankedMapper banked = bankedMapper;
+        if (banked != null) {
+            banked.ppuWrite(address, value);
+        } else {
+            mapper.ppuWrite(address, value);
+        }
+        if (useChrRam) { // Writes to CHR ROM are ignored and change nothing
+            for (PpuMappingListener listener : ppuMappingListeners) {
+                listener.chrWritten(address);
             }
         }
     }
 
     public byte[] getSaveData() {
         if (hasBatteryBackedRam) {
-            byte[] saveData = new byte[prgRam.length];
-            for (int i = 0; i < prgRam.length; i++) {
-                saveData[i] = (byte) prgRam[i];
-            }
-            return saveData;
+            return prgRam.clone();
         }
         return new byte[0];
     }
 
     public void loadSaveData(byte[] saveData) {
         if (hasBatteryBackedRam && saveData.length == prgRam.length) {
-            for (int i = 0; i < prgRam.length; i++) {
-                prgRam[i] = saveData[i] & 0xFF;
-            }
+            System.arraycopy(saveData, 0, prgRam, 0, prgRam.length);
         }
     }
 
+    /**
+     * Nametable mirroring in effect now. Boards like MMC1 and AxROM switch it at runtime; listeners registered with
+     * {@link #addPpuMappingListener} hear about every change.
+     */
     public MirroringMode getMirroringMode() {
-        return mirroringMode;
+        MirroringMode mapperMirroring = mapper.getMirroringMode();
+        // Four-screen boards carry their own nametable RAM, which overrides whatever the mapper selects
+        if (mapperMirroring == null || mirroringMode == MirroringMode.FOUR_SCREEN) {
+            return mirroringMode;
+        }
+        return mapperMirroring;
     }
 
     public int getMapperId() {
         return mapper.getId();
     }
 
-public static Cartridge fromNesFile(byte[] fileData) {
-        logger.info("Processing NES ROM file of size " + fileData.length + " bytes");
+    /**
+     * Offset into PRG ROM currently mapped at {@code cpuAddress} ($8000-$FFFF). Together with the CPU address it
+     * identifies code independently of which banks are switched in.
+     */
+    public int getPrgRomOffset(int cpuAddress) {
+        return mapper.mapPrgRomAddress(cpuAddress);
+    }
+
+    // Backing arrays for the CPU bus memory map
+    byte[] getPrgRom() {
+        return prgRom;
+    }
+
+    byte[] getPrgRam() {
+        return prgRam;
+    }
+
+    /**
+     * CHR RAM, or CHR ROM on boards without RAM: the backing array for the PPU memory map. Only the cartridge
+     * writes to it, so that CHR RAM writes reach the listeners.
+     */
+    public byte[] getChrMemory() {
+        return useChrRam ? chrRam : chrRom;
+    }
+
+    /**
+     * Offset into {@link #getChrMemory()} currently mapped at {@code ppuAddress} ($0000-$1FFF), or -1 when the
+     * mapper decodes CHR accesses itself and every access has to go through {@link #ppuRead}.
+     */
+    public int getChrOffset(int ppuAddress) {
+        return bankedMapper != null ? bankedMapper.mapChrRomAddress(ppuAddress) : -1;
+    }
+
+    public void addBankSwitchListener(BankSwitchListener listener) {
+        mapper.addBankSwitchListener(listener);
+    }
+
+    /**
+     * Registers a listener for CHR RAM writes and for the mapper's CHR bank and mirroring changes.
+     */
+    public void addPpuMappingListener(PpuMappingListener listener) {
+        ppuMappingListeners.add(listener);
+        mapper.addPpuMappingListener(listener);
+    }
+
+    public void connectIrqLine(IrqLine irqLine) {
+        mapper.connectIrqLine(irqLine);
+    }
+
+    /**
+     * The mapper's A12 scanline counter, or null if the board has none.
+     */
+    public ScanlineCounter getScanlineCounter() {
+        return mapper instanceof ScanlineCounter counter ? counter : null;
+    }
+
+    /**
+     * Loads a cartridge from the contents of a .nes file already in memory.
+     */
+    public static Cartridge fromNesFile(byte[] fileData) {
+        return fromNesFile(ByteBuffer.wrap(fileData),
+                (offset, length) -> Arrays.copyOfRange(fileData, offset, offset + length));
+    }
+
+    /**
+     * Loads a cartridge from a .nes file. The file is memory-mapped read-only: the header is parsed straight from
+     * the mapping and PRG and CHR ROM are copied out of it in one bulk transfer each, so nothing is read twice.
+     * Cartridges loaded from the same unchanged file share their ROM arrays.
+     */
+    public static Cartridge fromNesFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer fileData = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String fileKey = path.toRealPath() + ":" + channel.size() + ":" + Files.getLastModifiedTime(path).toMillis();
+            return fromNesFile(fileData,
+                    (offset, length) -> sharedRomImage(fileKey + ":" + offset, fileData, offset, length));
+        }
+    }
+
+    private interface RomImageReader {
+        byte[] read(int offset, int length);
+    }
+
+    // ROM is never written, so every cartridge loaded from the same file can use the same arrays.
+    private static final Map<String, WeakReference<byte[]>> sharedRomImages = new HashMap<>();
+
+    private static synchronized byte[] sharedRomImage(String key, ByteBuffer fileData, int offset, int length) {
+        WeakReference<byte[]> reference = sharedRomImages.get(key);
+        byte[] image = reference != null ? reference.get() : null;
+        if (image == null) {
+            image = new byte[length];
+            fileData.get(offset, image);
+            sharedRomImages.values().removeIf(stale -> stale.get() == null);
+            sharedRomImages.put(key, new WeakReference<>(image));
+        }
+        return image;
+    }
+
+    private static Cartridge fromNesFile(ByteBuffer fileData, RomImageReader romImages) {
+        int fileSize = fileData.limit();
+        logger.info(() -> "Processing NES ROM file of size " + fileSize + " bytes");
 
         // Validate iNES header
-        if (fileData.length < 16 ||
-            fileData[0] != 'N' || fileData[1] != 'E' || fileData[2] != 'S' || fileData[3] != 0x1A) {
+        if (fileSize < 16 ||
+            fileData.get(0) != 'N' || fileData.get(1) != 'E' || fileData.get(2) != 'S' || fileData.get(3) != 0x1A) {
             logger.severe("Invalid NES ROM file format. Header validation failed.");
             throw new IllegalArgumentException("Invalid NES ROM file format");
         }
 
         logger.info("Valid iNES header found: 'NES\\u001A'");
 
-        int prgRomSizeIn16kb = fileData[4];
-        int chrRomSizeIn8kb = fileData[5];
-        int flags6 = fileData[6];
-        int flags7 = fileData[7];
+        int prgRomSizeIn16kb = fileData.get(4) & 0xFF;
+        int chrRomSizeIn8kb = fileData.get(5) & 0xFF;
+        int flags6 = fileData.get(6) & 0xFF;
+        int flags7 = fileData.get(7) & 0xFF;
 
-        logger.info(String.format("ROM configuration: PRG ROM: %d x 16KB, CHR ROM: %d x 8KB",
+        logger.info(() -> String.format("ROM configuration: PRG ROM: %d x 16KB, CHR ROM: %d x 8KB",
                     prgRomSizeIn16kb, chrRomSizeIn8kb));
-        logger.info(String.format("Flags: byte 6: 0x%02X, byte 7: 0x%02X", flags6, flags7));
+        logger.info(() -> String.format("Flags: byte 6: 0x%02X, byte 7: 0x%02X", flags6, flags7));
 
         // Extract mapper ID (low nibble from byte 6, high nibble from byte 7)
-        int mapperId = ((flags7 & 0xF0) | (flags6 >> 4)) & 0xFF;
-        logger.info("Mapper ID: " + mapperId);
+        int mapperId = (flags7 & 0xF0) | (flags6 >> 4);
+        logger.info(() -> "Mapper ID: " + mapperId);
 
         boolean verticalMirroring = (flags6 & 0x01) == 0x01;
         boolean hasBatteryBackedRAM = (flags6 & 0x02) == 0x02;
         boolean hasTrainer = (flags6 & 0x04) == 0x04;
         boolean fourScreenVRAM = (flags6 & 0x08) == 0x08;
 
-        logger.info(String.format("ROM features: Vertical mirroring: %b, Battery-backed RAM: %b, Trainer: %b, Four-screen VRAM: %b",
+        logger.info(() -> String.format("ROM features: Vertical mirroring: %b, Battery-backed RAM: %b, Trainer: %b, Four-screen VRAM: %b",
                     verticalMirroring, hasBatteryBackedRAM, hasTrainer, fourScreenVRAM));
 
         int headerSize = 16;
@@ -182,35 +275,29 @@ public static Cartridge fromNesFile(byte[] fileData) {
         int prgRomSize = prgRomSizeIn16kb * PRG_ROM_UNIT_SIZE;
         int chrRomSize = chrRomSizeIn8kb * CHR_ROM_UNIT_SIZE;
 
-        logger.info(String.format("Memory layout: PRG ROM: %d bytes, CHR ROM: %d bytes, Trainer: %d bytes",
+        logger.info(() -> String.format("Memory layout: PRG ROM: %d bytes, CHR ROM: %d bytes, Trainer: %d bytes",
                     prgRomSize, chrRomSize, trainerSize));
 
         // Validate that the file is large enough to contain all the data specified in the header
         int expectedTotalSize = headerSize + trainerSize + prgRomSize + chrRomSize;
-        if (fileData.length < expectedTotalSize) {
-            logger.severe("File data is smaller than expected based on header information. Expected: " +
-                          expectedTotalSize + ", Got: " + fileData.length);
+        if (fileSize < expectedTotalSize) {
+            logger.severe(() -> "File data is smaller than expected based on header information. Expected: " +
+                          expectedTotalSize + ", Got: " + fileSize);
             throw new IllegalArgumentException("NES ROM file is truncated or header is inconsistent with file size.");
         }
 
-        int[] prgRom = new int[prgRomSize];
         int prgStart = headerSize + trainerSize;
-        logger.info("Loading PRG ROM data from offset " + prgStart);
-        for (int i = 0; i < prgRomSize; i++) {
-            prgRom[i] = fileData[prgStart + i] & 0xFF;
-        }
+        logger.info(() -> "Loading PRG ROM data from offset " + prgStart);
+        byte[] prgRom = romImages.read(prgStart, prgRomSize);
 
-        int[] chrRom;
+        byte[] chrRom;
         if (chrRomSize > 0) {
-            chrRom = new int[chrRomSize];
             int chrStart = prgStart + prgRomSize;
-            logger.info("Loading CHR ROM data from offset " + chrStart);
-            for (int i = 0; i < chrRomSize; i++) {
-                chrRom[i] = fileData[chrStart + i] & 0xFF;
-            }
+            logger.info(() -> "Loading CHR ROM data from offset " + chrStart);
+            chrRom = romImages.read(chrStart, chrRomSize);
         } else {
             logger.info("No CHR ROM found, game will use CHR RAM");
-            chrRom = new int[0];
+            chrRom = new byte[0];
         }
 
         MirroringMode mirroringMode;
@@ -219,10 +306,10 @@ public static Cartridge fromNesFile(byte[] fileData) {
         } else {
             mirroringMode = verticalMirroring ? MirroringMode.VERTICAL : MirroringMode.HORIZONTAL;
         }
-        logger.info("Using mirroring mode: " + mirroringMode);
+        logger.info(() -> "Using mirroring mode: " + mirroringMode);
 
         Mapper mapper = MapperFactory.createMapper(mapperId, prgRomSize, chrRomSize);
-        logger.info("Created mapper: " + mapper.getClass().getSimpleName() + " (ID: " + mapperId + ")");
+        logger.info(() -> "Created mapper: " + mapper.getClass().getSimpleName() + " (ID: " + mapperId + ")");
 
         Cartridge cartridge = new Cartridge(prgRom, chrRom, mapper, hasBatteryBackedRAM, mirroringMode);
         logger.info("core.Cartridge loaded successfully");
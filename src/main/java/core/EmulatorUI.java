@@ -1,5 +1,7 @@
 package core;
 
+import core.pipeline.Frame;
+import core.pipeline.FramePipeline;
 import ppu.PPU;
 
 import javax.swing.*;
@@ -7,7 +9,9 @@ import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.concurrent.locks.LockSupport;
 
 public class EmulatorUI extends JFrame {
     private static final int SCALE = 2;
@@ -20,12 +24,22 @@ public class EmulatorUI extends JFrame {
     private final core.apu.APU apu; // Updated to specific package
     private final Controller controller;
 
-    private boolean isRunning = false;
+    // Emulation and presentation run on their own threads: emulation produces the next frame while presentation
+    // scales and shows the last one, which it gets from the PPU's triple buffer.
+    private static final long PRESENTATION_WAIT_NANOS = 2_000_000;
+    private final FramePipeline pipeline = new FramePipeline();
+    private final Scheduler scheduler;
+    private volatile boolean isRunning = false;
+    private volatile long framesEmulated;
+    private volatile long frameCompletedNanos;
+    private volatile Thread emulationThread;
+    private volatile Thread presentationThread;
 
     public EmulatorUI(CPU cpu, PPU ppu, core.apu.APU apu) { // Added APU to constructor
         this.cpu = cpu;
         this.ppu = ppu;
         this.apu = apu; // Store APU instance
+        this.scheduler = new Scheduler(cpu, ppu);
         this.controller = new Controller();
 
         setTitle("NES Emulator");
@@ -152,27 +166,48 @@ public class EmulatorUI extends JFrame {
         isRunning = true;
         setVisible(true);
 
-        Thread renderThread = new Thread(this::renderLoop);
-        renderThread.start();
+        pipeline.start();
+        presentationThread = new Thread(this::presentationLoop, "presentation");
+        presentationThread.start();
+        emulationThread = new Thread(this::emulationLoop, "emulation");
+        emulationThread.start();
     }
 
     public void stop() {
         isRunning = false;
+        LockSupport.unpark(presentationThread);
+        // Both loops must have finished before a following start() spawns new ones
+        join(emulationThread);
+        join(presentationThread);
+        emulationThread = null;
+        presentationThread = null;
+        pipeline.stop();
         if (apu != null) {
             apu.stopAudio();
         }
     }
 
-    private void renderLoop() {
-        canvas.createBufferStrategy(2);
-        BufferStrategy bufferStrategy = canvas.getBufferStrategy();
+    private static void join(Thread thread) {
+        if (thread == null) return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Latency counters and optional stages (filters, recorders, encoders) of the frame loop.
+     */
+    public FramePipeline getPipeline() {
+        return pipeline;
+    }
 
+    private void emulationLoop() {
         long wallClock_lastTime = System.nanoTime(); // Tracks wall-clock time for the accumulator
         final double nsPerFrame = 1_000_000_000.0 / 60.0; // Target duration of one NES frame (for emulation and visuals)
         double accumulatorNs = 0.0; // Accumulates unprocessed real time
 
-        final int cpuCyclesPerFrame = 29833; // Defined CPU cycles per NES frame
-
         while (isRunning) {
             long wallClock_currentTime = System.nanoTime(); // Current wall-clock time at the start of this iteration
             double elapsedRealNs = (double)(wallClock_currentTime - wallClock_lastTime);
@@ -189,23 +224,20 @@ public class EmulatorUI extends JFrame {
 
             // Emulate NES frames if enough accumulated time
             while (accumulatorNs >= nsPerFrame) {
-                int cyclesThisEmulationStep = 0;
-                while (cyclesThisEmulationStep < cpuCyclesPerFrame) {
-                    cpu.runCycle(); // CPU cycle now also clocks the APU internally
-                    ppu.runCycle(); // PPU runs 3x CPU speed
-                    ppu.runCycle();
-                    ppu.runCycle();
-                    cyclesThisEmulationStep++;
-                }
+                long frameStart = System.nanoTime();
+                scheduler.runFrame();
                 accumulatorNs -= nsPerFrame;
-            }
 
-            // Render the current state once per visual frame iteration
-            render(bufferStrategy);
+                frameCompletedNanos = System.nanoTime();
+                pipeline.getEmulationLatency().record(frameCompletedNanos - frameStart);
+                framesEmulated++;
+                LockSupport.unpark(presentationThread);
+            }
 
             // Sleep logic to maintain overall visual frame rate and avoid busy-waiting
             long visualFrameProcessingEndTime = System.nanoTime();
-            // wallClock_currentTime was the time at the START of this visual frame's processing (emulation + render)
+            // wallClock_currentTime was the time at the START of this visual frame's processing (emulation only;
+            // presentation runs on its own thread)
             long iterationActualDurationNs = visualFrameProcessingEndTime - wallClock_currentTime;
 
             if (iterationActualDurationNs < nsPerFrame) {
@@ -224,11 +256,44 @@ public class EmulatorUI extends JFrame {
             // If iterationActualDurationNs >= nsPerFrame, we are on time or lagging behind visually,
             // so no sleep is performed. The accumulator handles emulation catch-up.
         }
+    }
+
+    // Shows the latest completed frame whenever emulation finishes one. A frame that completes while the previous
+    // one is still being shown replaces any older one waiting, so presentation never holds up emulation.
+    private void presentationLoop() {
+        canvas.createBufferStrategy(2);
+        BufferStrategy bufferStrategy = canvas.getBufferStrategy();
+        long presented = 0;
+
+        while (isRunning) {
+            long emulated = framesEmulated;
+            if (emulated == presented) {
+                LockSupport.parkNanos(PRESENTATION_WAIT_NANOS);
+                continue;
+            }
+            presented = emulated;
+            long completedNanos = frameCompletedNanos;
+
+            Image frame = ppu.getCompletedFrame(); // Never the frame being drawn, so it can't tear
+            render(bufferStrategy, frame);
+            pipeline.getPresentationLatency().record(System.nanoTime() - completedNanos);
+            if (pipeline.hasStages()) {
+                // The PPU draws into this image again once a newer frame is taken, so stages get their own copy
+                pipeline.submit(new Frame(presented, completedNanos, pixels(frame)));
+            }
+        }
 
         bufferStrategy.dispose();
     }
 
-    private void render(BufferStrategy bufferStrategy) {
+    private static int[] pixels(Image frame) {
+        if (frame instanceof BufferedImage image) {
+            return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        }
+        return new int[WIDTH * HEIGHT];
+    }
+
+    private void render(BufferStrategy bufferStrategy, Image frame) {
         do {
             do {
                 Graphics g = bufferStrategy.getDrawGraphics();
@@ -236,7 +301,7 @@ public class EmulatorUI extends JFrame {
                 g.setColor(Color.BLACK);
                 g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
 
-                g.drawImage(ppu.getFrameBuffer(), 0, 0, WIDTH * SCALE, HEIGHT * SCALE, null);
+                g.drawImage(frame, 0, 0, WIDTH * SCALE, HEIGHT * SCALE, null);
 
                 g.dispose();
             } while (bufferStrategy.contentsRestored());
@@ -0,0 +1,23 @@
+package core;
+
+/**
+ * How the CPU advances when it is clocked.
+ */
+public enum ExecutionMode {
+    /**
+     * Every call to {@link CPU#runCycle()} performs exactly one bus cycle of the current instruction.
+     * Needed for games that depend on sub-instruction bus timing.
+     */
+    CYCLE,
+    /**
+     * Whole instructions are executed at once by {@link CPU#runInstruction()}, which returns their
+     * cycle cost so the rest of the system can be caught up in bulk.
+     */
+    INSTRUCTION,
+    /**
+     * Like {@link #INSTRUCTION}, but frequently executed blocks of PRG ROM code are translated to JVM bytecode
+     * and run as a whole. {@link CPU#runInstruction()} then returns the cycles of the whole block. Interrupts
+     * are only taken between blocks.
+     */
+    RECOMPILED,
+}
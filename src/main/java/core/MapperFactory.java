@@ -1,13 +1,28 @@
 package core;
 
+import mapper.AxROMMapper;
+import mapper.CNROMMapper;
+import mapper.MMC1Mapper;
+import mapper.MMC3Mapper;
 import mapper.Mapper;
 import mapper.NROMMapper;
+import mapper.UxROMMapper;
 
 public class MapperFactory {
     public static Mapper createMapper(int mapperId, int prgRomSize, int chrRomSize) {
         switch (mapperId) {
             case 0:
                 return new NROMMapper(prgRomSize);
+            case 1:
+                return new MMC1Mapper(prgRomSize, chrRomSize);
+            case 2:
+                return new UxROMMapper(prgRomSize, chrRomSize);
+            case 3:
+                return new CNROMMapper(prgRomSize, chrRomSize);
+            case 4:
+                return new MMC3Mapper(prgRomSize, chrRomSize);
+            case 7:
+                return new AxROMMapper(prgRomSize, chrRomSize);
             default:
                 throw new IllegalArgumentException("Unsupported mapper number: " + mapperId);
         }
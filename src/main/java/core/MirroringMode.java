@@ -4,6 +4,8 @@ public enum MirroringMode {
     HORIZONTAL,
     VERTICAL,
     FOUR_SCREEN,
+    SINGLE_SCREEN_LOWER,
+    SINGLE_SCREEN_UPPER,
 }
 
 
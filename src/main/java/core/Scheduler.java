@@ -0,0 +1,107 @@
+package core;
+
+import ppu.PPU;
+
+import java.util.Arrays;
+
+/**
+ * Drives the CPU and PPU from a master clock instead of stepping them in lockstep. The master cycle counter only
+ * moves forward; a CPU cycle is 12 master cycles and a PPU dot 4, as on an NTSC console. Pending events sit in a
+ * small queue ordered by the master cycle they are due at. Between events the CPU runs in one batch and the PPU
+ * is only handed the dots (it runs them when something needs them, see {@link PPU#addDots(int)}). When an event
+ * comes due, the component that raises it is brought up to date.
+ * <p>
+ * The APU needs no entry of its own: the CPU clocks it as it runs and ends a batch by itself when the APU raises an
+ * IRQ or the DMC stalls it for a fetch, as it does for OAM DMA stalls.
+ */
+public final class Scheduler {
+    public static final int MASTER_CYCLES_PER_CPU_CYCLE = 12;
+    public static final int MASTER_CYCLES_PER_DOT = 4;
+    // 262 lines of 341 dots, less the dot odd frames skip while rendering, on average half a dot per frame
+    public static final long MASTER_CYCLES_PER_FRAME = 262 * 341 * MASTER_CYCLES_PER_DOT - MASTER_CYCLES_PER_DOT / 2;
+
+    public enum Event {
+        /** The end of a frame of wall-clock time: the PPU is caught up so the frame can be shown. */
+        FRAME_END,
+        /** The PPU's next VBlank NMI, or the next scanline counter clock that may raise a mapper IRQ. */
+        PPU
+    }
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final CPU cpu;
+    private final PPU ppu;
+    private final long[] due = new long[Event.values().length]; // Master cycle each event is due at, or NONE
+    private long masterCycle;
+    private long frames;
+
+    public Scheduler(CPU cpu, PPU ppu) {
+        this.cpu = cpu;
+        this.ppu = ppu;
+        Arrays.fill(due, NONE);
+        due[Event.FRAME_END.ordinal()] = MASTER_CYCLES_PER_FRAME;
+    }
+
+    public long getMasterCycle() {
+        return masterCycle;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Master cycle the event is due at, or {@link Long#MAX_VALUE} if it isn't scheduled.
+     */
+    public long getDue(Event event) {
+        return due[event.ordinal()];
+    }
+
+    /**
+     * Runs until the next {@link Event#FRAME_END}, with the PPU caught up at the end.
+     */
+    public void runFrame() {
+        long frame = frames;
+        while (frames == frame) {
+            runBatch();
+        }
+    }
+
+    // Runs the CPU up to the earliest event, then handles every event that has come due.
+    private void runBatch() {
+        due[Event.PPU.ordinal()] = masterCycle + (long) ppu.dotsUntilNextEvent(false) * MASTER_CYCLES_PER_DOT;
+        long next = due[nextEvent().ordinal()];
+        // A batch never reaches past the PPU's event, which keeps this exact to lockstep stepping
+        int budget = (int) Math.max(Math.min((next - masterCycle) / MASTER_CYCLES_PER_CPU_CYCLE, Integer.MAX_VALUE), 1);
+        int cpuCycles = cpu.runCycles(budget); // Also clocks the APU
+        masterCycle += (long) cpuCycles * MASTER_CYCLES_PER_CPU_CYCLE;
+        ppu.addDots(cpuCycles * (MASTER_CYCLES_PER_CPU_CYCLE / MASTER_CYCLES_PER_DOT));
+
+        for (Event event : Event.values()) {
+            if (masterCycle >= due[event.ordinal()]) {
+                handle(event);
+            }
+        }
+    }
+
+    private void handle(Event event) {
+        switch (event) {
+            case PPU -> ppu.catchUp(); // Predicted again before the next batch
+            case FRAME_END -> {
+                ppu.catchUp();
+                due[Event.FRAME_END.ordinal()] += MASTER_CYCLES_PER_FRAME;
+                frames++;
+            }
+        }
+    }
+
+    private Event nextEvent() {
+        Event next = Event.FRAME_END;
+        for (Event event : Event.values()) {
+            if (due[event.ordinal()] < due[next.ordinal()]) {
+                next = event;
+            }
+        }
+        return next;
+    }
+}
@@ -7,5 +7,8 @@ public interface WRAM {
 
     void loadMemoryState(WRAM sourceMemory);
 
-    int[] getMemory();
+    /**
+     * The backing store, one byte per address. Values are read back masked with 0xFF.
+     */
+    byte[] getMemory();
 }
@@ -3,16 +3,16 @@ package core;
 import java.util.Arrays;
 
 public class WRAMImpl implements WRAM {
-    public int[] memory = new int[2048];
+    public byte[] memory = new byte[2048];
 
     public WRAMImpl() {
-        Arrays.fill(memory, 0);
+        Arrays.fill(memory, (byte) 0);
     }
 
     @Override
     public int read(int address) {
         if (address < 0x2000) {
-            return memory[address & 0x07FF];
+            return memory[address & 0x07FF] & 0xFF;
         }
         return 0;
     }
@@ -20,14 +20,14 @@ public class WRAMImpl implements WRAM {
     @Override
     public void write(int address, int value) {
         if (address < 0x2000) {
-            memory[address & 0x07FF] = value;
+            memory[address & 0x07FF] = (byte) value;
         }
     }
 
     @Override
     public void loadMemoryState(WRAM sourceMemory) {
         if (sourceMemory != null) {
-            int[] source = sourceMemory.getMemory();
+            byte[] source = sourceMemory.getMemory();
             if (source != null && source.length == memory.length) {
                 System.arraycopy(source, 0, memory, 0, memory.length);
             } else {
@@ -38,7 +38,7 @@ public class WRAMImpl implements WRAM {
     }
 
     @Override
-    public int[] getMemory() {
+    public byte[] getMemory() {
         return memory;
     }
 }
\ No newline at end of file
@@ -350,6 +350,24 @@ public class APU {
         }
     }
 
+    /**
+     * Lower bound for the number of CPU cycles the APU can be clocked before it raises an IRQ or the DMC
+     * requests a DMA stall. Used by the CPU to skip idle loops; 0 while the DMC is playing a sample.
+     */
+    public int cyclesUntilNextEvent() {
+        if (!dmc.isIdle()) {
+            return 0;
+        }
+        if (sequenceMode || irqInhibitFlag || frameInterruptFlag) {
+            return Integer.MAX_VALUE;
+        }
+        int irqStep = NTSC_FRAME_COUNTER_SEQUENCE_4_STEP[3];
+        if (frameSequenceCounter < irqStep) {
+            return irqStep - frameSequenceCounter - 1;
+        }
+        return NTSC_FRAME_COUNTER_PERIOD_4_STEP - frameSequenceCounter + irqStep - 1;
+    }
+
     public boolean isDmcIrqAsserted() {
         return dmc.isIRQAsserted();
     }
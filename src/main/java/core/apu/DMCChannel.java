@@ -208,6 +208,14 @@ public class DMCChannel {
         return bytesRemaining > 0;
     }
 
+    /**
+     * True if clocking the channel can neither request a DMA stall nor raise an IRQ.
+     */
+    public boolean isIdle() {
+        return !pendingStallRequest && !needsToFetchByte && stallCyclesRemaining == 0
+                && (!isEnabled || (bytesRemaining == 0 && !loopFlag && !irqEnabled));
+    }
+
     public void clearIRQ() {
         this.irqPending = false;
     }
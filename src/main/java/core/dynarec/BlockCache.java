@@ -0,0 +1,48 @@
+package core.dynarec;
+
+import core.Cartridge;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled blocks of one cartridge, shared by every CPU that runs it. Blocks are keyed by the PRG ROM offset
+ * they were decoded from and the CPU address they run at, so a block survives bank switches and is reused
+ * as soon as its bank is mapped back in at the same address.
+ */
+public final class BlockCache {
+    // Cached for blocks the compiler rejected, so they aren't decoded again.
+    static final CompiledBlock NOT_COMPILABLE = state -> 0;
+
+    private static final Map<Cartridge, BlockCache> CACHES = new WeakHashMap<>();
+
+    private final BlockCompiler compiler = new BlockCompiler();
+    private final Map<Long, CompiledBlock> blocks = new ConcurrentHashMap<>();
+
+    private BlockCache() {
+    }
+
+    public static synchronized BlockCache forCartridge(Cartridge cartridge) {
+        return CACHES.computeIfAbsent(cartridge, key -> new BlockCache());
+    }
+
+    /**
+     * Returns the block starting at {@code cpuAddress} ($8000-$FFFF) with the banks currently mapped in,
+     * compiling it on first use, or {@link #NOT_COMPILABLE}.
+     */
+    CompiledBlock getOrCompile(Cartridge cartridge, int cpuAddress) {
+        long key = ((long) cartridge.getPrgRomOffset(cpuAddress) << 16) | cpuAddress;
+        return blocks.computeIfAbsent(key, k -> {
+            CompiledBlock block = compiler.compile(cpuAddress, cartridge::cpuRead);
+            return block != null ? block : NOT_COMPILABLE;
+        });
+    }
+
+    /**
+     * Number of blocks compiled so far, not counting rejected ones.
+     */
+    public int getCompiledBlockCount() {
+        return (int) blocks.values().stream().filter(block -> block != NOT_COMPILABLE).count();
+    }
+}
@@ -0,0 +1,494 @@
+package core.dynarec;
+
+import core.AddressingMode;
+import core.CPU;
+import core.Instruction;
+import core.dynarec.ClassFileWriter.Code;
+import core.dynarec.ClassFileWriter.Label;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static core.dynarec.ClassFileWriter.Opcodes.*;
+
+/**
+ * Translates a 6502 basic block into a hidden class implementing {@link CompiledBlock}.
+ *
+ * <p>A block starts at a given address and runs straight through until it includes a control transfer
+ * (branch, JMP, JSR, RTS) or an instruction after which IRQs have to be polled again (CLI, PLP). It stops
+ * before BRK, RTI and unofficial opcodes, after {@link #MAX_INSTRUCTIONS} instructions, and before
+ * leaving the 8KB page it started in, so a block never depends on more than one PRG bank.</p>
+ *
+ * <p>Zero page, stack and absolute RAM addresses are accessed straight from the RAM array; only
+ * addresses that may be outside RAM go through {@code Bus.read} / {@code Bus.write}. After every such
+ * write the block checks {@link BlockState#exitRequested} and stops at that instruction boundary.
+ * Blocks that are mostly I/O register accesses are not worth compiling and are rejected.</p>
+ */
+public final class BlockCompiler {
+    public static final int MAX_INSTRUCTIONS = 32;
+
+    private static final String STATE = "core/dynarec/BlockState";
+    private static final int PAGE_MASK = 0xE000;
+    private static final int PAGE_SIZE = 0x2000;
+
+    // Locals of run(BlockState)
+    private static final int STATE_LOCAL = 1;
+    private static final int EXTRA_CYCLES = 2; // page crossings found at run time
+    private static final int ADDRESS = 3;
+    private static final int BASE = 4;
+    private static final int VALUE = 5;
+    private static final int MAX_LOCALS = 6;
+    private static final int MAX_STACK = 12;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private record DecodedInstruction(int address, CPU.OpcodeInfo info, int operand, int length) {
+        Instruction instruction() {
+            return info.instruction();
+        }
+
+        AddressingMode mode() {
+            return info.addressingMode();
+        }
+
+        int next() {
+            return (address + length) & 0xFFFF;
+        }
+    }
+
+    /**
+     * Compiles the block starting at {@code startAddress}.
+     *
+     * @param memory reads the (side-effect free) PRG bytes the block is decoded from
+     * @return the compiled block, or null if the block is empty or dominated by I/O register accesses
+     */
+    public CompiledBlock compile(int startAddress, IntUnaryOperator memory) {
+        List<DecodedInstruction> instructions = decode(startAddress, memory);
+        if (instructions.isEmpty() || isIoHeavy(instructions)) {
+            return null;
+        }
+        byte[] classBytes = generate(startAddress, instructions);
+        try {
+            MethodHandles.Lookup blockClass = LOOKUP.defineHiddenClass(classBytes, true);
+            return (CompiledBlock) blockClass.findConstructor(blockClass.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException(String.format("Failed to compile block at 0x%04X", startAddress), e);
+        }
+    }
+
+    private static List<DecodedInstruction> decode(int startAddress, IntUnaryOperator memory) {
+        List<DecodedInstruction> instructions = new ArrayList<>();
+        int pageEnd = (startAddress & PAGE_MASK) + PAGE_SIZE;
+        int address = startAddress;
+        while (instructions.size() < MAX_INSTRUCTIONS) {
+            CPU.OpcodeInfo info = CPU.describeOpcode(memory.applyAsInt(address) & 0xFF);
+            if (info == null || info.instruction() == Instruction.BRK || info.instruction() == Instruction.RTI) {
+                break;
+            }
+            int length = 1 + info.addressingMode().getOperandBytes();
+            if (address + length > pageEnd) {
+                break;
+            }
+            int operand = 0;
+            for (int i = 1; i < length; i++) {
+                operand |= (memory.applyAsInt(address + i) & 0xFF) << (8 * (i - 1));
+            }
+            DecodedInstruction decoded = new DecodedInstruction(address, info, operand, length);
+            instructions.add(decoded);
+            if (endsBlock(decoded.instruction())) {
+                break;
+            }
+            address += length;
+        }
+        return instructions;
+    }
+
+    private static boolean endsBlock(Instruction instruction) {
+        return switch (instruction) {
+            case BCC, BCS, BEQ, BMI, BNE, BPL, BVC, BVS, JMP, JSR, RTS, CLI, PLP -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean transfersControl(Instruction instruction) {
+        return instruction != Instruction.CLI && instruction != Instruction.PLP && endsBlock(instruction);
+    }
+
+    // A polling loop like "LDA $2002 / BPL" gains nothing from compilation and needs exact interleaving with the PPU.
+    private static boolean isIoHeavy(List<DecodedInstruction> instructions) {
+        int ioAccesses = 0;
+        for (DecodedInstruction instruction : instructions) {
+            switch (instruction.mode()) {
+                case ABS, ABS_X, ABS_Y -> {
+                    if (instruction.operand() >= 0x2000 && instruction.operand() < 0x6000
+                            && instruction.instruction() != Instruction.JMP && instruction.instruction() != Instruction.JSR) {
+                        ioAccesses++;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return ioAccesses * 4 > instructions.size();
+    }
+
+    private static byte[] generate(int startAddress, List<DecodedInstruction> instructions) {
+        ClassFileWriter classFile = new ClassFileWriter(
+                String.format("core/dynarec/Block$%04X", startAddress), "core/dynarec/CompiledBlock");
+        Code code = new Code(classFile);
+        new Emitter(code).emitBlock(instructions);
+        classFile.addMethod("run", "(L" + STATE + ";)I", code, MAX_STACK, MAX_LOCALS);
+        return classFile.toBytes();
+    }
+
+    private static final class Emitter {
+        private final Code code;
+        // Cycles of the instructions emitted so far, without run-time page crossing penalties
+        private int staticCycles;
+
+        Emitter(Code code) {
+            this.code = code;
+        }
+
+        void emitBlock(List<DecodedInstruction> instructions) {
+            code.pushInt(0);
+            code.op(ISTORE, EXTRA_CYCLES);
+            for (DecodedInstruction instruction : instructions) {
+                emit(instruction);
+            }
+            DecodedInstruction last = instructions.get(instructions.size() - 1);
+            if (!transfersControl(last.instruction())) {
+                emitExit(last.next());
+            }
+        }
+
+        private void emit(DecodedInstruction in) {
+            staticCycles += baseCycles(in);
+            Instruction instruction = in.instruction();
+            String helper = instruction.name().toLowerCase();
+            switch (instruction) {
+                case LDA, LDX, LDY, ORA, EOR, AND, ADC, SBC, CMP, CPX, CPY, BIT -> {
+                    code.op(ALOAD_1);
+                    emitReadOperand(in);
+                    code.invokeVirtual(STATE, helper, "(I)V");
+                }
+                case STA -> emitStore(in, "a");
+                case STX -> emitStore(in, "x");
+                case STY -> emitStore(in, "y");
+                case ASL, LSR, ROL, ROR, INC, DEC -> emitReadModifyWrite(in, helper);
+                case TAX, TAY, TSX, TXA, TXS, TYA, PHA, PHP, PLA, PLP, DEX, DEY, INX, INY,
+                     CLC, CLD, CLI, CLV, SEC, SED, SEI, NOP -> {
+                    code.op(ALOAD_1);
+                    code.invokeVirtual(STATE, helper, "()V");
+                }
+                case JMP -> {
+                    if (in.mode() == AddressingMode.IND) {
+                        code.op(ALOAD_1);
+                        code.pushInt(in.operand());
+                        code.invokeVirtual(STATE, "jmpIndirect", "(I)V");
+                        emitReturn(0);
+                    } else {
+                        emitExit(in.operand());
+                    }
+                }
+                case JSR -> {
+                    code.op(ALOAD_1);
+                    code.pushInt((in.address() + 2) & 0xFFFF);
+                    code.invokeVirtual(STATE, "jsr", "(I)V");
+                    emitExit(in.operand());
+                }
+                case RTS -> {
+                    code.op(ALOAD_1);
+                    code.invokeVirtual(STATE, "rts", "()V");
+                    emitReturn(0);
+                }
+                case BCC -> emitBranch(in, "carry", false);
+                case BCS -> emitBranch(in, "carry", true);
+                case BNE -> emitBranch(in, "zero", false);
+                case BEQ -> emitBranch(in, "zero", true);
+                case BPL -> emitBranch(in, "negative", false);
+                case BMI -> emitBranch(in, "negative", true);
+                case BVC -> emitBranch(in, "overflow", false);
+                case BVS -> emitBranch(in, "overflow", true);
+                default -> throw new IllegalStateException("Not compilable: " + instruction);
+            }
+        }
+
+        // The opcode table counts the optional cycles of page-crossing reads and taken branches.
+        private static int baseCycles(DecodedInstruction in) {
+            if (endsBlock(in.instruction()) && in.mode() == AddressingMode.REL) {
+                return in.info().cycles() - 2;
+            }
+            boolean indexedRead = switch (in.mode()) {
+                case ABS_X, ABS_Y, IND_Y -> true;
+                default -> false;
+            };
+            boolean storeOrModify = switch (in.instruction()) {
+                case STA, STX, STY, ASL, LSR, ROL, ROR, INC, DEC -> true;
+                default -> false;
+            };
+            return indexedRead && !storeOrModify ? in.info().cycles() - 1 : in.info().cycles();
+        }
+
+        private void emitBranch(DecodedInstruction in, String flag, boolean takenWhenSet) {
+            int target = (in.next() + (byte) in.operand()) & 0xFFFF;
+            int takenCycles = 1 + ((target & 0xFF00) != (in.next() & 0xFF00) ? 1 : 0);
+            Label taken = code.newLabel();
+            code.op(ALOAD_1);
+            code.getField(STATE, flag, "Z");
+            code.jump(takenWhenSet ? IFNE : IFEQ, taken);
+            emitExit(in.next());
+            code.mark(taken);
+            emitSetPc(target);
+            emitReturn(takenCycles);
+        }
+
+        // Leaves the operand value of a read instruction on the stack.
+        private void emitReadOperand(DecodedInstruction in) {
+            int operand = in.operand();
+            switch (in.mode()) {
+                case IMM -> code.pushInt(operand);
+                case ZPG, ABS -> emitReadStatic(operand);
+                case ZPG_X, ZPG_Y -> {
+                    emitZeroPageIndexedAddress(in);
+                    emitRamLoad(() -> code.op(ILOAD, ADDRESS));
+                }
+                case ABS_X, ABS_Y -> {
+                    emitAbsoluteIndexedAddress(in);
+                    // Extra cycle if indexing crossed into the next page
+                    Label samePage = code.newLabel();
+                    code.op(ILOAD, ADDRESS);
+                    code.pushInt(0xFF00);
+                    code.op(IAND);
+                    code.pushInt(operand & 0xFF00);
+                    code.jump(IF_ICMPEQ, samePage);
+                    code.iinc(EXTRA_CYCLES, 1);
+                    code.mark(samePage);
+                    emitReadDynamic();
+                }
+                case IND_X -> {
+                    emitIndirectXAddress(in);
+                    emitReadDynamic();
+                }
+                case IND_Y -> {
+                    emitIndirectYAddress(in);
+                    Label samePage = code.newLabel();
+                    code.op(ILOAD, ADDRESS);
+                    code.op(ILOAD, BASE);
+                    code.op(IXOR);
+                    code.pushInt(0xFF00);
+                    code.op(IAND);
+                    code.jump(IFEQ, samePage);
+                    code.iinc(EXTRA_CYCLES, 1);
+                    code.mark(samePage);
+                    emitReadDynamic();
+                }
+                default -> throw new IllegalStateException("Unsupported read mode: " + in.mode());
+            }
+        }
+
+        private void emitStore(DecodedInstruction in, String register) {
+            emitWrite(in, () -> {
+                code.op(ALOAD_1);
+                code.getField(STATE, register, "I");
+            });
+        }
+
+        private void emitReadModifyWrite(DecodedInstruction in, String helper) {
+            if (in.mode() == AddressingMode.ACC) {
+                code.op(ALOAD_1);
+                code.op(ALOAD_1);
+                code.op(ALOAD_1);
+                code.getField(STATE, "a", "I");
+                code.invokeVirtual(STATE, helper, "(I)I");
+                code.putField(STATE, "a", "I");
+                return;
+            }
+            // Read into VALUE, apply the operation, write it back to the same address.
+            switch (in.mode()) {
+                case ZPG, ABS -> emitReadStatic(in.operand());
+                case ZPG_X -> {
+                    emitZeroPageIndexedAddress(in);
+                    emitRamLoad(() -> code.op(ILOAD, ADDRESS));
+                }
+                case ABS_X -> {
+                    emitAbsoluteIndexedAddress(in);
+                    emitReadDynamic();
+                }
+                default -> throw new IllegalStateException("Unsupported read-modify-write mode: " + in.mode());
+            }
+            code.op(ISTORE, VALUE);
+            code.op(ALOAD_1);
+            code.op(ILOAD, VALUE);
+            code.invokeVirtual(STATE, helper, "(I)I");
+            code.op(ISTORE, VALUE);
+            emitWriteToComputedAddress(in, () -> code.op(ILOAD, VALUE));
+        }
+
+        private void emitWrite(DecodedInstruction in, Runnable value) {
+            switch (in.mode()) {
+                case ZPG_X, ZPG_Y -> emitZeroPageIndexedAddress(in);
+                case ABS_X, ABS_Y -> emitAbsoluteIndexedAddress(in);
+                case IND_X -> emitIndirectXAddress(in);
+                case IND_Y -> emitIndirectYAddress(in);
+                case ZPG, ABS -> {
+                }
+                default -> throw new IllegalStateException("Unsupported write mode: " + in.mode());
+            }
+            emitWriteToComputedAddress(in, value);
+        }
+
+        // Writes to the operand address (static modes) or the address already stored in ADDRESS.
+        private void emitWriteToComputedAddress(DecodedInstruction in, Runnable value) {
+            switch (in.mode()) {
+                case ZPG, ABS -> {
+                    int address = in.operand();
+                    if (address < 0x2000) {
+                        code.op(ALOAD_1);
+                        code.getField(STATE, "ram", "[B");
+                        code.pushInt(address & 0x07FF);
+                        value.run();
+                        code.op(BASTORE);
+                    } else {
+                        code.op(ALOAD_1);
+                        code.pushInt(address);
+                        value.run();
+                        code.invokeVirtual(STATE, "write", "(II)V");
+                        emitExitCheck(in.next());
+                    }
+                }
+                case ZPG_X, ZPG_Y -> {
+                    code.op(ALOAD_1);
+                    code.getField(STATE, "ram", "[B");
+                    code.op(ILOAD, ADDRESS);
+                    value.run();
+                    code.op(BASTORE);
+                }
+                default -> {
+                    code.op(ALOAD_1);
+                    code.op(ILOAD, ADDRESS);
+                    value.run();
+                    code.invokeVirtual(STATE, "write", "(II)V");
+                    emitExitCheck(in.next());
+                }
+            }
+        }
+
+        private void emitReadStatic(int address) {
+            if (address < 0x2000) {
+                emitRamLoad(() -> code.pushInt(address & 0x07FF));
+            } else {
+                code.op(ALOAD_1);
+                code.pushInt(address);
+                code.invokeVirtual(STATE, "read", "(I)I");
+            }
+        }
+
+        private void emitReadDynamic() {
+            code.op(ALOAD_1);
+            code.op(ILOAD, ADDRESS);
+            code.invokeVirtual(STATE, "read", "(I)I");
+        }
+
+        private void emitRamLoad(Runnable index) {
+            code.op(ALOAD_1);
+            code.getField(STATE, "ram", "[B");
+            index.run();
+            code.op(BALOAD);
+            code.pushInt(0xFF);
+            code.op(IAND);
+        }
+
+        private void emitZeroPageIndexedAddress(DecodedInstruction in) {
+            code.pushInt(in.operand());
+            code.op(ALOAD_1);
+            code.getField(STATE, in.mode() == AddressingMode.ZPG_Y ? "y" : "x", "I");
+            code.op(IADD);
+            code.pushInt(0xFF);
+            code.op(IAND);
+            code.op(ISTORE, ADDRESS);
+        }
+
+        private void emitAbsoluteIndexedAddress(DecodedInstruction in) {
+            code.pushInt(in.operand());
+            code.op(ALOAD_1);
+            code.getField(STATE, in.mode() == AddressingMode.ABS_Y ? "y" : "x", "I");
+            code.op(IADD);
+            code.pushInt(0xFFFF);
+            code.op(IAND);
+            code.op(ISTORE, ADDRESS);
+        }
+
+        // ($nn,X): the pointer lives in the zero page, which is always RAM.
+        private void emitIndirectXAddress(DecodedInstruction in) {
+            code.pushInt(in.operand());
+            code.op(ALOAD_1);
+            code.getField(STATE, "x", "I");
+            code.op(IADD);
+            code.pushInt(0xFF);
+            code.op(IAND);
+            code.op(ISTORE, BASE);
+            emitRamLoad(() -> code.op(ILOAD, BASE));
+            emitRamLoad(() -> {
+                code.op(ILOAD, BASE);
+                code.pushInt(1);
+                code.op(IADD);
+                code.pushInt(0xFF);
+                code.op(IAND);
+            });
+            code.pushInt(8);
+            code.op(ISHL);
+            code.op(IOR);
+            code.op(ISTORE, ADDRESS);
+        }
+
+        // ($nn),Y: BASE holds the pointer value, ADDRESS the indexed address.
+        private void emitIndirectYAddress(DecodedInstruction in) {
+            int pointer = in.operand();
+            emitRamLoad(() -> code.pushInt(pointer));
+            emitRamLoad(() -> code.pushInt((pointer + 1) & 0xFF));
+            code.pushInt(8);
+            code.op(ISHL);
+            code.op(IOR);
+            code.op(ISTORE, BASE);
+            code.op(ILOAD, BASE);
+            code.op(ALOAD_1);
+            code.getField(STATE, "y", "I");
+            code.op(IADD);
+            code.pushInt(0xFFFF);
+            code.op(IAND);
+            code.op(ISTORE, ADDRESS);
+        }
+
+        private void emitExitCheck(int nextAddress) {
+            Label keepGoing = code.newLabel();
+            code.op(ALOAD_1);
+            code.getField(STATE, "exitRequested", "Z");
+            code.jump(IFEQ, keepGoing);
+            emitExit(nextAddress);
+            code.mark(keepGoing);
+        }
+
+        private void emitExit(int nextAddress) {
+            emitSetPc(nextAddress);
+            emitReturn(0);
+        }
+
+        private void emitSetPc(int address) {
+            code.op(ALOAD_1);
+            code.pushInt(address);
+            code.putField(STATE, "pc", "I");
+        }
+
+        private void emitReturn(int additionalCycles) {
+            code.op(ILOAD, EXTRA_CYCLES);
+            code.pushInt(staticCycles + additionalCycles);
+            code.op(IADD);
+            code.op(IRETURN);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package core.dynarec;
+
+import core.Bus;
+
+/**
+ * CPU registers and memory handed to a {@link CompiledBlock}. The CPU copies its registers in before
+ * running a block and back out afterwards; compiled code reads and writes the public fields directly and
+ * calls the helpers below for the flag-heavy operations, which the JIT inlines.
+ *
+ * <p>The helpers mirror the operations of the interpreter in {@code core.CPU} one for one.</p>
+ */
+public final class BlockState {
+    public int a, x, y, sp, pc;
+    public boolean carry, zero, interruptDisable, decimal, overflow, negative;
+
+    // Internal RAM ($0000-$07FF, mirrored up to $1FFF). Everything else goes through the bus.
+    public byte[] ram;
+    public Bus bus;
+
+    // Set while a block runs when it must stop at the next instruction boundary: an NMI or DMA was
+    // triggered by a register write, or a bank switch replaced the code the block was compiled from.
+    public boolean exitRequested;
+
+    public int read(int address) {
+        if (address < 0x2000) {
+            return ram[address & 0x07FF] & 0xFF;
+        }
+        return bus.read(address) & 0xFF;
+    }
+
+    public void write(int address, int value) {
+        if (address < 0x2000) {
+            ram[address & 0x07FF] = (byte) value;
+        } else {
+            bus.write(address, value);
+        }
+    }
+
+    private void setZeroAndNegative(int value) {
+        zero = (value == 0);
+        negative = (value & 0x80) != 0;
+    }
+
+    public void lda(int value) {
+        a = value;
+        setZeroAndNegative(value);
+    }
+
+    public void ldx(int value) {
+        x = value;
+        setZeroAndNegative(value);
+    }
+
+    public void ldy(int value) {
+        y = value;
+        setZeroAndNegative(value);
+    }
+
+    public void ora(int value) {
+        a |= value;
+        setZeroAndNegative(a);
+    }
+
+    public void eor(int value) {
+        a ^= value;
+        setZeroAndNegative(a);
+    }
+
+    public void and(int value) {
+        a &= value;
+        setZeroAndNegative(a);
+    }
+
+    public void adc(int value) {
+        int result = a + value + (carry ? 1 : 0);
+        carry = result > 0xFF;
+        zero = (result & 0xFF) == 0;
+        negative = (result & 0x80) != 0;
+        overflow = (((~a ^ value) & (a ^ result)) & 0x80) != 0;
+        a = result & 0xFF;
+    }
+
+    public void sbc(int value) {
+        int borrow = (carry ? 0 : 1);
+        int result = a - value - borrow;
+        carry = a >= (value + borrow);
+        zero = (result & 0xFF) == 0;
+        negative = (result & 0x80) != 0;
+        overflow = (((a ^ result) & (a ^ value)) & 0x80) != 0;
+        a = result & 0xFF;
+    }
+
+    private void compare(int register, int value) {
+        carry = register >= value;
+        zero = (register == value);
+        negative = ((register - value) & 0x80) != 0;
+    }
+
+    public void cmp(int value) {
+        compare(a, value);
+    }
+
+    public void cpx(int value) {
+        compare(x, value);
+    }
+
+    public void cpy(int value) {
+        compare(y, value);
+    }
+
+    public void bit(int value) {
+        zero = (a & value) == 0;
+        negative = (value & 0x80) != 0;
+        overflow = (value & 0x40) != 0;
+    }
+
+    public int asl(int value) {
+        carry = (value & 0x80) != 0;
+        int result = (value << 1) & 0xFF;
+        setZeroAndNegative(result);
+        return result;
+    }
+
+    public int lsr(int value) {
+        carry = (value & 0x01) != 0;
+        int result = value >>> 1;
+        setZeroAndNegative(result);
+        return result;
+    }
+
+    public int rol(int value) {
+        int result = ((value << 1) | (carry ? 1 : 0)) & 0xFF;
+        carry = (value & 0x80) != 0;
+        setZeroAndNegative(result);
+        return result;
+    }
+
+    public int ror(int value) {
+        int result = (carry ? 0x80 : 0) | (value >>> 1);
+        carry = (value & 0x01) != 0;
+        setZeroAndNegative(result);
+        return result;
+    }
+
+    public int inc(int value) {
+        int result = (value + 1) & 0xFF;
+        setZeroAndNegative(result);
+        return result;
+    }
+
+    public int dec(int value) {
+        int result = (value - 1) & 0xFF;
+        setZeroAndNegative(result);
+        return result;
+    }
+
+    public void tax() {
+        x = a;
+        setZeroAndNegative(x);
+    }
+
+    public void tay() {
+        y = a;
+        setZeroAndNegative(y);
+    }
+
+    public void tsx() {
+        x = sp;
+        setZeroAndNegative(x);
+    }
+
+    public void txa() {
+        a = x;
+        setZeroAndNegative(a);
+    }
+
+    public void txs() {
+        sp = x;
+    }
+
+    public void tya() {
+        a = y;
+        setZeroAndNegative(a);
+    }
+
+    public void inx() {
+        x = inc(x);
+    }
+
+    public void iny() {
+        y = inc(y);
+    }
+
+    public void dex() {
+        x = dec(x);
+    }
+
+    public void dey() {
+        y = dec(y);
+    }
+
+    public void clc() {
+        carry = false;
+    }
+
+    public void cld() {
+        decimal = false;
+    }
+
+    public void cli() {
+        interruptDisable = false;
+    }
+
+    public void clv() {
+        overflow = false;
+    }
+
+    public void sec() {
+        carry = true;
+    }
+
+    public void sed() {
+        decimal = true;
+    }
+
+    public void sei() {
+        interruptDisable = true;
+    }
+
+    public void nop() {
+    }
+
+    private void push(int value) {
+        ram[0x100 | sp] = (byte) value;
+        sp = (sp - 1) & 0xFF;
+    }
+
+    private int pull() {
+        sp = (sp + 1) & 0xFF;
+        return ram[0x100 | sp] & 0xFF;
+    }
+
+    public void pha() {
+        push(a);
+    }
+
+    // Bit layout: N V 1 B D I Z C, pushed with the B flag set
+    public void php() {
+        int flags = 0x30;
+        if (negative) flags |= 0x80;
+        if (overflow) flags |= 0x40;
+        if (decimal) flags |= 0x08;
+        if (interruptDisable) flags |= 0x04;
+        if (zero) flags |= 0x02;
+        if (carry) flags |= 0x01;
+        push(flags);
+    }
+
+    public void pla() {
+        a = pull();
+        setZeroAndNegative(a);
+    }
+
+    public void plp() {
+        int pulled = pull();
+        negative = (pulled & 0x80) != 0;
+        overflow = (pulled & 0x40) != 0;
+        decimal = (pulled & 0x08) != 0;
+        interruptDisable = (pulled & 0x04) != 0;
+        zero = (pulled & 0x02) != 0;
+        carry = (pulled & 0x01) != 0;
+    }
+
+    // Pushes the address of the last byte of the JSR instruction, like the 6502 does.
+    public void jsr(int returnAddress) {
+        push((returnAddress >> 8) & 0xFF);
+        push(returnAddress & 0xFF);
+    }
+
+    public void rts() {
+        int low = pull();
+        int high = pull();
+        pc = (((high << 8) | low) + 1) & 0xFFFF;
+    }
+
+    // JMP ($xxFF) takes the high byte from $xx00: the 6502 doesn't carry into the pointer's high byte.
+    public void jmpIndirect(int pointer) {
+        int low = read(pointer);
+        int pointerHighAddress = ((pointer & 0xFF) == 0xFF) ? (pointer & 0xFF00) : (pointer + 1);
+        pc = (read(pointerHighAddress) << 8) | low;
+    }
+}
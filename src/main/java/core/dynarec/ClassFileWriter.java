@@ -0,0 +1,318 @@
+package core.dynarec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class file writer for the classes produced by {@link BlockCompiler}: a final class implementing
+ * one interface, with a no-arg constructor and any number of methods. We emit version 49 class files,
+ * which are verified by type inference and therefore need no StackMapTable; that keeps branch emission
+ * down to patching offsets.
+ */
+final class ClassFileWriter {
+    private static final int CLASS_FILE_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+    private final DataOutputStream constantPoolOut = new DataOutputStream(constantPool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int constantCount = 1;
+
+    private final String className;
+    private final String superName = "java/lang/Object";
+    private final String interfaceName;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFileWriter(String className, String interfaceName) {
+        this.className = className;
+        this.interfaceName = interfaceName;
+        addDefaultConstructor();
+    }
+
+    private void addDefaultConstructor() {
+        Code code = new Code(this);
+        code.op(Opcodes.ALOAD_0);
+        code.opShort(Opcodes.INVOKESPECIAL, methodRef(superName, "<init>", "()V"));
+        code.op(Opcodes.RETURN);
+        addMethod("<init>", "()V", code, 1, 1);
+    }
+
+    void addMethod(String name, String descriptor, Code code, int maxStack, int maxLocals) {
+        byte[] bytecode = code.toBytes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1); // attributes: Code
+            out.writeShort(utf8("Code"));
+            out.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toBytes() {
+        int thisClass = classRef(className);
+        int superClass = classRef(superName);
+        int implemented = classRef(interfaceName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            out.writeShort(constantCount);
+            out.write(constantPool.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(implemented);
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, ConstantWriter writer) {
+        Integer existing = constants.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            writer.write(constantPoolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int index = constantCount++;
+        constants.put(key, index);
+        return index;
+    }
+
+    /**
+     * JVM opcodes used by the block compiler.
+     */
+    static final class Opcodes {
+        static final int ICONST_0 = 0x03;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC = 0x12;
+        static final int LDC_W = 0x13;
+        static final int ILOAD = 0x15;
+        static final int ALOAD = 0x19;
+        static final int ALOAD_0 = 0x2A;
+        static final int ALOAD_1 = 0x2B;
+        static final int BALOAD = 0x33;
+        static final int ISTORE = 0x36;
+        static final int BASTORE = 0x54;
+        static final int POP = 0x57;
+        static final int DUP = 0x59;
+        static final int IADD = 0x60;
+        static final int ISUB = 0x64;
+        static final int ISHL = 0x78;
+        static final int IAND = 0x7E;
+        static final int IOR = 0x80;
+        static final int IXOR = 0x82;
+        static final int IINC = 0x84;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9A;
+        static final int IF_ICMPEQ = 0x9F;
+        static final int IF_ICMPNE = 0xA0;
+        static final int GOTO = 0xA7;
+        static final int IRETURN = 0xAC;
+        static final int RETURN = 0xB1;
+        static final int GETFIELD = 0xB4;
+        static final int PUTFIELD = 0xB5;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESPECIAL = 0xB7;
+
+        private Opcodes() {
+        }
+    }
+
+    /**
+     * Branch target inside a {@link Code} buffer.
+     */
+    static final class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>(); // {instruction start, offset position}
+    }
+
+    /**
+     * Bytecode buffer for one method body.
+     */
+    static final class Code {
+        private final ClassFileWriter classFile;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+
+        Code(ClassFileWriter classFile) {
+            this.classFile = classFile;
+        }
+
+        void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        void op(int opcode, int operand) {
+            bytes.write(opcode);
+            bytes.write(operand);
+        }
+
+        void opShort(int opcode, int operand) {
+            bytes.write(opcode);
+            bytes.write(operand >> 8);
+            bytes.write(operand);
+        }
+
+        void iinc(int local, int delta) {
+            bytes.write(Opcodes.IINC);
+            bytes.write(local);
+            bytes.write(delta);
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(Opcodes.ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(Opcodes.BIPUSH, value & 0xFF);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                opShort(Opcodes.SIPUSH, value & 0xFFFF);
+            } else {
+                int index = classFile.integer(value);
+                if (index < 256) {
+                    op(Opcodes.LDC, index);
+                } else {
+                    opShort(Opcodes.LDC_W, index);
+                }
+            }
+        }
+
+        void getField(String owner, String name, String descriptor) {
+            opShort(Opcodes.GETFIELD, classFile.fieldRef(owner, name, descriptor));
+        }
+
+        void putField(String owner, String name, String descriptor) {
+            opShort(Opcodes.PUTFIELD, classFile.fieldRef(owner, name, descriptor));
+        }
+
+        void invokeVirtual(String owner, String name, String descriptor) {
+            opShort(Opcodes.INVOKEVIRTUAL, classFile.methodRef(owner, name, descriptor));
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void mark(Label label) {
+            label.position = bytes.size();
+        }
+
+        void jump(int opcode, Label target) {
+            int start = bytes.size();
+            bytes.write(opcode);
+            target.fixups.add(new int[]{start, bytes.size()});
+            bytes.write(0);
+            bytes.write(0);
+        }
+
+        byte[] toBytes() {
+            byte[] code = bytes.toByteArray();
+            for (Label label : labels) {
+                for (int[] fixup : label.fixups) {
+                    if (label.position < 0) {
+                        throw new IllegalStateException("Unbound label");
+                    }
+                    int offset = label.position - fixup[0];
+                    code[fixup[1]] = (byte) (offset >> 8);
+                    code[fixup[1] + 1] = (byte) offset;
+                }
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package core.dynarec;
+
+/**
+ * A 6502 basic block translated to JVM bytecode by {@link BlockCompiler}.
+ */
+public interface CompiledBlock {
+    /**
+     * Runs the block against {@code state}, leaving the address of the next instruction in {@code state.pc}.
+     *
+     * @return the number of CPU cycles the block took
+     */
+    int run(BlockState state);
+}
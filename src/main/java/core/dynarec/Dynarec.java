@@ -0,0 +1,90 @@
+package core.dynarec;
+
+import core.Bus;
+import core.Cartridge;
+
+import java.util.Arrays;
+
+/**
+ * Per-CPU front end of the block compiler. Counts how often each PRG ROM address ($8000-$FFFF) starts an
+ * instruction and hands out a compiled block once an address gets hot. Code outside PRG ROM is writable
+ * and always left to the interpreter, so self-modifying code never reaches a compiled block.
+ */
+public final class Dynarec {
+    static final int COMPILE_THRESHOLD = 16;
+
+    private static final int BASE = 0x8000;
+    private static final int PAGE_MASK = 0xE000;
+
+    private final Cartridge cartridge;
+    private final BlockCache cache;
+    private final BlockState state = new BlockState();
+    // Blocks looked up by this CPU for the banks currently mapped in, indexed by (address - 0x8000)
+    private final CompiledBlock[] blocks = new CompiledBlock[0x10000 - BASE];
+    private final int[] executionCounts = new int[0x10000 - BASE];
+
+    /**
+     * The caller sets {@link BlockState#ram} before each block it runs.
+     */
+    public Dynarec(Cartridge cartridge, Bus bus) {
+        this.cartridge = cartridge;
+        this.cache = BlockCache.forCartridge(cartridge);
+        state.bus = bus;
+        cartridge.addBankSwitchListener(this::invalidate);
+    }
+
+    public BlockState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the compiled block starting at {@code pc}, or null if the instruction there should be interpreted.
+     */
+    public CompiledBlock lookup(int pc) {
+        if (pc < BASE) {
+            return null;
+        }
+        int index = pc - BASE;
+        CompiledBlock block = blocks[index];
+        if (block == null) {
+            if (++executionCounts[index] < COMPILE_THRESHOLD) {
+                return null;
+            }
+            block = cache.getOrCompile(cartridge, pc);
+            blocks[index] = block;
+        }
+        return block != BlockCache.NOT_COMPILABLE ? block : null;
+    }
+
+    /**
+     * Whether the next {@link #lookup(int)} for {@code pc} may hand out a compiled block.
+     */
+    public boolean mayHaveBlock(int pc) {
+        if (pc < BASE) {
+            return false;
+        }
+        int index = pc - BASE;
+        CompiledBlock block = blocks[index];
+        if (block == null) {
+            return executionCounts[index] + 1 >= COMPILE_THRESHOLD;
+        }
+        return block != BlockCache.NOT_COMPILABLE;
+    }
+
+    /**
+     * Makes a running block stop at the next instruction boundary after a bus write.
+     */
+    public void requestExit() {
+        state.exitRequested = true;
+    }
+
+    private void invalidate(int cpuAddress, int length) {
+        // A block never leaves the 8KB page it starts in, so only blocks from that page on can overlap the window.
+        int from = Math.max(cpuAddress & PAGE_MASK, BASE) - BASE;
+        int to = Math.min(cpuAddress + length, 0x10000) - BASE;
+        if (from < to) {
+            Arrays.fill(blocks, from, to, null);
+        }
+        requestExit();
+    }
+}
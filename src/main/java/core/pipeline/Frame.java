@@ -0,0 +1,12 @@
+package core.pipeline;
+
+/**
+ * A completed frame on its way through the pipeline stages.
+ *
+ * @param number         Frames emulated so far, this one included
+ * @param completedNanos {@link System#nanoTime()} when emulation finished the frame; stage latencies count from here
+ * @param pixels         256x240 pixels, row by row, as {@code BufferedImage.getRGB} returns them. Shared by all
+ *                       stages, so they may keep them but not change them.
+ */
+public record Frame(long number, long completedNanos, int[] pixels) {
+}
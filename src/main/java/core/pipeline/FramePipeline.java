@@ -0,0 +1,143 @@
+package core.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The frame loop split into threads: emulation produces frame N+1 while presentation shows frame N, and optional
+ * {@link FrameStage}s get the shown frames through their own bounded, drop-oldest queues. Each stage has a
+ * {@link LatencyCounter}: emulation counts the time to emulate a frame, presentation and the optional stages the
+ * time from the frame's completion until they were done with it.
+ * <p>
+ * The emulation and presentation threads belong to the caller; this class runs the optional stages.
+ */
+public class FramePipeline {
+    private static final long POLL_MILLIS = 100;
+
+    private final LatencyCounter emulation = new LatencyCounter("emulation");
+    private final LatencyCounter presentation = new LatencyCounter("presentation");
+    private final List<StageRunner> stages = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+
+    public LatencyCounter getEmulationLatency() {
+        return emulation;
+    }
+
+    public LatencyCounter getPresentationLatency() {
+        return presentation;
+    }
+
+    /**
+     * Adds a stage after the existing ones, with a queue of {@code capacity} frames. Stages added while the
+     * pipeline runs start right away.
+     */
+    public void addStage(String name, int capacity, FrameStage stage) {
+        StageRunner runner = new StageRunner(name, capacity, stage);
+        stages.add(runner);
+        if (running) {
+            runner.start();
+        }
+    }
+
+    public boolean hasStages() {
+        return !stages.isEmpty();
+    }
+
+    /**
+     * Queues a frame for every optional stage, dropping a stage's oldest frame if its queue is full.
+     */
+    public void submit(Frame frame) {
+        for (StageRunner runner : stages) {
+            runner.queue.offer(frame);
+        }
+    }
+
+    /**
+     * Emulation and presentation, then the optional stages in order.
+     */
+    public List<LatencyCounter> getLatencies() {
+        List<LatencyCounter> latencies = new ArrayList<>();
+        latencies.add(emulation);
+        latencies.add(presentation);
+        for (StageRunner runner : stages) {
+            latencies.add(runner.latency);
+        }
+        return latencies;
+    }
+
+    /**
+     * Frames the named stage dropped because its queue was full, or 0 if there is no such stage.
+     */
+    public long getDroppedFrames(String name) {
+        for (StageRunner runner : stages) {
+            if (runner.latency.getName().equals(name)) {
+                return runner.queue.getDropped();
+            }
+        }
+        return 0;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        for (StageRunner runner : stages) {
+            runner.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (StageRunner runner : stages) {
+            runner.stop();
+        }
+    }
+
+    private class StageRunner {
+        private final FrameQueue<Frame> queue;
+        private final FrameStage stage;
+        private final LatencyCounter latency;
+        private Thread thread;
+
+        StageRunner(String name, int capacity, FrameStage stage) {
+            this.queue = new FrameQueue<>(capacity);
+            this.stage = stage;
+            this.latency = new LatencyCounter(name);
+        }
+
+        synchronized void start() {
+            if (thread != null) return;
+            thread = new Thread(this::run, "frame-stage-" + latency.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        synchronized void stop() {
+            if (thread == null) return;
+            thread.interrupt();
+            thread = null;
+        }
+
+        private void run() {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                Frame frame;
+                try {
+                    frame = queue.poll(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (frame == null) {
+                    continue;
+                }
+                try {
+                    stage.process(frame);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    System.err.println("Frame stage " + latency.getName() + " failed: " + e.getMessage());
+                }
+                latency.record(System.nanoTime() - frame.completedNanos());
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package core.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue between two pipeline stages. A full queue drops its oldest entry to make room, so the producer
+ * never waits and the consumer always works on the most recent entries.
+ */
+public class FrameQueue<T> {
+    private final ArrayBlockingQueue<T> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public FrameQueue(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public void offer(T item) {
+        while (!queue.offer(item)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The oldest entry, waiting up to {@code timeoutMillis} for one. Null on timeout.
+     */
+    public T poll(long timeoutMillis) throws InterruptedException {
+        return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,11 @@
+package core.pipeline;
+
+/**
+ * An optional step frames pass through after they are shown, such as a filter, a recorder or an encoder. Each
+ * stage runs on its own thread and gets its frames through a bounded queue, so a slow stage drops frames instead
+ * of holding up emulation or presentation.
+ */
+@FunctionalInterface
+public interface FrameStage {
+    void process(Frame frame) throws Exception;
+}
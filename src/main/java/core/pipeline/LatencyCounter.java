@@ -0,0 +1,52 @@
+package core.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running latency figures for one pipeline stage. Written by the stage's thread, readable from any thread.
+ */
+public class LatencyCounter {
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong lastNanos = new AtomicLong();
+
+    public LatencyCounter(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        lastNanos.set(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        totalNanos.addAndGet(nanos);
+        count.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getLastNanos() {
+        return lastNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getAverageNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d frames, last %.2f ms, avg %.2f ms, max %.2f ms", name, getCount(),
+                getLastNanos() / 1e6, getAverageNanos() / 1e6, getMaxNanos() / 1e6);
+    }
+}
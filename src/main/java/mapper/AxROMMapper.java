@@ -0,0 +1,29 @@
+package mapper;
+
+import core.MirroringMode;
+
+/**
+ * AxROM: any write to $8000-$FFFF selects the 32KB PRG bank with bits 0-2 and the single nametable used for all
+ * four screens with bit 4.
+ */
+public class AxROMMapper extends BankedMapper {
+    private static final int MAPPER_ID = 7;
+
+    public AxROMMapper(int prgRomSize, int chrRomSize) {
+        super(prgRomSize, chrRomSize);
+        setPrgBanks(0x8000, THIRTY_TWO_KB, 0);
+        setChrBanks(0x0000, EIGHT_KB, 0);
+        setMirroringMode(MirroringMode.SINGLE_SCREEN_LOWER);
+    }
+
+    @Override
+    protected void writeRegister(int address, int value) {
+        setPrgBanks(0x8000, THIRTY_TWO_KB, value & 0x07);
+        setMirroringMode((value & 0x10) == 0 ? MirroringMode.SINGLE_SCREEN_LOWER : MirroringMode.SINGLE_SCREEN_UPPER);
+    }
+
+    @Override
+    public int getId() {
+        return MAPPER_ID;
+    }
+}
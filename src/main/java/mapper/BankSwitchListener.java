@@ -0,0 +1,12 @@
+package mapper;
+
+/**
+ * Notified by a mapper whenever the memory visible through one of its bank windows changes,
+ * so that anything derived from the old contents (decoded instructions, lookup tables) can be dropped.
+ */
+public interface BankSwitchListener {
+    /**
+     * The PRG memory mapped at {@code cpuAddress} to {@code cpuAddress + length - 1} now comes from a different bank.
+     */
+    void prgBanksChanged(int cpuAddress, int length);
+}
@@ -0,0 +1,192 @@
+package mapper;
+
+import core.MirroringMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base for mappers that switch fixed-size banks. The CPU sees PRG ROM through four 8KB windows at $8000-$FFFF and
+ * the PPU sees CHR through eight 1KB windows at $0000-$1FFF. Each window has a precomputed offset into the backing
+ * array, so an access is one table load and one array load, and a bank switch is a handful of table stores.
+ * Subclasses decode their registers in {@link #writeRegister} and call {@link #setPrgBanks}, {@link #setChrBanks}
+ * and, on boards that control it, {@link #setMirroringMode}.
+ * <p>
+ * The access methods are final: every board shares them, so calls through a {@code BankedMapper} reference bind
+ * statically and inline however many mapper types are loaded. Only register writes dispatch on the board type.
+ */
+public abstract class BankedMapper implements Mapper {
+    protected static final int ONE_KB = 0x400;
+    protected static final int TWO_KB = 0x800;
+    protected static final int FOUR_KB = 0x1000;
+    protected static final int EIGHT_KB = 0x2000;
+    protected static final int SIXTEEN_KB = 0x4000;
+    protected static final int THIRTY_TWO_KB = 0x8000;
+
+    private static final int PRG_WINDOW_SIZE = EIGHT_KB;
+    private static final int CHR_WINDOW_SIZE = ONE_KB;
+    private static final int CPU_PRG_ROM_START = 0x8000;
+
+    private final int prgRomSize;
+    private final int chrSize;
+    private final int[] prgBankBase = new int[4];
+    private final int[] chrBankBase = new int[8];
+    private final List<BankSwitchListener> listeners = new ArrayList<>();
+    private final List<PpuMappingListener> ppuMappingListeners = new ArrayList<>();
+    private MirroringMode mirroringMode; // Null while the header decides
+
+    private byte[] prgRom;
+    private byte[] prgRam;
+    private byte[] chr;
+    private boolean chrWritable;
+
+    /**
+     * @param prgRomSize PRG ROM size in bytes.
+     * @param chrRomSize CHR ROM size in bytes, or 0 for a board with 8KB of CHR RAM.
+     */
+    protected BankedMapper(int prgRomSize, int chrRomSize) {
+        this.prgRomSize = prgRomSize;
+        this.chrSize = chrRomSize > 0 ? chrRomSize : EIGHT_KB;
+    }
+
+    @Override
+    public void connect(byte[] prgRom, byte[] prgRam, byte[] chr, boolean chrWritable) {
+        if (prgRom.length != prgRomSize || chr.length != chrSize) {
+            throw new IllegalArgumentException("Mapper was created for " + prgRomSize + " bytes of PRG ROM and "
+                    + chrSize + " bytes of CHR, got " + prgRom.length + " and " + chr.length);
+        }
+        this.prgRom = prgRom;
+        this.prgRam = prgRam;
+        this.chr = chr;
+        this.chrWritable = chrWritable;
+    }
+
+    @Override
+    public final int cpuRead(int address) {
+        if (address >= CPU_PRG_ROM_START) {
+            return prgRom[prgBankBase[(address >> 13) & 3] + (address & (PRG_WINDOW_SIZE - 1))] & 0xFF;
+        } else if (address >= 0x6000) {
+            return prgRam[address & 0x1FFF] & 0xFF;
+        }
+        return 0;
+    }
+
+    @Override
+    public final void cpuWrite(int address, int value) {
+        if (address >= CPU_PRG_ROM_START) {
+            writeRegister(address, value & 0xFF);
+        } else if (address >= 0x6000) {
+            prgRam[address & 0x1FFF] = (byte) value;
+        }
+    }
+
+    @Override
+    public final int ppuRead(int address) {
+        return chr[chrBankBase[(address >> 10) & 7] + (address & (CHR_WINDOW_SIZE - 1))] & 0xFF;
+    }
+
+    @Override
+    public final void ppuWrite(int address, int value) {
+        if (chrWritable) {
+            chr[chrBankBase[(address >> 10) & 7] + (address & (CHR_WINDOW_SIZE - 1))] = (byte) value;
+        }
+    }
+
+    @Override
+    public int mapPrgRomAddress(int cpuAddress) {
+        if (cpuAddress < CPU_PRG_ROM_START || cpuAddress > 0xFFFF) {
+            throw new IllegalArgumentException("Address out of range: " + cpuAddress);
+        }
+        return prgBankBase[(cpuAddress >> 13) & 3] + (cpuAddress & (PRG_WINDOW_SIZE - 1));
+    }
+
+    @Override
+    public final int mapChrRomAddress(int ppuAddress) {
+        return chrBankBase[(ppuAddress >> 10) & 7] + (ppuAddress & (CHR_WINDOW_SIZE - 1));
+    }
+
+    @Override
+    public MirroringMode getMirroringMode() {
+        return mirroringMode;
+    }
+
+    @Override
+    public void addBankSwitchListener(BankSwitchListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void addPpuMappingListener(PpuMappingListener listener) {
+        ppuMappingListeners.add(listener);
+    }
+
+    /**
+     * A CPU write to $8000-$FFFF, where the ROM is read-only and boards decode their registers.
+     */
+    protected abstract void writeRegister(int address, int value);
+
+    /**
+     * Maps PRG ROM bank {@code bank}, counted in units of {@code bankSize}, at {@code cpuAddress}. Bank numbers past
+     * the end of the ROM wrap around, as the unconnected high address lines do on the board.
+     */
+    protected void setPrgBanks(int cpuAddress, int bankSize, int bank) {
+        int firstWindow = (cpuAddress - CPU_PRG_ROM_START) / PRG_WINDOW_SIZE;
+        boolean changed = false;
+        for (int i = 0; i < bankSize / PRG_WINDOW_SIZE; i++) {
+            int base = wrap((long) bank * bankSize + (long) i * PRG_WINDOW_SIZE, prgRomSize);
+            changed |= prgBankBase[firstWindow + i] != base;
+            prgBankBase[firstWindow + i] = base;
+        }
+        if (changed) {
+            for (BankSwitchListener listener : listeners) {
+                listener.prgBanksChanged(cpuAddress, bankSize);
+            }
+        }
+    }
+
+    /**
+     * Maps CHR bank {@code bank}, counted in units of {@code bankSize}, at {@code ppuAddress}, wrapping like
+     * {@link #setPrgBanks}.
+     */
+    protected void setChrBanks(int ppuAddress, int bankSize, int bank) {
+        int firstWindow = ppuAddress / CHR_WINDOW_SIZE;
+        int windows = bankSize / CHR_WINDOW_SIZE;
+        long firstBase = (long) bank * bankSize;
+        boolean changed = false;
+        for (int i = 0; i < windows; i++) {
+            changed |= chrBankBase[firstWindow + i] != wrap(firstBase + (long) i * CHR_WINDOW_SIZE, chrSize);
+        }
+        if (!changed) {
+            return;
+        }
+        for (PpuMappingListener listener : ppuMappingListeners) {
+            listener.mappingWillChange();
+        }
+        for (int i = 0; i < windows; i++) {
+            chrBankBase[firstWindow + i] = wrap(firstBase + (long) i * CHR_WINDOW_SIZE, chrSize);
+        }
+        for (PpuMappingListener listener : ppuMappingListeners) {
+            listener.chrBanksChanged(ppuAddress, bankSize);
+        }
+    }
+
+    protected void setMirroringMode(MirroringMode mirroringMode) {
+        if (mirroringMode != this.mirroringMode) {
+            for (PpuMappingListener listener : ppuMappingListeners) {
+                listener.mappingWillChange();
+            }
+            this.mirroringMode = mirroringMode;
+            for (PpuMappingListener listener : ppuMappingListeners) {
+                listener.mirroringChanged();
+            }
+        }
+    }
+
+    private static int wrap(long offset, int size) {
+        return size > 0 ? (int) (offset % size) : 0;
+    }
+
+    protected int getPrgRomSize() {
+        return prgRomSize;
+    }
+}
@@ -0,0 +1,24 @@
+package mapper;
+
+/**
+ * CNROM: PRG ROM laid out like NROM; any write to $8000-$FFFF selects the 8KB CHR bank.
+ */
+public class CNROMMapper extends BankedMapper {
+    private static final int MAPPER_ID = 3;
+
+    public CNROMMapper(int prgRomSize, int chrRomSize) {
+        super(prgRomSize, chrRomSize);
+        setPrgBanks(0x8000, THIRTY_TWO_KB, 0); // A 16KB ROM is mirrored at $C000-$FFFF
+        setChrBanks(0x0000, EIGHT_KB, 0);
+    }
+
+    @Override
+    protected void writeRegister(int address, int value) {
+        setChrBanks(0x0000, EIGHT_KB, value);
+    }
+
+    @Override
+    public int getId() {
+        return MAPPER_ID;
+    }
+}
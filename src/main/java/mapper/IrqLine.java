@@ -0,0 +1,8 @@
+package mapper;
+
+/**
+ * The cartridge's IRQ output, wired to the CPU's IRQ input. The line stays asserted until the board releases it.
+ */
+public interface IrqLine {
+    void setAsserted(boolean asserted);
+}
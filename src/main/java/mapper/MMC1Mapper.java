@@ -0,0 +1,104 @@
+package mapper;
+
+import core.MirroringMode;
+
+/**
+ * MMC1 (SxROM). The CPU loads its four internal registers one bit at a time through a 5-bit shift register:
+ * five writes to $8000-$FFFF with the data in bit 0, where the address of the fifth write selects the register.
+ * A write with bit 7 set resets the shift register and locks the last PRG bank at $C000.
+ */
+public class MMC1Mapper extends BankedMapper {
+    private static final int MAPPER_ID = 1;
+    private static final int SHIFT_REGISTER_EMPTY = 0x10; // The marker bit reaches bit 0 after four writes
+    private static final int TWO_FIFTY_SIX_KB = 0x40000;
+
+    private int shiftRegister = SHIFT_REGISTER_EMPTY;
+    private int control = 0x0C; // Power-on: 16KB PRG banks, last bank fixed at $C000
+    private int chrBank0;
+    private int chrBank1;
+    private int prgBank;
+
+    public MMC1Mapper(int prgRomSize, int chrRomSize) {
+        super(prgRomSize, chrRomSize);
+        updateBanks();
+    }
+
+    @Override
+    protected void writeRegister(int address, int value) {
+        if ((value & 0x80) != 0) {
+            shiftRegister = SHIFT_REGISTER_EMPTY;
+            control |= 0x0C;
+            updateBanks();
+            return;
+        }
+
+        boolean full = (shiftRegister & 1) != 0;
+        shiftRegister = (shiftRegister >> 1) | ((value & 1) << 4);
+        if (!full) {
+            return;
+        }
+
+        switch ((address >> 13) & 3) {
+            case 0: // $8000-$9FFF
+                control = shiftRegister;
+                break;
+            case 1: // $A000-$BFFF
+                chrBank0 = shiftRegister;
+                break;
+            case 2: // $C000-$DFFF
+                chrBank1 = shiftRegister;
+                break;
+            case 3: // $E000-$FFFF; bit 4 disables PRG RAM, which the CPU bus maps regardless
+                prgBank = shiftRegister & 0x0F;
+                break;
+        }
+        shiftRegister = SHIFT_REGISTER_EMPTY;
+        updateBanks();
+    }
+
+    private void updateBanks() {
+        // 512KB boards (SUROM) use bit 4 of the CHR register to select the 256KB half of PRG ROM
+        int outerBank = getPrgRomSize() > TWO_FIFTY_SIX_KB ? chrBank0 & 0x10 : 0;
+        switch ((control >> 2) & 3) {
+            case 0:
+            case 1: // One 32KB bank, ignoring the low bit
+                setPrgBanks(0x8000, THIRTY_TWO_KB, (outerBank | prgBank) >> 1);
+                break;
+            case 2: // First bank fixed at $8000, 16KB bank switched at $C000
+                setPrgBanks(0x8000, SIXTEEN_KB, outerBank);
+                setPrgBanks(0xC000, SIXTEEN_KB, outerBank | prgBank);
+                break;
+            case 3: // 16KB bank switched at $8000, last bank fixed at $C000
+                setPrgBanks(0x8000, SIXTEEN_KB, outerBank | prgBank);
+                setPrgBanks(0xC000, SIXTEEN_KB, outerBank | 0x0F);
+                break;
+        }
+
+        if ((control & 0x10) == 0) { // One 8KB bank, ignoring the low bit
+            setChrBanks(0x0000, EIGHT_KB, chrBank0 >> 1);
+        } else {
+            setChrBanks(0x0000, FOUR_KB, chrBank0);
+            setChrBanks(0x1000, FOUR_KB, chrBank1);
+        }
+
+        switch (control & 3) {
+            case 0:
+                setMirroringMode(MirroringMode.SINGLE_SCREEN_LOWER);
+                break;
+            case 1:
+                setMirroringMode(MirroringMode.SINGLE_SCREEN_UPPER);
+                break;
+            case 2:
+                setMirroringMode(MirroringMode.VERTICAL);
+                break;
+            case 3:
+                setMirroringMode(MirroringMode.HORIZONTAL);
+                break;
+        }
+    }
+
+    @Override
+    public int getId() {
+        return MAPPER_ID;
+    }
+}
@@ -0,0 +1,120 @@
+package mapper;
+
+import core.MirroringMode;
+
+/**
+ * MMC3 (TxROM). Eight bank registers selected through $8000 and loaded through $8001: two 2KB and four 1KB CHR
+ * banks and two 8KB PRG banks, with the second-last and last 8KB PRG banks fixed. The scanline counter is clocked
+ * by rising edges of PPU A12 and raises an IRQ when it reaches zero.
+ */
+public class MMC3Mapper extends BankedMapper implements ScanlineCounter {
+    private static final int MAPPER_ID = 4;
+
+    private final int[] bankRegisters = new int[8];
+    private final int lastPrgBank;
+    private int bankSelect;
+
+    private int irqLatch;
+    private int irqCounter;
+    private boolean irqReload;
+    private boolean irqEnabled;
+    private IrqLine irqLine;
+
+    public MMC3Mapper(int prgRomSize, int chrRomSize) {
+        super(prgRomSize, chrRomSize);
+        lastPrgBank = Math.max(prgRomSize / EIGHT_KB - 1, 1);
+        updateBanks();
+        setMirroringMode(MirroringMode.VERTICAL);
+    }
+
+    @Override
+    protected void writeRegister(int address, int value) {
+        boolean even = (address & 1) == 0;
+        switch ((address >> 13) & 3) {
+            case 0: // $8000-$9FFF
+                if (even) {
+                    bankSelect = value;
+                } else {
+                    bankRegisters[bankSelect & 7] = value;
+                }
+                updateBanks();
+                break;
+            case 1: // $A000-$BFFF; the odd register protects PRG RAM, which the CPU bus maps regardless
+                if (even) {
+                    setMirroringMode((value & 1) == 0 ? MirroringMode.VERTICAL : MirroringMode.HORIZONTAL);
+                }
+                break;
+            case 2: // $C000-$DFFF
+                if (even) {
+                    irqLatch = value;
+                } else {
+                    irqCounter = 0;
+                    irqReload = true;
+                }
+                break;
+            case 3: // $E000-$FFFF
+                irqEnabled = !even;
+                if (even) {
+                    setIrq(false); // Disabling also acknowledges a pending IRQ
+                }
+                break;
+        }
+    }
+
+    private void updateBanks() {
+        // Bit 6 swaps the switchable $8000 bank with the fixed second-last bank at $C000
+        int swappablePrgBank = bankRegisters[6] & 0x3F;
+        if ((bankSelect & 0x40) == 0) {
+            setPrgBanks(0x8000, EIGHT_KB, swappablePrgBank);
+            setPrgBanks(0xC000, EIGHT_KB, lastPrgBank - 1);
+        } else {
+            setPrgBanks(0x8000, EIGHT_KB, lastPrgBank - 1);
+            setPrgBanks(0xC000, EIGHT_KB, swappablePrgBank);
+        }
+        setPrgBanks(0xA000, EIGHT_KB, bankRegisters[7] & 0x3F);
+        setPrgBanks(0xE000, EIGHT_KB, lastPrgBank);
+
+        // Bit 7 swaps the 2KB banks at $0000-$0FFF with the 1KB banks at $1000-$1FFF
+        int twoKbBase = (bankSelect & 0x80) << 5;
+        int oneKbBase = twoKbBase ^ 0x1000;
+        setChrBanks(twoKbBase, TWO_KB, bankRegisters[0] >> 1);
+        setChrBanks(twoKbBase + 0x800, TWO_KB, bankRegisters[1] >> 1);
+        for (int i = 0; i < 4; i++) {
+            setChrBanks(oneKbBase + i * ONE_KB, ONE_KB, bankRegisters[2 + i]);
+        }
+    }
+
+    @Override
+    public void a12Rose() {
+        if (irqCounter == 0 || irqReload) {
+            irqCounter = irqLatch;
+            irqReload = false;
+        } else {
+            irqCounter--;
+        }
+        if (irqCounter == 0 && irqEnabled) {
+            setIrq(true);
+        }
+    }
+
+    @Override
+    public boolean isIrqEnabled() {
+        return irqEnabled;
+    }
+
+    private void setIrq(boolean asserted) {
+        if (irqLine != null) {
+            irqLine.setAsserted(asserted);
+        }
+    }
+
+    @Override
+    public void connectIrqLine(IrqLine irqLine) {
+        this.irqLine = irqLine;
+    }
+
+    @Override
+    public int getId() {
+        return MAPPER_ID;
+    }
+}
@@ -1,8 +1,49 @@
 package mapper;
 
+import core.MirroringMode;
+
+/**
+ * The cartridge board: owns every access to the cartridge address space, CPU $4020-$FFFF and PPU $0000-$1FFF,
+ * including writes to the mapper's own registers.
+ */
 public interface Mapper {
+    /**
+     * Hands the mapper the cartridge memory it switches banks over. Called once by the cartridge, before any access.
+     * {@code chr} is CHR RAM when {@code chrWritable} is set and CHR ROM otherwise.
+     */
+    void connect(byte[] prgRom, byte[] prgRam, byte[] chr, boolean chrWritable);
+
+    int cpuRead(int address);
+    void cpuWrite(int address, int value);
+    int ppuRead(int address);
+    void ppuWrite(int address, int value);
+
     int mapPrgRomAddress(int cpuAddress);
     int mapChrRomAddress(int ppuAddress);
     int getId();
-}
 
+    /**
+     * Nametable mirroring selected by the mapper, or null when the board hard-wires it and the header decides.
+     */
+    default MirroringMode getMirroringMode() {
+        return null;
+    }
+
+    /**
+     * Connects the board's IRQ output. Boards without one never raise an IRQ, so the default does nothing.
+     */
+    default void connectIrqLine(IrqLine irqLine) {
+    }
+
+    /**
+     * Registers a listener for bank switches. Mappers without bank switching never notify, so the default does nothing.
+     */
+    default void addBankSwitchListener(BankSwitchListener listener) {
+    }
+
+    /**
+     * Registers a listener for CHR bank and mirroring changes. The default is for boards that never change either.
+     */
+    default void addPpuMappingListener(PpuMappingListener listener) {
+    }
+}
@@ -0,0 +1,33 @@
+package mapper;
+
+/**
+ * Notified by a mapper, or by the cartridge for CHR RAM writes, when what the PPU sees through the cartridge
+ * changes, so that PPU-side caches of pattern or nametable data can drop exactly the part that went stale. All
+ * methods default to doing nothing.
+ */
+public interface PpuMappingListener {
+    /**
+     * A CHR bank or mirroring change is about to take effect. Lets work the PPU has put off finish against the
+     * old mapping.
+     */
+    default void mappingWillChange() {
+    }
+
+    /**
+     * The CHR memory mapped at {@code ppuAddress} to {@code ppuAddress + length - 1} now comes from a different bank.
+     */
+    default void chrBanksChanged(int ppuAddress, int length) {
+    }
+
+    /**
+     * The CHR RAM byte mapped at {@code ppuAddress} was written.
+     */
+    default void chrWritten(int ppuAddress) {
+    }
+
+    /**
+     * The nametable mirroring selected by the mapper changed.
+     */
+    default void mirroringChanged() {
+    }
+}
@@ -0,0 +1,18 @@
+package mapper;
+
+/**
+ * Implemented by boards that count scanlines by watching PPU address line A12, like MMC3. During rendering A12
+ * selects the pattern table being fetched, so it rises once per scanline when background and sprites use
+ * different tables. The PPU reports the rising edges instead of the board inspecting every PPU read.
+ */
+public interface ScanlineCounter {
+    /**
+     * A12 went high: the PPU switched from fetching the $0000 pattern table to the $1000 one.
+     */
+    void a12Rose();
+
+    /**
+     * Whether a rising edge may raise an IRQ now, so the PPU has to stay in step with the CPU across them.
+     */
+    boolean isIrqEnabled();
+}
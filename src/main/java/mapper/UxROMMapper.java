@@ -0,0 +1,25 @@
+package mapper;
+
+/**
+ * UxROM: any write to $8000-$FFFF selects the 16KB PRG bank at $8000; the last bank is fixed at $C000.
+ */
+public class UxROMMapper extends BankedMapper {
+    private static final int MAPPER_ID = 2;
+
+    public UxROMMapper(int prgRomSize, int chrRomSize) {
+        super(prgRomSize, chrRomSize);
+        setPrgBanks(0x8000, SIXTEEN_KB, 0);
+        setPrgBanks(0xC000, SIXTEEN_KB, prgRomSize / SIXTEEN_KB - 1);
+        setChrBanks(0x0000, EIGHT_KB, 0);
+    }
+
+    @Override
+    protected void writeRegister(int address, int value) {
+        setPrgBanks(0x8000, SIXTEEN_KB, value);
+    }
+
+    @Override
+    public int getId() {
+        return MAPPER_ID;
+    }
+}
@@ -2,13 +2,24 @@ package ppu;
 
 // OAM.java
 public class OAM {
-    private final int[] oamData = new int[256];
+    private final byte[] oamData = new byte[256];
+    private boolean changed = true;
 
     public int read(int address) {
-        return oamData[address & 0xFF];
+        return oamData[address & 0xFF] & 0xFF;
     }
 
     public void write(int address, int value) {
-        oamData[address & 0xFF] = value;
+        oamData[address & 0xFF] = (byte) value;
+        changed = true;
+    }
+
+    /**
+     * Whether OAM has been written since the last call, so indexes built from it can be reused until it is.
+     */
+    public boolean pollChanged() {
+        boolean wasChanged = changed;
+        changed = false;
+        return wasChanged;
     }
 }
\ No newline at end of file
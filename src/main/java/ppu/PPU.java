@@ -12,8 +12,27 @@ public interface PPU {
 
     void runCycle();
 
+    /**
+     * Moves the PPU's target {@code dots} further ahead without running them yet. Pending dots run in one go at
+     * the next {@link #catchUp()}, before the next {@link #runCycle()}, and before anything that could see
+     * them from the outside, such as the frame buffer or the PPUSTATUS change count.
+     */
+    void addDots(int dots);
+
+    /**
+     * Runs the dots added by {@link #addDots(int)} that haven't run yet. The CPU bus calls this before every
+     * access the pending dots could change the outcome of.
+     */
+    void catchUp();
+
     Image getFrameBuffer();
 
+    /**
+     * The latest frame completed at VBlank, for showing or recording it while the next one is drawn. Unlike
+     * {@link #getFrameBuffer()} it never catches the PPU up or blocks, and is safe to call from one other thread.
+     */
+    Image getCompletedFrame();
+
     /**
      * Sets the CPU bus for the PPU to use, particularly for OAMDMA reads from CPU RAM.
      * @param bus The CPU bus instance.
@@ -28,4 +47,18 @@ public interface PPU {
      * @param page The page number in CPU memory (0x00-0xFF) from which to read sprite data.
      */
     void startOAMDMA(int page);
+
+    /**
+     * Counts changes of the PPUSTATUS flags. Lets the CPU tell whether a loop polling $2002 could have read
+     * different values between two of its iterations.
+     */
+    int getStatusChangeCount();
+
+    /**
+     * Lower bound for the number of PPU dots that can run before the PPU raises an NMI, clocks a cartridge
+     * scanline counter that may raise an IRQ or, if
+     * {@code includeStatusChanges}, before the PPUSTATUS flags can change. Used by the CPU to skip idle loops
+     * and by the main loop to size CPU batches. Counted from the target, so dots still pending count as run.
+     */
+    int dotsUntilNextEvent(boolean includeStatusChanges);
 }
@@ -2,10 +2,13 @@ package ppu;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import core.CPU;
 import core.Cartridge; // Added import
 import core.Bus; // Added import for cpuBus
+import mapper.PpuMappingListener;
+import mapper.ScanlineCounter;
 
 
 public class PPUImpl implements PPU {
@@ -25,11 +28,38 @@ public class PPUImpl implements PPU {
     private int addressLatch; // First/second write toggle
     private int dataBuffer;   // PPUDATA read buffer
 
+    private int statusChangeCount; // Incremented whenever the PPUSTATUS flags change
+
     // Scanline / cycle counters -------------------------------------------
+    private static final int DOTS_PER_SCANLINE = 341;
+    private static final int SCANLINES_PER_FRAME = 262;
     private int scanline; // 0‑261
     private int cycle;    // 0‑340
     private boolean oddFrame; // NTSC skip‑cycle flag
 
+    // Scanline renderer ----------------------------------------------------
+    private boolean scanlineRendering = true; // Draw visible lines in one pass at dot 256
+    private boolean dotAccurateLine;          // A register write hit this line: run its remaining dots one by one
+    private int renderedDots;                 // Dots of the current visible line already run
+
+    // Lazy catch-up --------------------------------------------------------
+    private int pendingDots; // Dots added towards the target but not run yet
+
+    // Parallel rendering ---------------------------------------------------
+    // The worker thread owns all rendering state and runs the dots, applying register and OAM DMA writes from the
+    // log at the dots they were made. The CPU thread only touches that state while the log is drained. Its shadow
+    // of the frame timing predicts the NMI; anything else the CPU reads waits for the worker to catch up.
+    private PpuWriteLog writeLog;     // Non-null while the worker thread runs
+    private Thread workerThread;
+    private volatile boolean workerRunning;
+    private long targetDots;          // CPU side: dots handed to the worker so far
+    private long workerDots;          // Worker side: dots run so far
+    private int shadowScanline;
+    private int shadowCycle;
+    private boolean shadowOddFrame;
+    private int shadowCtrl;
+    private int shadowMask;
+
     // NMI logic ------------------------------------------------------------
     private boolean nmiOccurred;
     private boolean nmiOutput;
@@ -41,39 +71,55 @@ public class PPUImpl implements PPU {
     private final PaletteRam paletteRam;
     private final Cartridge cartridge; // Added core.Cartridge field
     private CPU cpu; // Added core.CPU field (not final, to be set by setter)
+    private final ScanlineCounter scanlineCounter; // Null unless the mapper watches A12
+    private int patternTableHalf; // A12 of the last pattern fetch phase: 0x0000 or 0x1000
+
+    // Memory map with one entry per 1KB page of $0000-$3FFF. A page backed by memory is read directly from
+    // readPages[page] at pageOffsets[page] + (address & 0x3FF), and written the same way if writePages[page] is set.
+    // CHR pages are read-only here, so CHR RAM writes still reach the cartridge and its listeners. Palette RAM
+    // at $3F00-$3FFF shares the last page with a nametable mirror and is decoded before the page lookup.
+    private static final int PAGE_COUNT = 16;
+    private static final int PAGE_SIZE = 0x400;
+    private final byte[][] readPages = new byte[PAGE_COUNT][];
+    private final byte[][] writePages = new byte[PAGE_COUNT][];
+    private final int[] pageOffsets = new int[PAGE_COUNT];
+    private final PatternCache patternCache;
 
     // Frame buffer ---------------------------------------------------------
-    private final BufferedImage frameBuffer;
-    private final int[] frameData;
-
-    // NES master palette ---------------------------------------------------
-    private static final int[] PALETTE = {
-            0x7C7C7C, 0x0000FC, 0x0000BC, 0x4428BC, 0x940084, 0xA80020, 0xA81000, 0x881400,
-            0x503000, 0x006800, 0x005800, 0x004058, 0x000000, 0x000000, 0x000000, 0x000000,
-            0xBCBCBC, 0x0078F8, 0x0058F8, 0x6844FC, 0xD800CC, 0xE40058, 0xF83800, 0xE45C10,
-            0xAC7C00, 0x00B800, 0x00A800, 0x00A844, 0x008888, 0x000000, 0x000000, 0x000000,
-            0xF8F8F8, 0x3CBCFC, 0x6888FC, 0x9878F8, 0xF878F8, 0xF85898, 0xF87858, 0xFCA044,
-            0xF8B800, 0xB8F818, 0x58D854, 0x58F898, 0x00E8D8, 0x787878, 0x000000, 0x000000,
-            0xFCFCFC, 0xA4E4FC, 0xB8B8F8, 0xD8B8F8, 0xF8B8F8, 0xF8A4C0, 0xF0D0B0, 0xFCE0A8,
-            0xF8D878, 0xD8F878, 0xB8F8B8, 0xB8F8D8, 0x00FCFC, 0xF8D8F8, 0x000000, 0x000000
-    };
+    // Drawn into the back buffer of a triple buffer, which is published as a completed frame at VBlank
+    private final TripleBuffer<BufferedImage> frames;
+    private BufferedImage frameBuffer; // The frame being drawn
+    private int[] frameData;
 
     // Secondary OAM --------------------------------------------------------
     private final int[] spriteX = new int[8];
     private final int[] spriteY = new int[8];
     private final int[] spriteTile = new int[8];
     private final int[] spriteAttribute = new int[8];
-    private final int[] spriteDataLow = new int[8];
-    private final int[] spriteDataHigh = new int[8];
+    private final int[] spritePattern = new int[8]; // Decoded row
     private int spriteCount;
 
+    // Sprite line buffer ---------------------------------------------------
+    // The sprites of the next line, rasterized at dot 257: for every x, the first opaque sprite pixel's color index
+    // (palettes 4-7), plus its priority and whether it came from the first sprite slot. 0 where no sprite shows.
+    private static final int SPRITE_BEHIND_BACKGROUND = 0x20;
+    private static final int SPRITE_ZERO = 0x40;
+    private final int[] spriteLine = new int[256];
+    private boolean spriteLineEmpty = true;
+
+    // Sprite index ---------------------------------------------------------
+    // For each line 0-240, the OAM numbers of the first eight sprites covering it, in OAM order. Line 240 is only
+    // evaluated for the first line of the next frame. Rebuilt when OAM or the sprite height changes.
+    private static final int INDEXED_LINES = 241;
+    private final int[] spriteIndexCounts = new int[INDEXED_LINES];
+    private final int[] spriteIndex = new int[INDEXED_LINES * 8];
+    private int indexedSpriteHeight;
+
     // Background fetching latches -----------------------------------------
     private int bgNextTileId;
     private int bgNextTileAttribute;
-    private int bgNextTileLow;
-    private int bgNextTileHigh;
-    private int bgShifterPatternLow;
-    private int bgShifterPatternHigh;
+    private int bgNextTilePattern; // Decoded row; the low plane is fetched first, then the high plane
+    private int bgShifterPattern;  // Current tile in bits 31-16, next tile in bits 15-0, 2 bits per pixel
     private int bgShifterAttributeLow;
     private int bgShifterAttributeHigh;
 
@@ -89,10 +135,44 @@ public class PPUImpl implements PPU {
         this.oam = new OAM();
         this.paletteRam = new PaletteRam();
         this.cartridge = cartridge; // Initialize cartridge
+        this.scanlineCounter = cartridge != null ? cartridge.getScanlineCounter() : null;
+        this.patternCache = new PatternCache(cartridge);
+        if (cartridge != null) {
+            updateNametableOffsets();
+            mapChr(0x0000, 0x2000);
+            cartridge.addPpuMappingListener(new PpuMappingListener() {
+                @Override
+                public void mappingWillChange() {
+                    sync();
+                    catchUpLine();
+                }
+
+                @Override
+                public void chrBanksChanged(int ppuAddress, int length) {
+                    mapChr(ppuAddress, length);
+                    patternCache.invalidate(ppuAddress, length);
+                }
+
+                @Override
+                public void chrWritten(int ppuAddress) {
+                    patternCache.invalidateWrite(ppuAddress);
+                }
+
+                @Override
+                public void mirroringChanged() {
+                    updateNametableOffsets();
+                }
+            });
+        } else {
+            setNametableOffsets(0x0000, 0x0000, 0x0000, 0x0000);
+        }
         // this.cpu will be set via setter
 
-        frameBuffer = new BufferedImage(256, 240, BufferedImage.TYPE_INT_RGB);
-        frameData = ((DataBufferInt) frameBuffer.getRaster().getDataBuffer()).getData();
+        frames = new TripleBuffer<>(new BufferedImage(256, 240, BufferedImage.TYPE_INT_RGB),
+                new BufferedImage(256, 240, BufferedImage.TYPE_INT_RGB),
+                new BufferedImage(256, 240, BufferedImage.TYPE_INT_RGB));
+        frameBuffer = frames.back();
+        frameData = pixels(frameBuffer);
 
         reset();
     }
@@ -101,6 +181,38 @@ public class PPUImpl implements PPU {
         this.cpu = cpu;
     }
 
+    /**
+     * Selects between drawing visible scanlines one dot at a time and in one pass at dot 256. Both produce the
+     * same frames: a line is drawn as far as it got before any access that could change or observe it, and a line
+     * with a write to $2000, $2001, $2005, $2006 or $2007 during rendering finishes dot by dot.
+     */
+    public void setScanlineRendering(boolean scanlineRendering) {
+        sync();
+        catchUpLine();
+        this.scanlineRendering = scanlineRendering;
+    }
+
+    /**
+     * Moves running the dots to a worker thread, so rendering overlaps with the CPU running ahead. Register writes
+     * and OAM DMA are logged with their dot and replayed by the worker at that dot, so frames come out the same
+     * as without it. The CPU predicts the NMI from its own copy of the frame timing; reads of PPU registers,
+     * the frame buffer and mapper changes wait for the worker to catch up instead. If the prediction ever
+     * disagrees with the worker, rendering falls back to this thread.
+     * <p>
+     * Cartridges with a scanline counter stay on this thread, since the IRQ it raises can't be predicted.
+     */
+    public void setParallelRendering(boolean parallelRendering) {
+        if (parallelRendering && writeLog == null && scanlineCounter == null) {
+            startWorker();
+        } else if (!parallelRendering && writeLog != null) {
+            stopWorker();
+        }
+    }
+
+    public boolean isParallelRendering() {
+        return writeLog != null;
+    }
+
     @Override
     public void setCpuBus(Bus bus) {
         this.cpuBus = bus;
@@ -118,10 +230,15 @@ public class PPUImpl implements PPU {
         this.oamDmaCyclesRemaining = 514; // PPU is "busy" for this duration
 
         // Perform the 256-byte copy from CPU RAM to PPU OAM immediately
+        catchUp();
         int startAddressInCpuRam = this.oamDmaPageForTransfer << 8;
         for (int i = 0; i < 256; i++) {
             int dataByte = this.cpuBus.read(startAddressInCpuRam + i);
-            this.oam.write(i, dataByte); // Assuming oam.write(index, value) correctly writes to the OAM array
+            if (writeLog != null) {
+                writeLog.append(targetDots, PpuWriteLog.OAM, i, dataByte);
+            } else {
+                this.oam.write(i, dataByte); // Assuming oam.write(index, value) correctly writes to the OAM array
+            }
         }
 
         // Signal the CPU to stall
@@ -135,8 +252,11 @@ public class PPUImpl implements PPU {
     // =====================================================================
     @Override
     public void reset() {
+        sync();
+        pendingDots = 0;
         ppuCtrl = 0;
         ppuMask = 0;
+        paletteRam.setMask(0);
         ppuStatus = 0;
         oamAddr = 0;
         ppuScroll = 0;
@@ -162,19 +282,19 @@ public class PPUImpl implements PPU {
             spriteY[i] = 0xFF;
             spriteTile[i] = 0xFF;
             spriteAttribute[i] = 0xFF;
-            spriteDataLow[i] = 0;
-            spriteDataHigh[i] = 0;
+            spritePattern[i] = 0;
         }
         spriteCount = 0;
+        Arrays.fill(spriteLine, 0);
+        spriteLineEmpty = true;
 
         bgNextTileId = 0;
         bgNextTileAttribute = 0;
-        bgNextTileLow = 0;
-        bgNextTileHigh = 0;
-        bgShifterPatternLow = 0;
-        bgShifterPatternHigh = 0;
+        bgNextTilePattern = 0;
+        bgShifterPattern = 0;
         bgShifterAttributeLow = 0;
         bgShifterAttributeHigh = 0;
+        copyTimingToShadow();
     }
 
     @Override
@@ -184,11 +304,13 @@ public class PPUImpl implements PPU {
         if (address < 0x2000 || address > 0x3FFF) {
             return 0;
         }
+        sync(); // Reads have side effects and results the CPU needs now
 
         switch (mappedAddr) {
             case 0x2: { // PPUSTATUS
+                catchUpLine(); // Sprite 0 hit may have happened in the dots put off so far
                 int result = (ppuStatus & 0xE0) | (dataBuffer & 0x1F);
-                ppuStatus &= ~0x80;
+                setStatus(ppuStatus & ~0x80);
                 addressLatch = 0;
                 nmiOccurred = false;
                 return result;
@@ -196,6 +318,7 @@ public class PPUImpl implements PPU {
             case 0x4: // OAMDATA
                 return oam.read(oamAddr);
             case 0x7: { // PPUDATA
+                catchUpLine();
                 int data;
                 if (vRamAddr <= 0x3EFF) {
                     data = dataBuffer;
@@ -213,11 +336,32 @@ public class PPUImpl implements PPU {
 
     @Override
     public void write(int address, int value) {
-        int mappedAddr = address & 0x7;
-
         if (address < 0x2000 || address > 0x3FFF) {
             return;
         }
+        if (writeLog != null) {
+            catchUp();
+            if ((address & 0x7) == 0x0) {
+                shadowCtrl = value;
+            } else if ((address & 0x7) == 0x1) {
+                shadowMask = value;
+            }
+            writeLog.append(targetDots, PpuWriteLog.REGISTER, address & 0x7, value);
+            return;
+        }
+        writeRegister(address, value);
+    }
+
+    private void writeRegister(int address, int value) {
+        int mappedAddr = address & 0x7;
+
+        if (mappedAddr <= 0x1 || mappedAddr >= 0x5) {
+            // The write changes how the rest of the line renders, so the line can't be drawn in one pass any more
+            catchUpLine();
+            if (scanline < 240 && cycle <= 256) {
+                dotAccurateLine = true;
+            }
+        }
 
         switch (mappedAddr) {
             case 0x0: // PPUCTRL
@@ -227,6 +371,7 @@ public class PPUImpl implements PPU {
                 break;
             case 0x1: // PPUMASK
                 ppuMask = value;
+                paletteRam.setMask(value);
                 break;
             case 0x3: // OAMADDR
                 oamAddr = value;
@@ -268,80 +413,70 @@ public class PPUImpl implements PPU {
     // =====================================================================
     private int ppuRead(int address) { // PPU bus address 0x0000 - 0x3FFF
         address &= 0x3FFF;
-        if (address <= 0x1FFF) { // Pattern Tables ($0000-$1FFF)
-            return this.cartridge.ppuRead(address);
-        } else if (address >= 0x2000 && address <= 0x3EFF) { // Nametable region ($2000-$3EFF, mirrors $3000-$3EFF are to $2000-$2EFF)
-            int vramIndex = 0;
-            // Normalize address to $2000-$2FFF range first for logical table determination
-            int normalizedAddress = 0x2000 | (address & 0x0FFF);
-            int logicalTable = (normalizedAddress >> 10) & 3; // 0, 1, 2, or 3
-            int offsetInTable = normalizedAddress & 0x03FF;   // Offset within a 1KB nametable
-
-            switch (cartridge.getMirroringMode()) {
-                case HORIZONTAL: // Tables 0 & 1 map to VRAM NT0; Tables 2 & 3 map to VRAM NT1
-                    if (logicalTable == 0 || logicalTable == 1) {
-                        vramIndex = offsetInTable; // Maps to physical VRAM NT0 (0x0000-0x03FF)
-                    } else { // logicalTable == 2 || logicalTable == 3
-                        vramIndex = offsetInTable + 0x0400; // Maps to physical VRAM NT1 (0x0400-0x07FF)
-                    }
-                    break;
-                case VERTICAL:   // Tables 0 & 2 map to VRAM NT0; Tables 1 & 3 map to VRAM NT1
-                    if (logicalTable == 0 || logicalTable == 2) {
-                        vramIndex = offsetInTable; // Maps to physical VRAM NT0
-                    } else { // logicalTable == 1 || logicalTable == 3
-                        vramIndex = offsetInTable + 0x0400; // Maps to physical VRAM NT1
-                    }
-                    break;
-                case FOUR_SCREEN:
-                    vramIndex = normalizedAddress & 0x07FF; // Basic mapping for 2KB if no cart VRAM for 4-screen
-                    break;
-                default: // Should not happen with valid MirroringMode enum
-                    vramIndex = normalizedAddress & 0x07FF;
-            }
-            return vram.read(vramIndex); // vram.read expects 0x000-0x7FF index
-        } else if (address >= 0x3F00 && address <= 0x3FFF) { // Palette RAM ($3F00-$3FFF)
-            int paletteIndex = address & 0x1F;
-            // Palette Mirrors: $3F10, $3F14, $3F18, $3F1C mirror $3F00, $3F04, $3F08, $3F0C
-            if (paletteIndex == 0x10 || paletteIndex == 0x14 || paletteIndex == 0x18 || paletteIndex == 0x1C) {
-                paletteIndex -= 0x10;
-            }
-            return paletteRam.read(paletteIndex) & 0x3F; // NES palette colors are 6-bit
+        if (address >= 0x3F00) { // Palette RAM ($3F00-$3FFF)
+            return paletteRam.read(address & 0x1F); // Mirrors $3F10/$3F14/$3F18/$3F1C itself
+        }
+        int page = address >> 10;
+        byte[] memory = readPages[page];
+        if (memory != null) {
+            return memory[pageOffsets[page] + (address & (PAGE_SIZE - 1))] & 0xFF;
+        }
+        return this.cartridge.ppuRead(address); // CHR the mapper decodes itself
+    }
+
+    private void updateNametableOffsets() {
+        switch (cartridge.getMirroringMode()) {
+            case HORIZONTAL: // Tables 0 & 1 map to VRAM NT0; Tables 2 & 3 map to VRAM NT1
+                setNametableOffsets(0x0000, 0x0000, 0x0400, 0x0400);
+                break;
+            case SINGLE_SCREEN_LOWER: // All four tables map to VRAM NT0
+                setNametableOffsets(0x0000, 0x0000, 0x0000, 0x0000);
+                break;
+            case SINGLE_SCREEN_UPPER: // All four tables map to VRAM NT1
+                setNametableOffsets(0x0400, 0x0400, 0x0400, 0x0400);
+                break;
+            case VERTICAL: // Tables 0 & 2 map to VRAM NT0; Tables 1 & 3 map to VRAM NT1
+            case FOUR_SCREEN: // Simplified for 2KB internal VRAM: no cartridge VRAM, so like vertical
+            default:
+                setNametableOffsets(0x0000, 0x0400, 0x0000, 0x0400);
+        }
+    }
+
+    // Points the four nametables at $2000-$2FFF, and their mirrors at $3000-$3FFF, at the given VRAM offsets
+    private void setNametableOffsets(int table0, int table1, int table2, int table3) {
+        byte[] memory = vram.getMemory();
+        int[] offsets = {table0, table1, table2, table3};
+        for (int page = 8; page < PAGE_COUNT; page++) {
+            readPages[page] = memory;
+            writePages[page] = memory;
+            pageOffsets[page] = offsets[page & 3];
+        }
+    }
+
+    // Points the CHR pages in ppuAddress..ppuAddress + length - 1 at the banks the mapper has switched in. Called
+    // again on every CHR bank switch.
+    private void mapChr(int ppuAddress, int length) {
+        byte[] chr = cartridge.getChrMemory();
+        for (int address = ppuAddress & ~(PAGE_SIZE - 1); address < ppuAddress + length; address += PAGE_SIZE) {
+            int page = address >> 10;
+            int offset = cartridge.getChrOffset(address);
+            readPages[page] = offset >= 0 && offset + PAGE_SIZE <= chr.length ? chr : null;
+            pageOffsets[page] = offset;
         }
-        return 0; // Should be unreachable if PPU address space is fully handled
     }
 
     private void ppuWrite(int address, int value) { // PPU bus address 0x0000 - 0x3FFF
         address &= 0x3FFF;
-        if (address <= 0x1FFF) { // Pattern Tables
+        if (address >= 0x3F00) { // Palette RAM
+            paletteRam.write(address & 0x1F, value);
+            return;
+        }
+        int page = address >> 10;
+        byte[] memory = writePages[page];
+        if (memory != null) {
+            memory[pageOffsets[page] + (address & (PAGE_SIZE - 1))] = (byte) value;
+        } else if (address <= 0x1FFF) { // Pattern Tables
             this.cartridge.ppuWrite(address, value);
-        } else if (address >= 0x2000 && address <= 0x3EFF) { // Nametable region
-            int vramIndex = 0;
-            int normalizedAddress = 0x2000 | (address & 0x0FFF);
-            int logicalTable = (normalizedAddress >> 10) & 3;
-            int offsetInTable = normalizedAddress & 0x03FF;
-
-            switch (cartridge.getMirroringMode()) {
-                case HORIZONTAL:
-                    if (logicalTable == 0 || logicalTable == 1) vramIndex = offsetInTable;
-                    else vramIndex = offsetInTable + 0x0400;
-                    break;
-                case VERTICAL:
-                    if (logicalTable == 0 || logicalTable == 2) vramIndex = offsetInTable;
-                    else vramIndex = offsetInTable + 0x0400;
-                    break;
-                case FOUR_SCREEN:
-                    vramIndex = normalizedAddress & 0x07FF; // Simplified for 2KB internal VRAM
-                    break;
-                default:
-                    vramIndex = normalizedAddress & 0x07FF;
-            }
-            vram.write(vramIndex, value);
-        } else if (address >= 0x3F00 && address <= 0x3FFF) { // Palette RAM
-            int paletteIndex = address & 0x1F;
-            if (paletteIndex == 0x10 || paletteIndex == 0x14 || paletteIndex == 0x18 || paletteIndex == 0x1C) {
-                paletteIndex -= 0x10;
-            }
-            paletteRam.write(paletteIndex, value);
         }
     }
 
@@ -350,6 +485,145 @@ public class PPUImpl implements PPU {
     // =====================================================================
     @Override
     public void runCycle() {
+        if (pendingDots > 0 || writeLog != null) {
+            pendingDots++;
+            catchUp();
+        } else {
+            runDot();
+        }
+    }
+
+    @Override
+    public void addDots(int dots) {
+        pendingDots += dots;
+    }
+
+    /**
+     * Runs the pending dots, or in parallel mode hands them to the worker without waiting for it.
+     */
+    @Override
+    public void catchUp() {
+        if (writeLog != null) {
+            if (pendingDots > 0) {
+                advanceShadow(pendingDots);
+                targetDots += pendingDots;
+                pendingDots = 0;
+                writeLog.append(targetDots, PpuWriteLog.RUN, 0, 0);
+            }
+            return;
+        }
+        while (pendingDots > 0) {
+            pendingDots--;
+            runDot();
+        }
+    }
+
+    // Like catchUp(), and in parallel mode also waits until the worker has run the dots and applied every write.
+    // Checks the shadow timing against the worker's on the way.
+    private void sync() {
+        catchUp();
+        if (writeLog == null) {
+            return;
+        }
+        for (int attempt = 0; !writeLog.isDrained(); attempt++) {
+            if (!workerThread.isAlive()) {
+                throw new IllegalStateException("PPU worker thread stopped");
+            }
+            PpuWriteLog.backOff(attempt);
+        }
+        if (scanline != shadowScanline || cycle != shadowCycle || oddFrame != shadowOddFrame) {
+            System.err.println("PPU: predicted timing went out of step with the worker, rendering synchronously");
+            stopWorker();
+        }
+    }
+
+    private void startWorker() {
+        catchUp();
+        copyTimingToShadow();
+        targetDots = 0;
+        workerDots = 0;
+        writeLog = new PpuWriteLog();
+        workerRunning = true;
+        workerThread = new Thread(this::runWorker, "ppu-worker");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    // Waits for the worker to apply everything logged, then ends it. The worker's state is visible to this
+    // thread after join().
+    private void stopWorker() {
+        PpuWriteLog log = writeLog;
+        for (int attempt = 0; !log.isDrained() && workerThread.isAlive(); attempt++) {
+            PpuWriteLog.backOff(attempt);
+        }
+        workerRunning = false;
+        try {
+            workerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLog = null;
+        workerThread = null;
+    }
+
+    private void runWorker() {
+        PpuWriteLog log = writeLog;
+        int idle = 0;
+        while (workerRunning) {
+            if (!log.hasNext()) {
+                PpuWriteLog.backOff(idle++);
+                continue;
+            }
+            idle = 0;
+            long dot = log.dot();
+            while (workerDots < dot) {
+                runDot();
+                workerDots++;
+            }
+            switch (log.kind()) {
+                case PpuWriteLog.REGISTER -> writeRegister(0x2000 | log.index(), log.value());
+                case PpuWriteLog.OAM -> oam.write(log.index(), log.value());
+                default -> { } // RUN
+            }
+            log.next();
+        }
+    }
+
+    private void copyTimingToShadow() {
+        shadowScanline = scanline;
+        shadowCycle = cycle;
+        shadowOddFrame = oddFrame;
+        shadowCtrl = ppuCtrl;
+        shadowMask = ppuMask;
+    }
+
+    // Moves the shadow timing ahead the way runDot() moves the real one, and raises the NMI when the shadow passes
+    // the start of VBlank. PPUCTRL and PPUMASK can't change on the way, since every write catches up first.
+    private void advanceShadow(int dots) {
+        while (dots > 0) {
+            int lineDots = DOTS_PER_SCANLINE - shadowCycle;
+            int run = Math.min(dots, lineDots);
+            if (shadowScanline == 241 && shadowCycle <= 1 && shadowCycle + run > 1
+                    && (shadowCtrl & 0x80) != 0 && cpu != null) {
+                cpu.triggerNMI();
+            }
+            dots -= run;
+            shadowCycle += run;
+            if (shadowCycle == DOTS_PER_SCANLINE) {
+                shadowCycle = 0;
+                shadowScanline++;
+                if (shadowScanline == SCANLINES_PER_FRAME) {
+                    shadowScanline = 0;
+                    shadowOddFrame = !shadowOddFrame;
+                    if (shadowOddFrame && (shadowMask & 0x08) != 0) {
+                        shadowCycle = 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private void runDot() {
 //        boolean wasDmaActiveThisCycleStart = oamDmaActive;
 //
 //        if (oamDmaActive) {
@@ -362,7 +636,7 @@ public class PPUImpl implements PPU {
 //        if (!wasDmaActiveThisCycleStart) {
             if (scanline <= 261) {
                 if (cycle == 1) {
-                    ppuStatus &= ~0xE0;
+                    setStatus(ppuStatus & ~0xE0);
                     nmiOccurred = false;
                 }
                 if (scanline == 261 && cycle >= 280 && cycle <= 304) {
@@ -372,39 +646,23 @@ public class PPUImpl implements PPU {
                 }
 
                 if (scanline < 240) {
-                    if ((cycle >= 1 && cycle <= 256) || (cycle >= 321 && cycle <= 336)) {
-                        updateShifters();
-
-                        switch ((cycle - 1) % 8) {
-                            case 0:
-                                loadBackgroundShifters();
-                                bgNextTileId = ppuRead(0x2000 | (vRamAddr & 0x0FFF));
-                                break;
-                            case 2: {
-                                int attributeAddress = 0x23C0 | (vRamAddr & 0x0C00) | ((vRamAddr >> 4) & 0x38) | ((vRamAddr >> 2) & 0x07);
-                                int shift = ((vRamAddr >> 4) & 4) | (vRamAddr & 2);
-                                bgNextTileAttribute = (ppuRead(attributeAddress) >> shift) & 0x3;
-                                break;
+                    if (cycle >= 1 && cycle <= 256) {
+                        if (!scanlineRendering || dotAccurateLine) {
+                            updateShifters();
+                            fetchBackground(cycle);
+                            if (cycle == 256) {
+                                incrementY();
                             }
-                            case 4: {
-                                int patternAddress = ((ppuCtrl & 0x10) << 8) | (bgNextTileId << 4) | ((vRamAddr >> 12) & 7);
-                                bgNextTileLow = ppuRead(patternAddress);
-                                break;
-                            }
-                            case 6: {
-                                int patternAddress = ((ppuCtrl & 0x10) << 8) | (bgNextTileId << 4) | ((vRamAddr >> 12) & 7) | 8;
-                                bgNextTileHigh = ppuRead(patternAddress);
-                                break;
-                            }
-                            case 7:
-                                incrementX();
-                                break;
+                            renderPixelForCurrentPosition();
+                            renderedDots = cycle;
+                        } else if (cycle == 256) {
+                            renderDots(renderedDots + 1, 256);
                         }
+                    } else if (cycle >= 321 && cycle <= 336) {
+                        updateShifters();
+                        fetchBackground(cycle);
                     }
 
-                    if (cycle == 256) {
-                        incrementY();
-                    }
                     if (cycle == 257) {
                         loadBackgroundShifters();
                         if ((ppuMask & 0x18) != 0) {
@@ -416,55 +674,61 @@ public class PPUImpl implements PPU {
                             spriteY[i] = 0xFF;
                             spriteTile[i] = 0xFF;
                             spriteAttribute[i] = 0xFF;
-                            spriteDataLow[i] = 0;
-                            spriteDataHigh[i] = 0;
+                            spritePattern[i] = 0;
                         }
                         spriteCount = 0;
-                        int oamIndex = 0;
+                        int nextScanln = scanline + 1; // Sprite evaluation is for the *next* scanline
+                        int spriteHeight = ((ppuCtrl & 0x20) == 0x20 ? 16 : 8);
+                        if (oam.pollChanged() || spriteHeight != indexedSpriteHeight) {
+                            indexSprites(spriteHeight);
+                        }
 
-                        while (oamIndex < 64 && spriteCount < 8) {
+                        int inRange = spriteIndexCounts[nextScanln];
+                        for (int k = 0; k < inRange; k++) {
+                            int oamIndex = spriteIndex[nextScanln * 8 + k];
                             int y = oam.read(oamIndex * 4);
-                            int nextScanln = scanline + 1; // Sprite evaluation is for the *next* scanline
-                            int spriteHeight = ((ppuCtrl & 0x20) == 0x20 ? 16 : 8);
-                            if (nextScanln >= y && nextScanln < (y + spriteHeight)) {
-                                spriteY[spriteCount] = y;
-                                spriteTile[spriteCount] = oam.read(oamIndex * 4 + 1);
-                                spriteAttribute[spriteCount] = oam.read(oamIndex * 4 + 2);
-                                spriteX[spriteCount] = oam.read(oamIndex * 4 + 3);
-
-                                int tileAddr;
-                                int row = nextScanln - y;
-                                if ((spriteAttribute[spriteCount] & 0x80) == 0x80) {
-                                    row = spriteHeight - 1 - row;
-                                }
-
-                                if ((ppuCtrl & 0x20) == 0) {
-                                    tileAddr = ((ppuCtrl & 0x08) << 9) | (spriteTile[spriteCount] << 4) | row;
-                                } else {
-                                    tileAddr = ((spriteTile[spriteCount] & 0x01) << 12) | ((spriteTile[spriteCount] & 0xFE) << 4) | row;
-                                }
-
-                                spriteDataLow[spriteCount] = ppuRead(tileAddr);
-                                spriteDataHigh[spriteCount] = ppuRead(tileAddr | 8);
-
-                                if ((spriteAttribute[spriteCount] & 0x40) == 0x40) {
-                                    spriteDataLow[spriteCount] = reverseBits(spriteDataLow[spriteCount]);
-                                    spriteDataHigh[spriteCount] = reverseBits(spriteDataHigh[spriteCount]);
-                                }
-
-                                spriteCount++;
+                            spriteY[spriteCount] = y;
+                            spriteTile[spriteCount] = oam.read(oamIndex * 4 + 1);
+                            spriteAttribute[spriteCount] = oam.read(oamIndex * 4 + 2);
+                            spriteX[spriteCount] = oam.read(oamIndex * 4 + 3);
+
+                            int tileAddr;
+                            int row = nextScanln - y;
+                            if ((spriteAttribute[spriteCount] & 0x80) == 0x80) {
+                                row = spriteHeight - 1 - row;
                             }
-                            oamIndex++;
+
+                            if ((ppuCtrl & 0x20) == 0) {
+                                tileAddr = ((ppuCtrl & 0x08) << 9) | (spriteTile[spriteCount] << 4) | row;
+                            } else {
+                                // Rows 8-15 come from the following tile, not from the plane bit of this one
+                                tileAddr = ((spriteTile[spriteCount] & 0x01) << 12) | ((spriteTile[spriteCount] & 0xFE) << 4)
+                                        | ((row & 8) << 1) | (row & 7);
+                            }
+
+                            spritePattern[spriteCount] = (spriteAttribute[spriteCount] & 0x40) == 0x40
+                                    ? patternCache.flippedRow(tileAddr)
+                                    : patternCache.row(tileAddr);
+
+                            spriteCount++;
                         }
 
-                        if (oamIndex >= 64 && spriteCount >= 8) {
-                            ppuStatus |= 0x20;
+                        // The scan stops at the eighth sprite in range, so it only reaches the end of OAM, and
+                        // flags an overflow, when that sprite is the last one
+                        if (spriteCount == 8 && spriteIndex[nextScanln * 8 + 7] == 63) {
+                            setStatus(ppuStatus | 0x20);
                         }
+                        rasterizeSprites();
                     }
 
-                    if (cycle >= 1 && cycle <= 256 && scanline >= 0) {
-                        renderPixelForCurrentPosition();
-                    }
+                }
+            }
+
+            if (scanlineCounter != null && (scanline < 240 || scanline == 261) && (ppuMask & 0x18) != 0) {
+                if (cycle == 257) {
+                    enterSpriteFetches();
+                } else if (cycle == 321) {
+                    enterPatternTableHalf((ppuCtrl & 0x10) << 8); // Background fetches for the next line
                 }
             }
 
@@ -477,6 +741,8 @@ public class PPUImpl implements PPU {
         if (cycle > 340) {
             cycle = 0;
             scanline++;
+            renderedDots = 0;
+            dotAccurateLine = false;
             if (scanline > 261) {
                 scanline = 0;
                 oddFrame = !oddFrame;
@@ -495,27 +761,262 @@ public class PPUImpl implements PPU {
         }
     }
 
+    // One step of the background fetch for the tile that dot belongs to: nametable, attribute, low and high
+    // pattern byte, then the move to the next tile.
+    private void fetchBackground(int dot) {
+        switch ((dot - 1) % 8) {
+            case 0:
+                loadBackgroundShifters();
+                bgNextTileId = ppuRead(0x2000 | (vRamAddr & 0x0FFF));
+                break;
+            case 2: {
+                int attributeAddress = 0x23C0 | (vRamAddr & 0x0C00) | ((vRamAddr >> 4) & 0x38) | ((vRamAddr >> 2) & 0x07);
+                int shift = ((vRamAddr >> 4) & 4) | (vRamAddr & 2);
+                bgNextTileAttribute = (ppuRead(attributeAddress) >> shift) & 0x3;
+                break;
+            }
+            case 4: {
+                int patternAddress = ((ppuCtrl & 0x10) << 8) | (bgNextTileId << 4) | ((vRamAddr >> 12) & 7);
+                bgNextTilePattern = patternCache.row(patternAddress) & PatternCache.LOW_PLANE;
+                break;
+            }
+            case 6: {
+                int patternAddress = ((ppuCtrl & 0x10) << 8) | (bgNextTileId << 4) | ((vRamAddr >> 12) & 7);
+                bgNextTilePattern |= patternCache.row(patternAddress) & PatternCache.HIGH_PLANE;
+                break;
+            }
+            case 7:
+                incrementX();
+                break;
+        }
+    }
+
+    // The eight sprite slots are fetched in order; empty slots fetch tile $FF. Only the pattern table half
+    // matters to the scanline counter, so it is told about the phase changes instead of every fetch.
+    private void enterSpriteFetches() {
+        if ((ppuCtrl & 0x20) == 0) {
+            enterPatternTableHalf((ppuCtrl & 0x08) << 9);
+            return;
+        }
+        int sprites = scanline == 261 ? 0 : spriteCount; // The pre-render line has no sprites evaluated
+        for (int i = 0; i < 8; i++) {
+            int tile = i < sprites ? spriteTile[i] : 0xFF;
+            enterPatternTableHalf((tile & 0x01) << 12);
+        }
+    }
+
+    private void enterPatternTableHalf(int half) {
+        if (half > patternTableHalf) {
+            scanlineCounter.a12Rose();
+        }
+        patternTableHalf = half;
+    }
+
     private void enterVBlank() {
-        ppuStatus |= 0x80; // Set VBlank flag
+        publishFrame();
+        setStatus(ppuStatus | 0x80); // Set VBlank flag
         if ((ppuCtrl & 0x80) != 0) { // If NMI is enabled in PPUCTRL
             this.nmiOccurred = true; // PPU's internal flag that NMI condition happened
-            if (this.cpu != null) {
+            if (this.cpu != null && writeLog == null) { // The CPU thread raises it in parallel mode
                 this.cpu.triggerNMI(); // Signal the core.CPU
             }
         }
     }
 
+    private void setStatus(int status) {
+        if (status != ppuStatus) {
+            ppuStatus = status;
+            statusChangeCount++;
+        }
+    }
+
+    @Override
+    public int getStatusChangeCount() {
+        sync();
+        return statusChangeCount;
+    }
+
+    @Override
+    public int dotsUntilNextEvent(boolean includeStatusChanges) {
+        if (writeLog != null) {
+            // Only the NMI is predicted on this side; status changes need the worker's rendering
+            if (includeStatusChanges) {
+                return 0;
+            }
+            int dots = (shadowCtrl & 0x80) != 0
+                    ? dotsBetween(shadowScanline, shadowCycle, 241, 1) : Integer.MAX_VALUE;
+            return Math.max(dots - pendingDots, 0);
+        }
+        return Math.max(dotsUntilEvent(includeStatusChanges) - pendingDots, 0);
+    }
+
+    // Like dotsUntilNextEvent(), counted from the last dot that ran.
+    private int dotsUntilEvent(boolean includeStatusChanges) {
+        int dots = Integer.MAX_VALUE;
+        if (includeStatusChanges || (ppuCtrl & 0x80) != 0) {
+            dots = dotsBefore(241, 1); // VBlank flag and NMI
+        }
+        if (scanlineCounter != null && scanlineCounter.isIrqEnabled() && (ppuMask & 0x18) != 0) {
+            dots = Math.min(dots, dotsUntilFetchPhase());
+        }
+        if (!includeStatusChanges) {
+            return dots;
+        }
+        if ((ppuStatus & 0xE0) != 0) { // Cleared at dot 1 of every scanline
+            dots = Math.min(dots, cycle < 1 ? dotsBefore(scanline, 1) : dotsBefore((scanline + 1) % SCANLINES_PER_FRAME, 1));
+        }
+        if ((ppuMask & 0x18) == 0x18) { // Sprite 0 hit may happen on any visible dot
+            if (scanline < 240 && cycle <= 256) {
+                dots = Math.min(dots, dotsBefore(scanline, Math.max(cycle, 1)));
+            } else {
+                dots = Math.min(dots, dotsBefore(scanline + 1 < 240 ? scanline + 1 : 0, 1));
+            }
+        }
+        // Sprite overflow is only flagged when the 8th sprite in range is the last one in OAM.
+        int lastSpriteY = oam.read(63 * 4);
+        int spriteHeight = (ppuCtrl & 0x20) == 0x20 ? 16 : 8;
+        for (int line = lastSpriteY - 1; line <= lastSpriteY + spriteHeight - 2; line++) {
+            if (line >= 0 && line < 240) {
+                dots = Math.min(dots, dotsBefore(line, 257));
+            }
+        }
+        return dots;
+    }
+
+    // Dots before the next sprite or background fetch phase, where A12 may rise.
+    private int dotsUntilFetchPhase() {
+        int line = scanline;
+        int target;
+        if (cycle <= 257) {
+            target = 257;
+        } else if (cycle <= 321) {
+            target = 321;
+        } else {
+            line = (line + 1) % SCANLINES_PER_FRAME;
+            target = 257;
+        }
+        if (line >= 240 && line < 261) { // No fetches during VBlank
+            line = 261;
+            target = 257;
+        }
+        return dotsBefore(line, target);
+    }
+
+    // Dots that run before the dot at (targetScanline, targetCycle) is processed. One less than the plain
+    // distance, since odd frames may skip a dot.
+    private int dotsBefore(int targetScanline, int targetCycle) {
+        return dotsBetween(scanline, cycle, targetScanline, targetCycle);
+    }
+
+    private static int dotsBetween(int fromScanline, int fromCycle, int targetScanline, int targetCycle) {
+        int distance = (targetScanline * DOTS_PER_SCANLINE + targetCycle) - (fromScanline * DOTS_PER_SCANLINE + fromCycle);
+        if (distance < 0) {
+            distance += SCANLINES_PER_FRAME * DOTS_PER_SCANLINE;
+        }
+        return Math.max(distance - 1, 0);
+    }
+
+    // Rebuilds the per-line sprite index from OAM. A sprite at Y covers lines Y to Y + height - 1.
+    private void indexSprites(int spriteHeight) {
+        Arrays.fill(spriteIndexCounts, 0);
+        for (int oamIndex = 0; oamIndex < 64; oamIndex++) {
+            int y = oam.read(oamIndex * 4);
+            int last = Math.min(y + spriteHeight - 1, INDEXED_LINES - 1);
+            for (int line = y; line <= last; line++) {
+                int count = spriteIndexCounts[line];
+                if (count < 8) {
+                    spriteIndex[line * 8 + count] = oamIndex;
+                    spriteIndexCounts[line] = count + 1;
+                }
+            }
+        }
+        indexedSpriteHeight = spriteHeight;
+    }
+
+    // Fills the sprite line buffer from the sprites just evaluated. Lower slots win, so a pixel is only taken where
+    // no earlier sprite is opaque.
+    private void rasterizeSprites() {
+        if (!spriteLineEmpty) {
+            Arrays.fill(spriteLine, 0);
+            spriteLineEmpty = true;
+        }
+        for (int i = 0; i < spriteCount; i++) {
+            int pattern = spritePattern[i];
+            int flags = (0x10 | ((spriteAttribute[i] & 0x03) << 2)) | (spriteAttribute[i] & SPRITE_BEHIND_BACKGROUND)
+                    | (i == 0 ? SPRITE_ZERO : 0);
+            int end = Math.min(spriteX[i] + 8, spriteLine.length);
+            for (int x = spriteX[i]; x < end; x++, pattern <<= 2) {
+                int pixel = (pattern >> 14) & 3;
+                if (pixel != 0 && spriteLine[x] == 0) {
+                    spriteLine[x] = flags | pixel;
+                    spriteLineEmpty = false;
+                }
+            }
+        }
+    }
+
+    // Runs the dots of the current visible line that the scanline renderer has put off so far.
+    private void catchUpLine() {
+        int lastDot = Math.min(cycle - 1, 256);
+        if (scanline < 240 && renderedDots < lastDot) {
+            renderDots(renderedDots + 1, lastDot);
+        }
+    }
+
+    // Runs dots from..to (1-256) of the current visible line in one pass, with the same result as running them
+    // one at a time through runCycle(). The registers, palette and mapping stay fixed for the whole pass because
+    // anything that changes them catches up first, so the color table and mask bits are fetched once.
+    private void renderDots(int from, int to) {
+        int[] colors = paletteRam.getColors();
+        boolean showBackground = (ppuMask & 0x08) != 0;
+        boolean showSprites = (ppuMask & 0x10) != 0;
+        int firstBackgroundDot = (ppuMask & 0x02) != 0 ? 1 : 9; // Left-column clipping hides dots 1-8
+        int firstSpriteDot = (ppuMask & 0x04) != 0 ? 1 : 9;
+        int pixelShift = 30 - 2 * fineX;
+        int rowStart = scanline * 256 - 1;
+
+        for (int dot = from; dot <= to; dot++) {
+            updateShifters();
+            fetchBackground(dot);
+            if (dot == 256) {
+                incrementY();
+            }
+
+            int bgPixel = 0;
+            int color = 0;
+            if (showBackground && dot >= firstBackgroundDot) {
+                bgPixel = (bgShifterPattern >>> pixelShift) & 3;
+                if (bgPixel != 0) {
+                    int bitMux = 0x8000 >> fineX;
+                    int bgPalette = ((bgShifterAttributeLow & bitMux) != 0 ? 1 : 0) | ((bgShifterAttributeHigh & bitMux) != 0 ? 2 : 0);
+                    color = (bgPalette << 2) | bgPixel;
+                }
+            }
+
+            int sprite = spriteLine[dot - 1];
+            if (sprite != 0 && showSprites && dot >= firstSpriteDot) {
+                if ((sprite & SPRITE_ZERO) != 0 && bgPixel != 0 && dot != 256) { // Sprite 0 hit detection
+                    setStatus(ppuStatus | 0x40);
+                }
+                if (bgPixel == 0 || (sprite & SPRITE_BEHIND_BACKGROUND) == 0) {
+                    color = sprite & 0x1F;
+                }
+            }
+
+            frameData[rowStart + dot] = colors[color];
+        }
+        renderedDots = to;
+    }
+
     private void renderPixelForCurrentPosition() {
         int bgPixel = 0;
         int bgPalette = 0;
 
         if ((ppuMask & 0x08) != 0) {
-            if ((cycle % 8) != 0 || (ppuMask & 0x02) != 0) {
+            if (cycle > 8 || (ppuMask & 0x02) != 0) { // Left-column clipping hides dots 1-8
                 int bitMux = 0x8000 >> fineX;
 
-                int p0 = (bgShifterPatternLow & bitMux) > 0 ? 1 : 0;
-                int p1 = (bgShifterPatternHigh & bitMux) > 0 ? 1 : 0;
-                bgPixel = p0 | (p1 << 1);
+                bgPixel = (bgShifterPattern >>> (30 - 2 * fineX)) & 3;
 
                 int pal0 = (bgShifterAttributeLow & bitMux) > 0 ? 1 : 0;
                 int pal1 = (bgShifterAttributeHigh & bitMux) > 0 ? 1 : 0;
@@ -528,31 +1029,13 @@ public class PPUImpl implements PPU {
         int fpriority = 0;
 
         if ((ppuMask & 0x10) != 0) {
-            if ((cycle % 8) != 0 || (ppuMask & 0x04) != 0) {
-                for (int i = 0; i < spriteCount; i++) {
-                    if (spriteX[i] == 0) {
-                        int fp = ((spriteDataLow[i] & 0x80) > 0 ? 1 : 0);
-                        fp |= ((spriteDataHigh[i] & 0x80) > 0 ? 2 : 0);
-                        fpalette = (spriteAttribute[i] & 0x03) + 4;
-                        fpriority = (spriteAttribute[i] & 0x20) > 0 ? 1 : 0; // 1 if sprite behind BG, 0 if in front
-
-                        if (fp != 0) { // If sprite pixel is not transparent
-                            fpixel = fp; // Assign the calculated sprite pixel to fpixel
-                            if (i == 0 && bgPixel != 0 && cycle != 256) { // Sprite 0 hit detection
-                                ppuStatus |= 0x40;
-                            }
-                            break; // Found first opaque sprite pixel for this X
-                        }
-                    }
-                }
-
-                for (int i = 0; i < spriteCount; i++) {
-                    if (spriteX[i] > 0) {
-                        spriteX[i]--;
-                    } else {
-                        spriteDataLow[i] <<= 1;
-                        spriteDataHigh[i] <<= 1;
-                    }
+            int sprite = spriteLine[cycle - 1]; // First opaque sprite pixel at this x, if any
+            if (sprite != 0 && (cycle > 8 || (ppuMask & 0x04) != 0)) {
+                fpixel = sprite & 0x03;
+                fpalette = (sprite >> 2) & 0x07;
+                fpriority = (sprite & SPRITE_BEHIND_BACKGROUND) != 0 ? 1 : 0; // 1 if sprite behind BG, 0 if in front
+                if ((sprite & SPRITE_ZERO) != 0 && bgPixel != 0 && cycle != 256) { // Sprite 0 hit detection
+                    setStatus(ppuStatus | 0x40);
                 }
             }
         }
@@ -586,12 +1069,9 @@ public class PPUImpl implements PPU {
             }
         }
 
-        int colorAddr = 0x3F00 | (palette << 2) | pixel;
-        int colorIndex = ppuRead(colorAddr) & 0x3F;
-
         int pixelIndex = (scanline * 256) + (cycle - 1);
         if (pixelIndex >= 0 && pixelIndex < frameData.length) {
-            frameData[pixelIndex] = PALETTE[colorIndex];
+            frameData[pixelIndex] = paletteRam.getColors()[(palette << 2) | pixel];
         }
     }
 
@@ -600,16 +1080,14 @@ public class PPUImpl implements PPU {
     // =====================================================================
     private void updateShifters() {
         if ((ppuMask & 0x08) != 0) {
-            bgShifterPatternLow <<= 1;
-            bgShifterPatternHigh <<= 1;
+            bgShifterPattern <<= 2;
             bgShifterAttributeLow <<= 1;
             bgShifterAttributeHigh <<= 1;
         }
     }
 
     private void loadBackgroundShifters() {
-        bgShifterPatternLow = (bgShifterPatternLow & 0xFF00) | bgNextTileLow;
-        bgShifterPatternHigh = (bgShifterPatternHigh & 0xFF00) | bgNextTileHigh;
+        bgShifterPattern = (bgShifterPattern & 0xFFFF0000) | bgNextTilePattern;
 
         bgShifterAttributeLow = (bgShifterAttributeLow & 0xFF00) | ((bgNextTileAttribute & 0x01) != 0 ? 0xFF : 0x00);
         bgShifterAttributeHigh = (bgShifterAttributeHigh & 0xFF00) | ((bgNextTileAttribute & 0x02) != 0 ? 0xFF : 0x00);
@@ -648,14 +1126,31 @@ public class PPUImpl implements PPU {
         }
     }
 
-    private int reverseBits(int b) {
-        b = (b & 0xF0) >> 4 | (b & 0x0F) << 4;
-        b = (b & 0xCC) >> 2 | (b & 0x33) << 2;
-        b = (b & 0xAA) >> 1 | (b & 0x55) << 1;
-        return b;
-    }
-
     public BufferedImage getFrameBuffer() {
+        sync();
+        catchUpLine(); // Show the current line as far as it has been run, as the dot renderer does
         return frameBuffer;
     }
+
+    /**
+     * The last frame completed at VBlank. Doesn't wait for the PPU. Calls must all come from one thread, which
+     * needn't be the one running the PPU. The image stays untouched until the next call.
+     */
+    @Override
+    public BufferedImage getCompletedFrame() {
+        return frames.latest();
+    }
+
+    // Hands the finished frame to the consumer side and draws the next one over a copy of it, so the frame being
+    // drawn shows the last one below the current line as a single buffer would.
+    private void publishFrame() {
+        int[] completed = frameData;
+        frameBuffer = frames.publish();
+        frameData = pixels(frameBuffer);
+        System.arraycopy(completed, 0, frameData, 0, completed.length);
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
 }
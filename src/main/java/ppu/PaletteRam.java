@@ -1,14 +1,89 @@
 package ppu;
 
 // PaletteRam.java
+/**
+ * The 32 palette entries at $3F00-$3F1F, plus the RGB color each entry currently shows. The color tables are kept
+ * up to date on every write, one per combination of the PPUMASK grayscale and emphasis bits, so a renderer gets a
+ * pixel's color with one array load from {@link #getColors()}. $3F10, $3F14, $3F18 and $3F1C share their storage
+ * with $3F00, $3F04, $3F08 and $3F0C.
+ */
 public class PaletteRam {
-    private final int[] paletteData = new int[32];
+    // NES master palette ---------------------------------------------------
+    private static final int[] PALETTE = {
+            0x7C7C7C, 0x0000FC, 0x0000BC, 0x4428BC, 0x940084, 0xA80020, 0xA81000, 0x881400,
+            0x503000, 0x006800, 0x005800, 0x004058, 0x000000, 0x000000, 0x000000, 0x000000,
+            0xBCBCBC, 0x0078F8, 0x0058F8, 0x6844FC, 0xD800CC, 0xE40058, 0xF83800, 0xE45C10,
+            0xAC7C00, 0x00B800, 0x00A800, 0x00A844, 0x008888, 0x000000, 0x000000, 0x000000,
+            0xF8F8F8, 0x3CBCFC, 0x6888FC, 0x9878F8, 0xF878F8, 0xF85898, 0xF87858, 0xFCA044,
+            0xF8B800, 0xB8F818, 0x58D854, 0x58F898, 0x00E8D8, 0x787878, 0x000000, 0x000000,
+            0xFCFCFC, 0xA4E4FC, 0xB8B8F8, 0xD8B8F8, 0xF8B8F8, 0xF8A4C0, 0xF0D0B0, 0xFCE0A8,
+            0xF8D878, 0xD8F878, 0xB8F8B8, 0xB8F8D8, 0x00FCFC, 0xF8D8F8, 0x000000, 0x000000
+    };
+    private static final int VARIANTS = 16; // Grayscale bit, then the red, green and blue emphasis bits
+    private static final int EMPHASIS_ATTENUATION = 192; // Out of 256, for the channels not emphasized
+
+    private final byte[] paletteData = new byte[32];
+    private final int[][] colorTables = new int[VARIANTS][32];
+    private int[] colors = colorTables[0];
+
+    public PaletteRam() {
+        for (int index = 0; index < paletteData.length; index++) {
+            updateColors(index, 0);
+        }
+    }
 
     public int read(int index) {
-        return paletteData[index];
+        return paletteData[mirror(index)];
     }
 
     public void write(int index, int value) {
-        paletteData[index] = value & 0x3F;
+        index = mirror(index);
+        paletteData[index] = (byte) (value & 0x3F);
+        updateColors(index, value & 0x3F);
+        if ((index & 3) == 0) { // The sprite palette mirror shows the same color
+            updateColors(index | 0x10, value & 0x3F);
+        }
+    }
+
+    /**
+     * Selects the color table for the grayscale (bit 0) and emphasis (bits 5-7) bits of {@code ppuMask}.
+     */
+    public void setMask(int ppuMask) {
+        colors = colorTables[(ppuMask & 0x01) | ((ppuMask >> 4) & 0x0E)];
+    }
+
+    /**
+     * RGB of each palette entry under the current mask. The array is live: it changes with later writes, and a
+     * different array is current after {@link #setMask}.
+     */
+    public int[] getColors() {
+        return colors;
+    }
+
+    private void updateColors(int index, int value) {
+        for (int variant = 0; variant < VARIANTS; variant++) {
+            colorTables[variant][index] = rgb(variant, value);
+        }
+    }
+
+    private static int rgb(int variant, int value) {
+        int color = PALETTE[(variant & 1) != 0 ? value & 0x30 : value];
+        int emphasis = variant >> 1; // Bit 0 red, bit 1 green, bit 2 blue
+        if (emphasis == 0) {
+            return color;
+        }
+        int red = attenuate((color >> 16) & 0xFF, (emphasis & 1) == 0);
+        int green = attenuate((color >> 8) & 0xFF, (emphasis & 2) == 0);
+        int blue = attenuate(color & 0xFF, (emphasis & 4) == 0);
+        return (red << 16) | (green << 8) | blue;
+    }
+
+    private static int attenuate(int channel, boolean dimmed) {
+        return dimmed ? channel * EMPHASIS_ATTENUATION >> 8 : channel;
+    }
+
+    private static int mirror(int index) {
+        index &= 0x1F;
+        return (index & 0x13) == 0x10 ? index & 0x0F : index;
     }
-}
\ No newline at end of file
+}
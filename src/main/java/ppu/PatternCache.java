@@ -0,0 +1,94 @@
+package ppu;
+
+import core.Cartridge;
+
+/**
+ * Pattern table rows decoded to 2-bit pixels, for the 512 tiles the PPU sees at $0000-$1FFF. A row packs its eight
+ * pixels into 16 bits with the leftmost pixel in bits 15-14, so both bit planes come out of one array load and a
+ * renderer steps to the next pixel with a 2-bit shift. Each row also has a horizontally flipped variant for sprites.
+ * <p>
+ * Tiles are decoded from the cartridge on first use and dropped again when a CHR bank switch or a CHR RAM write
+ * changes what their addresses show.
+ */
+public class PatternCache {
+    public static final int LOW_PLANE = 0x5555;  // Bit 0 of every pixel
+    public static final int HIGH_PLANE = 0xAAAA; // Bit 1 of every pixel
+
+    private static final int TILES = 512;
+    private static final int TILES_PER_KB = 64;
+
+    private final Cartridge cartridge;
+    private final int[] rows = new int[TILES * 8];
+    private final int[] flippedRows = new int[TILES * 8];
+    private final boolean[] decoded = new boolean[TILES];
+
+    public PatternCache(Cartridge cartridge) {
+        this.cartridge = cartridge;
+    }
+
+    /**
+     * The row of pixels at pattern address {@code address}. The plane bit (bit 3) is ignored.
+     */
+    public int row(int address) {
+        int tile = (address >> 4) & (TILES - 1);
+        if (!decoded[tile]) {
+            decode(tile);
+        }
+        return rows[(tile << 3) | (address & 7)];
+    }
+
+    /**
+     * Like {@link #row}, with the pixels in right-to-left order.
+     */
+    public int flippedRow(int address) {
+        int tile = (address >> 4) & (TILES - 1);
+        if (!decoded[tile]) {
+            decode(tile);
+        }
+        return flippedRows[(tile << 3) | (address & 7)];
+    }
+
+    /**
+     * Drops the tiles at pattern addresses {@code address} to {@code address + length - 1}.
+     */
+    public void invalidate(int address, int length) {
+        int first = (address >> 4) & (TILES - 1);
+        int last = ((address + length - 1) >> 4) & (TILES - 1);
+        for (int tile = first; tile <= last; tile++) {
+            decoded[tile] = false;
+        }
+    }
+
+    /**
+     * Drops the tile written at {@code address}. The same CHR RAM may be banked in at more than one 1KB window, so
+     * the tile at the same offset in every window goes too.
+     */
+    public void invalidateWrite(int address) {
+        int tileInWindow = (address >> 4) & (TILES_PER_KB - 1);
+        for (int window = 0; window < TILES / TILES_PER_KB; window++) {
+            decoded[window * TILES_PER_KB + tileInWindow] = false;
+        }
+    }
+
+    private void decode(int tile) {
+        int base = tile << 4;
+        for (int row = 0; row < 8; row++) {
+            int low = cartridge.ppuRead(base | row);
+            int high = cartridge.ppuRead(base | row | 8);
+            rows[(tile << 3) | row] = spread(low) | (spread(high) << 1);
+            flippedRows[(tile << 3) | row] = spread(reverse(low)) | (spread(reverse(high)) << 1);
+        }
+        decoded[tile] = true;
+    }
+
+    // Moves bit n of a byte to bit 2n
+    private static int spread(int b) {
+        b = (b | (b << 4)) & 0x0F0F;
+        b = (b | (b << 2)) & 0x3333;
+        return (b | (b << 1)) & 0x5555;
+    }
+
+    private static int reverse(int b) {
+        return Integer.reverse(b) >>> 24;
+    }
+}
@@ -0,0 +1,82 @@
+package ppu;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer, single-consumer ring of PPU state changes, each stamped with the dot count the PPU must have
+ * reached before it applies. The CPU thread appends, the PPU worker thread replays. Neither side takes a lock:
+ * each publishes its position with a release store and reads the other's with an acquire load.
+ */
+final class PpuWriteLog {
+    static final int RUN = 0;      // Nothing to apply, just run up to the dot
+    static final int REGISTER = 1; // Write to $2000-$2007: index is the register, 0-7
+    static final int OAM = 2;      // OAM DMA byte: index is the OAM address
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int SPINS_BEFORE_PARKING = 1000;
+    private static final long PARK_NANOS = 20_000;
+
+    private final long[] dots = new long[CAPACITY];
+    private final int[] entries = new int[CAPACITY]; // kind << 16 | index << 8 | value
+    private final AtomicLong head = new AtomicLong(); // Entries appended
+    private final AtomicLong tail = new AtomicLong(); // Entries applied
+
+    /**
+     * Appends an entry, waiting for the consumer while the ring is full. Producer only.
+     */
+    void append(long dot, int kind, int index, int value) {
+        long position = head.get();
+        for (int attempt = 0; position - tail.getAcquire() == CAPACITY; attempt++) {
+            backOff(attempt);
+        }
+        int slot = (int) position & (CAPACITY - 1);
+        dots[slot] = dot;
+        entries[slot] = kind << 16 | (index & 0xFF) << 8 | (value & 0xFF);
+        head.setRelease(position + 1);
+    }
+
+    /**
+     * Whether every appended entry has been applied, so the consumer has stopped touching PPU state.
+     */
+    boolean isDrained() {
+        return tail.getAcquire() == head.get();
+    }
+
+    // Consumer side: peek with hasNext(), dot() and the entry accessors, then mark the entry applied with next().
+
+    boolean hasNext() {
+        return head.getAcquire() != tail.get();
+    }
+
+    long dot() {
+        return dots[(int) tail.get() & (CAPACITY - 1)];
+    }
+
+    int kind() {
+        return entries[(int) tail.get() & (CAPACITY - 1)] >>> 16;
+    }
+
+    int index() {
+        return (entries[(int) tail.get() & (CAPACITY - 1)] >> 8) & 0xFF;
+    }
+
+    int value() {
+        return entries[(int) tail.get() & (CAPACITY - 1)] & 0xFF;
+    }
+
+    void next() {
+        tail.setRelease(tail.get() + 1);
+    }
+
+    /**
+     * Waits a little: spins first, then parks briefly, so an idle side neither burns a core nor misses much time.
+     */
+    static void backOff(int attempt) {
+        if (attempt < SPINS_BEFORE_PARKING) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
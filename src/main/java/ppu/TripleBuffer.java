@@ -0,0 +1,54 @@
+package ppu;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands completed frames from a producer to a consumer on another thread without locks or copies. Of the three
+ * buffers the producer draws into one (the back buffer), the consumer reads another (the front buffer), and the
+ * third holds the latest frame published and not yet taken. Publishing and taking each swap a buffer with that
+ * middle one in a single atomic step, so neither side ever sees a buffer the other is using.
+ * <p>
+ * There is one producer and one consumer; each side's methods must only be called from its own thread.
+ */
+public final class TripleBuffer<T> {
+    private static final int INDEX = 0x3;
+    private static final int FRESH = 0x4; // The middle buffer was published after the consumer last took one
+
+    private final Object[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;  // Producer only
+    private int front = 2; // Consumer only
+
+    public TripleBuffer(T first, T second, T third) {
+        buffers = new Object[]{first, second, third};
+    }
+
+    /**
+     * The buffer the producer draws into.
+     */
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Makes the back buffer the latest completed frame and returns the buffer to draw the next one into. That
+     * buffer holds whatever frame it last held, which may be several frames old.
+     */
+    public T publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+        return back();
+    }
+
+    /**
+     * The latest completed frame. It stays unchanged until the next call, however many frames are published
+     * meanwhile. Returns the same frame again if nothing new has been published.
+     */
+    @SuppressWarnings("unchecked")
+    public T latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,67 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.AxROMMapper;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AxROMMapperTest {
+
+    public static final int THIRTY_TWO_KB = 32768;
+
+    // Every 32KB PRG bank starts with its own number; CHR is RAM
+    private static Cartridge createCartridge(int prgBanks) {
+        byte[] prgRom = new byte[prgBanks * THIRTY_TWO_KB];
+        for (int bank = 0; bank < prgBanks; bank++) {
+            prgRom[bank * THIRTY_TWO_KB] = (byte) bank;
+        }
+        return new Cartridge(prgRom, new byte[0], new AxROMMapper(prgRom.length, 0), false, MirroringMode.HORIZONTAL);
+    }
+
+    @Test
+    void writeSelectsThirtyTwoKbBank() {
+        Cartridge cartridge = createCartridge(8);
+        cartridge.cpuWrite(0x8000, 0x05);
+        assertEquals(5, cartridge.cpuRead(0x8000));
+        assertEquals(5 * THIRTY_TWO_KB + 0x4000, cartridge.getPrgRomOffset(0xC000));
+    }
+
+    @Test
+    void bitFourSelectsSingleScreen() {
+        Cartridge cartridge = createCartridge(2);
+        assertEquals(MirroringMode.SINGLE_SCREEN_LOWER, cartridge.getMirroringMode());
+        cartridge.cpuWrite(0x8000, 0x10);
+        assertEquals(MirroringMode.SINGLE_SCREEN_UPPER, cartridge.getMirroringMode());
+        cartridge.cpuWrite(0x8000, 0x00);
+        assertEquals(MirroringMode.SINGLE_SCREEN_LOWER, cartridge.getMirroringMode());
+    }
+
+    @Test
+    void ppuFollowsMirroringChanges() {
+        Cartridge cartridge = createCartridge(2);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        writeVram(ppu, 0x2000, 0x11); // Lower nametable
+        cartridge.cpuWrite(0x8000, 0x10);
+        writeVram(ppu, 0x2C00, 0x22); // Upper nametable
+
+        assertEquals(0x22, readVram(ppu, 0x2000));
+        assertEquals(0x22, readVram(ppu, 0x2400));
+        cartridge.cpuWrite(0x8000, 0x00);
+        assertEquals(0x11, readVram(ppu, 0x2800));
+    }
+
+    private static void writeVram(PPUImpl ppu, int address, int value) {
+        ppu.write(0x2006, address >> 8);
+        ppu.write(0x2006, address & 0xFF);
+        ppu.write(0x2007, value);
+    }
+
+    // PPUDATA reads are buffered, so the first read returns stale data
+    private static int readVram(PPUImpl ppu, int address) {
+        ppu.write(0x2006, address >> 8);
+        ppu.write(0x2006, address & 0xFF);
+        ppu.read(0x2007);
+        return ppu.read(0x2007);
+    }
+}
@@ -0,0 +1,86 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.CNROMMapper;
+import mapper.PpuMappingListener;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CNROMMapperTest {
+
+    public static final int SIXTEEN_KB = 16384;
+    public static final int EIGHT_KB = 8192;
+
+    // Every 8KB CHR bank starts with its own number
+    private static Cartridge createCartridge(int prgRomSize, int chrBanks) {
+        byte[] prgRom = new byte[prgRomSize];
+        prgRom[0] = 0x12;
+        byte[] chrRom = new byte[chrBanks * EIGHT_KB];
+        for (int bank = 0; bank < chrBanks; bank++) {
+            chrRom[bank * EIGHT_KB] = (byte) bank;
+        }
+        return new Cartridge(prgRom, chrRom, new CNROMMapper(prgRom.length, chrRom.length), false, MirroringMode.HORIZONTAL);
+    }
+
+    @Test
+    void sixteenKbPrgRomIsMirrored() {
+        Cartridge cartridge = createCartridge(SIXTEEN_KB, 4);
+        assertEquals(0x12, cartridge.cpuRead(0x8000));
+        assertEquals(0x12, cartridge.cpuRead(0xC000));
+    }
+
+    @Test
+    void writeSelectsChrBank() {
+        Cartridge cartridge = createCartridge(SIXTEEN_KB, 4);
+        assertEquals(0, cartridge.ppuRead(0x0000));
+        cartridge.cpuWrite(0x8000, 3);
+        assertEquals(3, cartridge.ppuRead(0x0000));
+        assertEquals(0x12, cartridge.cpuRead(0x8000));
+    }
+
+    @Test
+    void chrRomIsReadOnly() {
+        Cartridge cartridge = createCartridge(SIXTEEN_KB, 4);
+        cartridge.ppuWrite(0x0000, 0x55);
+        assertEquals(0, cartridge.ppuRead(0x0000));
+    }
+
+    @Test
+    void chrBankSwitchNotifiesOnlyWhenTheBankChanges() {
+        Cartridge cartridge = createCartridge(SIXTEEN_KB, 4);
+        List<Integer> changed = new ArrayList<>();
+        cartridge.addPpuMappingListener(new PpuMappingListener() {
+            @Override
+            public void chrBanksChanged(int ppuAddress, int length) {
+                changed.add(ppuAddress);
+                changed.add(length);
+            }
+        });
+        cartridge.cpuWrite(0x8000, 0);
+        assertTrue(changed.isEmpty());
+        cartridge.cpuWrite(0x8000, 2);
+        assertEquals(List.of(0x0000, EIGHT_KB), changed);
+    }
+
+    @Test
+    void ppuDataReadsFollowChrBankSwitch() {
+        Cartridge cartridge = createCartridge(SIXTEEN_KB, 4);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        assertEquals(0, readPpuData(ppu, 0x0000));
+        cartridge.cpuWrite(0x8000, 2);
+        assertEquals(2, readPpuData(ppu, 0x0000));
+        assertEquals(2 * EIGHT_KB, cartridge.getChrOffset(0x0000));
+    }
+
+    // PPUDATA reads below the palette are buffered, so the byte at the address comes with the second read
+    private static int readPpuData(PPUImpl ppu, int address) {
+        ppu.write(0x2006, address >> 8);
+        ppu.write(0x2006, address & 0xFF);
+        ppu.read(0x2007);
+        return ppu.read(0x2007);
+    }
+}
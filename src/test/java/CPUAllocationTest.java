@@ -0,0 +1,82 @@
+import core.CPU;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CPUAllocationTest {
+
+    // NTSC: 341 * 262 / 3 CPU cycles per frame
+    private static final int CYCLES_PER_FRAME = 29781;
+
+    // A loop touching every operation kind used by the read and read-modify-write helpers
+    // (load, ADC, SBC, ORA, EOR, AND, CMP/CPX/CPY, BIT, ASL, LSR, ROL, ROR, INC, DEC),
+    // across immediate, zero page, indexed, indirect and accumulator addressing.
+    private static final int[] PROGRAM = {
+            0xA2, 0x08,       // $8000 LDX #$08
+            0xB5, 0x10,       // $8002 LDA $10,X
+            0x69, 0x03,       // $8004 ADC #$03
+            0xE5, 0x20,       // $8006 SBC $20
+            0x1D, 0x00, 0x02, // $8008 ORA $0200,X
+            0x51, 0x30,       // $800B EOR ($30),Y
+            0x29, 0x7F,       // $800D AND #$7F
+            0xC9, 0x40,       // $800F CMP #$40
+            0x24, 0x21,       // $8011 BIT $21
+            0x9D, 0x00, 0x03, // $8013 STA $0300,X
+            0x06, 0x40,       // $8016 ASL $40
+            0x56, 0x41,       // $8018 LSR $41,X
+            0x2E, 0x00, 0x05, // $801A ROL $0500
+            0x7E, 0x01, 0x05, // $801D ROR $0501,X
+            0xE6, 0x42,       // $8020 INC $42
+            0xC6, 0x43,       // $8022 DEC $43
+            0x0A,             // $8024 ASL A
+            0x6A,             // $8025 ROR A
+            0xA4, 0x44,       // $8026 LDY $44
+            0xC0, 0x10,       // $8028 CPY #$10
+            0xE4, 0x45,       // $802A CPX $45
+            0xCA,             // $802C DEX
+            0xD0, 0xD3,       // $802D BNE $8002
+            0x4C, 0x00, 0x80  // $802F JMP $8000
+    };
+
+    @Test
+    public void steadyStateExecutionDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threadBean);
+
+        CPUTestBuilder builder = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withZeroPagePointer(0x30, 0x00, 0x06)
+                .withMemoryValue(0x20, 0x81)
+                .withMemoryValue(0x21, 0xC0);
+        for (int i = 0; i < PROGRAM.length; i++) {
+            builder.withMemoryValue(0x8000 + i, PROGRAM[i]);
+        }
+        CPU cpu = builder.buildAndRun(0);
+
+        // Warm up: class loading and lambda linkage happen on first use.
+        runFrames(cpu, 60);
+
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        runFrames(cpu, 10);
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(0, allocated, "CPU allocated " + allocated + " bytes over 10 frames");
+    }
+
+    private static void runFrames(CPU cpu, int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            for (int i = 0; i < CYCLES_PER_FRAME; i++) {
+                cpu.runCycle();
+            }
+        }
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean threadBean) {
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+}
@@ -0,0 +1,86 @@
+import core.*;
+import mapper.NROMMapper;
+
+/**
+ * Small throughput benchmark for the CPU core. Not a unit test: run it with
+ * {@code java -cp target/classes:target/test-classes CPUBenchmark [rounds] [cycle|instruction|recompiled]}.
+ *
+ * <p>The program is a fixed loop that mixes immediate, zero page, indexed and read-modify-write
+ * instructions with a taken/not-taken branch, so it exercises most of the dispatch paths.
+ * One pass of the outer loop is exactly {@link #CYCLES_PER_PASS} cycles and
+ * {@link #INSTRUCTIONS_PER_PASS} instructions, which lets us report instructions per second
+ * without instrumenting the CPU.</p>
+ */
+public class CPUBenchmark {
+
+    private static final int CYCLES_PER_PASS = 190;
+    private static final int INSTRUCTIONS_PER_PASS = 53;
+    private static final int PASSES_PER_ROUND = 2_000_000;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        ExecutionMode mode = args.length > 1 ? ExecutionMode.valueOf(args[1].toUpperCase()) : ExecutionMode.CYCLE;
+        CPU cpu = createCpu(mode);
+        System.out.println("execution mode: " + mode);
+
+        // Warm up so the JIT has compiled the dispatch path before we start measuring.
+        runPasses(cpu, PASSES_PER_ROUND);
+
+        double best = 0;
+        double total = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            runPasses(cpu, PASSES_PER_ROUND);
+            long elapsed = System.nanoTime() - start;
+            double instructionsPerSecond = (double) PASSES_PER_ROUND * INSTRUCTIONS_PER_PASS * 1_000_000_000L / elapsed;
+            best = Math.max(best, instructionsPerSecond);
+            total += instructionsPerSecond;
+            System.out.printf("round %2d: %6.2f M instr/s%n", round + 1, instructionsPerSecond / 1_000_000);
+        }
+        System.out.printf("average: %6.2f M instr/s, best: %6.2f M instr/s%n",
+                total / rounds / 1_000_000, best / 1_000_000);
+    }
+
+    private static void runPasses(CPU cpu, int passes) {
+        long cycles = (long) passes * CYCLES_PER_PASS;
+        if (cpu.getExecutionMode() != ExecutionMode.CYCLE) {
+            for (long i = 0; i < cycles; ) {
+                i += cpu.runInstruction();
+            }
+        } else {
+            for (long i = 0; i < cycles; i++) {
+                cpu.runCycle();
+            }
+        }
+    }
+
+    // Runs from a real NROM cartridge so recompiled mode has PRG ROM to compile.
+    private static CPU createCpu(ExecutionMode mode) {
+        byte[] prgRom = new byte[0x8000];
+        int[] program = {
+                0xA9, 0x10,       // $8000 LDA #$10
+                0x85, 0x00,       // $8002 STA $00
+                0xA2, 0x08,       // $8004 LDX #$08
+                0xBD, 0x00, 0x02, // $8006 LDA $0200,X
+                0x65, 0x00,       // $8009 ADC $00
+                0x9D, 0x00, 0x03, // $800B STA $0300,X
+                0x06, 0x01,       // $800E ASL $01
+                0xCA,             // $8010 DEX
+                0xD0, 0xF3,       // $8011 BNE $8006
+                0xE6, 0x02,       // $8013 INC $02
+                0x4C, 0x00, 0x80  // $8015 JMP $8000
+        };
+        for (int i = 0; i < program.length; i++) {
+            prgRom[i] = (byte) program[i];
+        }
+        prgRom[0x7FFC] = 0x00;
+        prgRom[0x7FFD] = (byte) 0x80;
+
+        Cartridge cartridge = new Cartridge(prgRom, new byte[0], new NROMMapper(prgRom.length), false, MirroringMode.HORIZONTAL);
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, null, null);
+        CPU cpu = new CPU(bus, mode);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+        return cpu;
+    }
+}
@@ -0,0 +1,96 @@
+import core.*;
+import mapper.BankedMapper;
+import mapper.Mapper;
+import mapper.NROMMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CPUBusTest {
+
+    private static final int SIXTEEN_KB = 16384;
+
+    // Two 16KB banks, switched at $8000-$BFFF by any write to ROM; the last bank is fixed at $C000-$FFFF.
+    private static class SwitchableMapper extends BankedMapper {
+        SwitchableMapper() {
+            super(2 * SIXTEEN_KB, 0);
+            setPrgBanks(0x8000, SIXTEEN_KB, 0);
+            setPrgBanks(0xC000, SIXTEEN_KB, 1);
+        }
+
+        void switchBank(int bank) {
+            setPrgBanks(0x8000, SIXTEEN_KB, bank);
+        }
+
+        @Override
+        protected void writeRegister(int address, int value) {
+        }
+
+        @Override
+        public int getId() {
+            return 2;
+        }
+    }
+
+    private static byte[] prgRom(int size) {
+        byte[] prgRom = new byte[size];
+        for (int i = 0; i < size; i++) {
+            prgRom[i] = (byte) (i * 7 + (i >> 14));
+        }
+        return prgRom;
+    }
+
+    private static CPUBus createBus(byte[] prgRom, Mapper mapper) {
+        Cartridge cartridge = new Cartridge(prgRom, new byte[0], mapper, false, MirroringMode.HORIZONTAL);
+        return new CPUBus(new WRAMImpl(), cartridge, null, null);
+    }
+
+    @Test
+    public void internalRamIsMirroredEvery2KB() {
+        CPUBus bus = createBus(prgRom(SIXTEEN_KB), new NROMMapper(SIXTEEN_KB));
+        bus.write(0x0123, 0x1FF);
+        assertEquals(0xFF, bus.read(0x0123));
+        assertEquals(0xFF, bus.read(0x0923));
+        assertEquals(0xFF, bus.read(0x1923));
+        bus.write(0x1F00, 0x42);
+        assertEquals(0x42, bus.getWram().getMemory()[0x0700]);
+        bus.write(0x0000, 0x80);
+        assertEquals(0x80, bus.read(0x1800));
+    }
+
+    @Test
+    public void prgRomIsReadOnlyAndMirroredForSixteenKB() {
+        byte[] prgRom = prgRom(SIXTEEN_KB);
+        CPUBus bus = createBus(prgRom, new NROMMapper(SIXTEEN_KB));
+        for (int address = 0x8000; address <= 0xFFFF; address += 0x1F3) {
+            assertEquals(prgRom[address & 0x3FFF] & 0xFF, bus.read(address), "address " + address);
+        }
+        bus.write(0x8000, ~prgRom[0]);
+        assertEquals(prgRom[0] & 0xFF, bus.read(0x8000));
+        assertEquals(prgRom[0] & 0xFF, bus.read(0xC000));
+    }
+
+    @Test
+    public void prgRamIsReadWrite() {
+        CPUBus bus = createBus(prgRom(SIXTEEN_KB), new NROMMapper(SIXTEEN_KB));
+        bus.write(0x6000, 0x12);
+        bus.write(0x7FFF, 0x34);
+        assertEquals(0x12, bus.read(0x6000));
+        assertEquals(0x34, bus.read(0x7FFF));
+        assertEquals(0x12, bus.getCartridge().cpuRead(0x6000));
+    }
+
+    @Test
+    public void bankSwitchRemapsPrgRomPages() {
+        byte[] prgRom = prgRom(2 * SIXTEEN_KB);
+        SwitchableMapper mapper = new SwitchableMapper();
+        CPUBus bus = createBus(prgRom, mapper);
+        assertEquals(prgRom[0x0123] & 0xFF, bus.read(0x8123));
+        assertEquals(prgRom[SIXTEEN_KB + 0x0123] & 0xFF, bus.read(0xC123));
+
+        mapper.switchBank(1);
+        assertEquals(prgRom[SIXTEEN_KB + 0x0123] & 0xFF, bus.read(0x8123));
+        assertEquals(prgRom[SIXTEEN_KB + 0x3FFF] & 0xFF, bus.read(0xBFFF));
+        assertEquals(prgRom[SIXTEEN_KB + 0x0123] & 0xFF, bus.read(0xC123));
+    }
+}
@@ -0,0 +1,299 @@
+import core.*;
+import core.dynarec.BlockCache;
+import mapper.BankedMapper;
+import mapper.Mapper;
+import mapper.NROMMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CPUDynarecTest {
+
+    private static final int SIXTEEN_KB = 16384;
+
+    private static Cartridge createCartridge(int[] prgRom, Mapper mapper) {
+        byte[] image = new byte[prgRom.length];
+        for (int i = 0; i < prgRom.length; i++) {
+            image[i] = (byte) prgRom[i];
+        }
+        return new Cartridge(image, new byte[0], mapper, false, MirroringMode.HORIZONTAL);
+    }
+
+    private static CPU createCpu(Cartridge cartridge, ExecutionMode mode) {
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, null, null);
+        CPU cpu = new CPU(bus, mode);
+        cpu.setIdleLoopSkipping(false); // Idle loops would otherwise be skipped instead of compiled
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+        return cpu;
+    }
+
+    private static int[] nromImage(int[] program) {
+        int[] prgRom = new int[2 * SIXTEEN_KB];
+        System.arraycopy(program, 0, prgRom, 0, program.length);
+        prgRom[0x7FFC] = 0x00;
+        prgRom[0x7FFD] = 0x80;
+        return prgRom;
+    }
+
+    // Runs the program recompiled, then runs it again cycle by cycle for the same number of cycles.
+    private static void assertMatchesCycleMode(int[] prgRom, int instructions) {
+        Cartridge recompiledCartridge = createCartridge(prgRom, new NROMMapper(prgRom.length));
+        CPU recompiled = createCpu(recompiledCartridge, ExecutionMode.RECOMPILED);
+        int cycles = TestConsole.runInstructions(recompiled, instructions);
+
+        CPU exact = createCpu(createCartridge(prgRom, new NROMMapper(prgRom.length)), ExecutionMode.CYCLE);
+        for (int i = 0; i < cycles; i++) {
+            exact.runCycle();
+        }
+
+        CpuState expected = exact.getState();
+        CpuState actual = recompiled.getState();
+        assertEquals(expected.getPc(), actual.getPc(), "pc");
+        assertEquals(expected.getA(), actual.getA(), "a");
+        assertEquals(expected.getX(), actual.getX(), "x");
+        assertEquals(expected.getY(), actual.getY(), "y");
+        assertEquals(expected.getSp(), actual.getSp(), "sp");
+        assertEquals(expected.isCarry(), actual.isCarry(), "carry");
+        assertEquals(expected.isZero(), actual.isZero(), "zero");
+        assertEquals(expected.isInterruptDisable(), actual.isInterruptDisable(), "interrupt disable");
+        assertEquals(expected.isDecimal(), actual.isDecimal(), "decimal");
+        assertEquals(expected.isOverflow(), actual.isOverflow(), "overflow");
+        assertEquals(expected.isNegative(), actual.isNegative(), "negative");
+        for (int address = 0; address < 0x800; address++) {
+            assertEquals(exact.read(address), recompiled.read(address), "memory at " + address);
+        }
+        assertTrue(BlockCache.forCartridge(recompiledCartridge).getCompiledBlockCount() > 0, "no block was compiled");
+    }
+
+    @Test
+    public void recompiledProgramMatchesCycleMode() {
+        int[] prgRom = nromImage(new int[]{
+                0xA2, 0x00,       // $8000 LDX #$00
+                0xA9, 0x00,       // $8002 LDA #$00
+                0x85, 0x30,       // $8004 STA $30
+                0xA9, 0x06,       // $8006 LDA #$06
+                0x85, 0x31,       // $8008 STA $31      ($30) = $0600
+                0xA9, 0x12,       // $800A LDA #$12
+                0x85, 0x40,       // $800C STA $40
+                0xA9, 0x80,       // $800E LDA #$80
+                0x85, 0x41,       // $8010 STA $41      ($40) = $8012
+                0xA0, 0xF0,       // $8012 LDY #$F0
+                0xB9, 0xF0, 0x80, // $8014 LDA $80F0,Y  page crossing read from ROM
+                0x91, 0x30,       // $8017 STA ($30),Y
+                0x20, 0x40, 0x80, // $8019 JSR $8040
+                0x48,             // $801C PHA
+                0x28,             // $801D PLP
+                0x51, 0x30,       // $801E EOR ($30),Y
+                0xA1, 0x30,       // $8020 LDA ($30,X)
+                0x88,             // $8022 DEY
+                0xD0, 0xEF,       // $8023 BNE $8014
+                0xE8,             // $8025 INX
+                0x8A,             // $8026 TXA
+                0x29, 0x0E,       // $8027 AND #$0E
+                0xAA,             // $8029 TAX
+                0x6C, 0x40, 0x00  // $802A JMP ($0040)
+        });
+        int[] subroutine = {
+                0xFE, 0x00, 0x07, // $8040 INC $0700,X
+                0x36, 0x50,       // $8043 ROL $50,X
+                0x7D, 0xFF, 0x06, // $8045 ADC $06FF,X
+                0xE9, 0x13,       // $8048 SBC #$13
+                0x2C, 0x00, 0x07, // $804A BIT $0700
+                0x70, 0x01,       // $804D BVS $8050
+                0xEA,             // $804F NOP
+                0x60              // $8050 RTS
+        };
+        System.arraycopy(subroutine, 0, prgRom, 0x40, subroutine.length);
+        for (int i = 0; i < 0x100; i++) {
+            prgRom[0xF0 + i] = (i * 13) & 0xFF;
+        }
+
+        assertMatchesCycleMode(prgRom, 20000);
+    }
+
+    private static final Set<AddressingMode> RANDOM_MODES = EnumSet.of(
+            AddressingMode.IMM, AddressingMode.ZPG, AddressingMode.ZPG_X, AddressingMode.ZPG_Y,
+            AddressingMode.ABS, AddressingMode.ABS_X, AddressingMode.ABS_Y,
+            AddressingMode.IMP, AddressingMode.ACC, AddressingMode.REL);
+    // Would leave the program through a random stack or vector.
+    private static final Set<Instruction> RANDOM_EXCLUDED = EnumSet.of(
+            Instruction.BRK, Instruction.RTI, Instruction.RTS, Instruction.JSR);
+
+    private static int[] randomProgram(long seed) {
+        Random random = new Random(seed);
+        List<Integer> opcodes = new ArrayList<>();
+        for (int opCode = 0; opCode < 256; opCode++) {
+            CPU.OpcodeInfo info = CPU.describeOpcode(opCode);
+            if (info != null && RANDOM_MODES.contains(info.addressingMode()) && !RANDOM_EXCLUDED.contains(info.instruction())) {
+                opcodes.add(opCode);
+            }
+        }
+
+        // Lay out the instructions first so that branches and jumps can target instruction starts.
+        int count = 300;
+        int[] opCodes = new int[count];
+        int[] addresses = new int[count + 1];
+        addresses[0] = 0x8000;
+        for (int i = 0; i < count; i++) {
+            opCodes[i] = opcodes.get(random.nextInt(opcodes.size()));
+            addresses[i + 1] = addresses[i] + 1 + CPU.describeOpcode(opCodes[i]).addressingMode().getOperandBytes();
+        }
+
+        int[] program = new int[addresses[count] - 0x8000 + 3];
+        for (int i = 0; i < count; i++) {
+            CPU.OpcodeInfo info = CPU.describeOpcode(opCodes[i]);
+            int offset = addresses[i] - 0x8000;
+            int operand = switch (info.addressingMode()) {
+                case IMM, ZPG, ZPG_X, ZPG_Y -> random.nextInt(0x100);
+                // All of RAM including its mirrors, and the start of PRG ROM (writes there are ignored).
+                case ABS -> info.instruction() == Instruction.JMP
+                        ? addresses[random.nextInt(count)]
+                        : random.nextBoolean() ? random.nextInt(0x2000) : 0x8000 + random.nextInt(0x100);
+                case ABS_X, ABS_Y -> random.nextInt(0x1F00);
+                case REL -> {
+                    int next = addresses[i + 1];
+                    int target = addresses[Math.max(0, Math.min(count - 1, i + random.nextInt(41) - 20))];
+                    yield (target - next) & 0xFF;
+                }
+                default -> 0;
+            };
+            program[offset] = opCodes[i];
+            program[offset + 1] = operand & 0xFF;
+            if (info.addressingMode().getOperandBytes() == 2) {
+                program[offset + 2] = operand >> 8;
+            }
+        }
+        int end = addresses[count] - 0x8000;
+        program[end] = 0x4C; // JMP $8000
+        program[end + 1] = 0x00;
+        program[end + 2] = 0x80;
+        return program;
+    }
+
+    @Test
+    public void randomProgramsMatchCycleMode() {
+        for (long seed = 1; seed <= 20; seed++) {
+            int[] prgRom = nromImage(randomProgram(seed));
+            try {
+                assertMatchesCycleMode(prgRom, 5000);
+            } catch (AssertionError e) {
+                throw new AssertionError("seed " + seed + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * First 16KB bank fixed at $8000-$BFFF and banks 1 or 2 switchable at $C000-$FFFF.
+     */
+    private static class SwitchableMapper extends BankedMapper {
+        SwitchableMapper() {
+            super(3 * SIXTEEN_KB, 0);
+            setPrgBanks(0x8000, SIXTEEN_KB, 0);
+            setPrgBanks(0xC000, SIXTEEN_KB, 1);
+        }
+
+        void selectBank(int bank) {
+            setPrgBanks(0xC000, SIXTEEN_KB, bank);
+        }
+
+        @Override
+        protected void writeRegister(int address, int value) {
+        }
+
+        @Override
+        public int getId() {
+            return 180;
+        }
+    }
+
+    @Test
+    public void bankSwitchReplacesCompiledBlocks() {
+        int[] prgRom = new int[3 * SIXTEEN_KB];
+        int[] bank1 = {0xA9, 0x11, 0xE6, 0x10, 0x4C, 0x00, 0xC0}; // LDA #$11; INC $10; JMP $C000
+        int[] bank2 = {0xA9, 0x22, 0xE6, 0x10, 0x4C, 0x00, 0xC0}; // LDA #$22; INC $10; JMP $C000
+        System.arraycopy(bank1, 0, prgRom, SIXTEEN_KB, bank1.length);
+        System.arraycopy(bank2, 0, prgRom, 2 * SIXTEEN_KB, bank2.length);
+        for (int bank = 1; bank <= 2; bank++) {
+            prgRom[bank * SIXTEEN_KB + 0x3FFC] = 0x00;
+            prgRom[bank * SIXTEEN_KB + 0x3FFD] = 0xC0;
+        }
+        SwitchableMapper mapper = new SwitchableMapper();
+        Cartridge cartridge = createCartridge(prgRom, mapper);
+        CPU cpu = createCpu(cartridge, ExecutionMode.RECOMPILED);
+
+        TestConsole.runInstructions(cpu, 200);
+        assertEquals(0x11, cpu.getState().getA());
+
+        mapper.selectBank(2);
+        TestConsole.runInstructions(cpu, 1);
+        assertEquals(0x22, cpu.getState().getA());
+
+        mapper.selectBank(1);
+        TestConsole.runInstructions(cpu, 1);
+        assertEquals(0x11, cpu.getState().getA());
+        assertEquals(2, BlockCache.forCartridge(cartridge).getCompiledBlockCount());
+    }
+
+    @Test
+    public void cpusRunningTheSameCartridgeShareCompiledBlocks() {
+        int[] prgRom = nromImage(new int[]{
+                0xE8,             // $8000 INX
+                0x86, 0x10,       // $8001 STX $10
+                0x4C, 0x00, 0x80  // $8003 JMP $8000
+        });
+        Cartridge cartridge = createCartridge(prgRom, new NROMMapper(prgRom.length));
+        CPU first = createCpu(cartridge, ExecutionMode.RECOMPILED);
+        TestConsole.runInstructions(first, 100);
+        assertEquals(1, BlockCache.forCartridge(cartridge).getCompiledBlockCount());
+
+        CPU second = createCpu(cartridge, ExecutionMode.RECOMPILED);
+        TestConsole.runInstructions(second, 100);
+        assertEquals(1, BlockCache.forCartridge(cartridge).getCompiledBlockCount());
+        assertEquals(first.read(0x10), second.read(0x10));
+    }
+
+    @Test
+    public void ioPollingLoopsAreNotCompiled() {
+        int[] prgRom = nromImage(new int[]{
+                0xAD, 0x16, 0x40, // $8000 LDA $4016
+                0x10, 0xFB        // $8003 BPL $8000
+        });
+        Cartridge cartridge = createCartridge(prgRom, new NROMMapper(prgRom.length));
+        CPU cpu = createCpu(cartridge, ExecutionMode.RECOMPILED);
+        TestConsole.runInstructions(cpu, 200);
+
+        // Only the lone branch at $8003 is worth a block; the register read itself stays interpreted.
+        assertEquals(0x8000, cpu.getState().getPc());
+        assertEquals(1, BlockCache.forCartridge(cartridge).getCompiledBlockCount());
+    }
+
+    @Test
+    public void blocksFollowTheRamSwappedInByLoadingAState() {
+        int[] prgRom = nromImage(new int[]{
+                0xE6, 0x10,       // $8000 INC $10
+                0x4C, 0x00, 0x80  // $8002 JMP $8000
+        });
+        WRAMImpl wram = new WRAMImpl() {
+            @Override
+            public void loadMemoryState(WRAM sourceMemory) {
+                memory = sourceMemory.getMemory().clone();
+            }
+        };
+        CPUBus bus = new CPUBus(wram, createCartridge(prgRom, new NROMMapper(prgRom.length)), null, null);
+        CPU cpu = new CPU(bus, ExecutionMode.RECOMPILED);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+        TestConsole.runInstructions(cpu, 100);
+
+        bus.loadWRamState(new WRAMImpl());
+        int cycles = TestConsole.runInstructions(cpu, 20);
+        assertEquals(cycles / 8, cpu.read(0x10), "the blocks should write to the new array");
+    }
+}
@@ -0,0 +1,146 @@
+import core.CPU;
+import core.CpuState;
+import core.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CPUExecutionModeTest {
+
+    // Mixes page-crossing reads, subroutine calls, stack and indirect instructions.
+    private static final int[] PROGRAM = {
+            0xA0, 0xF0,       // $8000 LDY #$F0
+            0xB9, 0xF0, 0x80, // $8002 LDA $80F0,Y
+            0x20, 0x20, 0x80, // $8005 JSR $8020
+            0x48,             // $8008 PHA
+            0x28,             // $8009 PLP
+            0x51, 0x30,       // $800A EOR ($30),Y
+            0x88,             // $800C DEY
+            0xD0, 0xF3,       // $800D BNE $8002
+            0x6C, 0x40, 0x00  // $800F JMP ($0040)
+    };
+
+    private static final int[] SUBROUTINE = {
+            0xE6, 0x50,       // $8020 INC $50
+            0x2A,             // $8022 ROL A
+            0x60              // $8023 RTS
+    };
+
+    private static CPUTestBuilder programBuilder(ExecutionMode mode) {
+        CPUTestBuilder builder = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withExecutionMode(mode)
+                .withZeroPagePointer(0x30, 0xF0, 0x06)
+                .withZeroPagePointer(0x40, 0x00, 0x80);
+        for (int i = 0; i < PROGRAM.length; i++) {
+            builder.withMemoryValue(0x8000 + i, PROGRAM[i]);
+        }
+        for (int i = 0; i < SUBROUTINE.length; i++) {
+            builder.withMemoryValue(0x8020 + i, SUBROUTINE[i]);
+        }
+        return builder;
+    }
+
+    @Test
+    public void instructionModeMatchesCycleModeAtInstructionBoundaries() {
+        CPU fast = programBuilder(ExecutionMode.INSTRUCTION).buildAndRun(0);
+        int cycles = 0;
+        for (int i = 0; i < 5000; i++) {
+            cycles += fast.runInstruction();
+        }
+
+        CPU exact = programBuilder(ExecutionMode.CYCLE).buildAndRun(cycles);
+
+        assertSameState(exact, fast);
+    }
+
+    @Test
+    public void runCycleInInstructionModeKeepsCycleCount() {
+        CPU fast = programBuilder(ExecutionMode.INSTRUCTION).buildAndRun(0);
+        int cycles = 0;
+        for (int i = 0; i < 1000; i++) {
+            cycles += fast.runInstruction();
+        }
+
+        // Driving the instruction-mode CPU through runCycle() must land on the same boundary.
+        CPU stepped = programBuilder(ExecutionMode.INSTRUCTION).buildAndRun(cycles);
+
+        assertSameState(fast, stepped);
+    }
+
+    @Test
+    public void runInstructionReturnsCycleCost() {
+        CPU cpu = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withExecutionMode(ExecutionMode.INSTRUCTION)
+                .withRegisterX(0x01)
+                .withInstruction(0x8000, 0xBD, 0x00, 0x90) // LDA $9000,X
+                .withInstruction(0x8003, 0xBD, 0xFF, 0x90) // LDA $90FF,X (page crossed)
+                .withInstruction(0x8006, 0x20, 0x00, 0x90) // JSR $9000
+                .buildAndRun(0);
+
+        assertEquals(4, cpu.runInstruction());
+        assertEquals(5, cpu.runInstruction());
+        assertEquals(6, cpu.runInstruction());
+        assertEquals(0x9000, cpu.getState().getPc());
+    }
+
+    @Test
+    public void switchingModesMidInstructionFinishesTheInstruction() {
+        CPU cpu = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withInstruction(0x8000, 0xAD, 0x00, 0x90) // LDA $9000
+                .withInstruction(0x8003, 0xE8)             // INX
+                .withMemoryValue(0x9000, 0x42)
+                .buildAndRun(2);
+
+        cpu.setExecutionMode(ExecutionMode.INSTRUCTION);
+
+        assertEquals(2, cpu.runInstruction());
+        assertEquals(0x42, cpu.getState().getA());
+        assertEquals(0x8003, cpu.getState().getPc());
+        assertEquals(2, cpu.runInstruction());
+        assertEquals(0x01, cpu.getState().getX());
+    }
+
+    @Test
+    public void switchingBackToCycleModeIdlesThroughExecutedInstruction() {
+        CPU cpu = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withExecutionMode(ExecutionMode.INSTRUCTION)
+                .withInstruction(0x8000, 0xAD, 0x00, 0x90) // LDA $9000
+                .withInstruction(0x8003, 0xE8)             // INX
+                .withMemoryValue(0x9000, 0x42)
+                .buildAndRun(1);
+
+        assertEquals(0x42, cpu.getState().getA());
+        cpu.setExecutionMode(ExecutionMode.CYCLE);
+
+        // Three cycles of the LDA are still owed before the INX starts.
+        for (int i = 0; i < 4; i++) {
+            cpu.runCycle();
+        }
+        assertEquals(0x00, cpu.getState().getX());
+        cpu.runCycle();
+        assertEquals(0x01, cpu.getState().getX());
+    }
+
+    private static void assertSameState(CPU expectedCpu, CPU actualCpu) {
+        CpuState expected = expectedCpu.getState();
+        CpuState actual = actualCpu.getState();
+        assertEquals(expected.getPc(), actual.getPc(), "pc");
+        assertEquals(expected.getSp(), actual.getSp(), "sp");
+        assertEquals(expected.getA(), actual.getA(), "a");
+        assertEquals(expected.getX(), actual.getX(), "x");
+        assertEquals(expected.getY(), actual.getY(), "y");
+        assertEquals(expected.isCarry(), actual.isCarry(), "carry");
+        assertEquals(expected.isZero(), actual.isZero(), "zero");
+        assertEquals(expected.isInterruptDisable(), actual.isInterruptDisable(), "interruptDisable");
+        assertEquals(expected.isDecimal(), actual.isDecimal(), "decimal");
+        assertEquals(expected.isOverflow(), actual.isOverflow(), "overflow");
+        assertEquals(expected.isNegative(), actual.isNegative(), "negative");
+        for (int address = 0; address < 0x0800; address++) {
+            assertEquals(expectedCpu.read(address), actualCpu.read(address), "memory at " + address);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import core.*;
+import mapper.NROMMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CPUIdleLoopTest {
+
+    private static final int CYCLES_PER_FRAME = 29781;
+
+    // Draws a striped background with sprite 0 on top, waits for the NMI on a RAM flag and then for the
+    // next VBlank by polling $2002. The NMI handler scrolls the screen by one more pixel every frame.
+    private static final int[] PROGRAM = {
+            0x78,             // $8000 SEI
+            0xA2, 0xFF,       // $8001 LDX #$FF
+            0x9A,             // $8003 TXS
+            0xA9, 0x3F,       // $8004 LDA #$3F
+            0x8D, 0x06, 0x20, // $8006 STA $2006
+            0xA9, 0x00,       // $8009 LDA #$00
+            0x8D, 0x06, 0x20, // $800B STA $2006
+            0xA9, 0x0F,       // $800E LDA #$0F
+            0x8D, 0x07, 0x20, // $8010 STA $2007   backdrop
+            0xA9, 0x21,       // $8013 LDA #$21
+            0x8D, 0x07, 0x20, // $8015 STA $2007   color 1
+            0xA9, 0x00,       // $8018 LDA #$00
+            0x8D, 0x06, 0x20, // $801A STA $2006
+            0x8D, 0x06, 0x20, // $801D STA $2006
+            0xA2, 0x08,       // $8020 LDX #$08
+            0xA9, 0xAA,       // $8022 LDA #$AA
+            0x8D, 0x07, 0x20, // $8024 STA $2007   tile 0, low plane
+            0xCA,             // $8027 DEX
+            0xD0, 0xFA,       // $8028 BNE $8024
+            0xA9, 0x80,       // $802A LDA #$80
+            0x8D, 0x00, 0x20, // $802C STA $2000   NMI on
+            0xA9, 0x1E,       // $802F LDA #$1E
+            0x8D, 0x01, 0x20, // $8031 STA $2001   background and sprites on
+            0xA5, 0x10,       // $8034 LDA $10
+            0xF0, 0xFC,       // $8036 BEQ $8034
+            0xA9, 0x00,       // $8038 LDA #$00
+            0x85, 0x10,       // $803A STA $10
+            0xE6, 0x11,       // $803C INC $11
+            0x2C, 0x02, 0x20, // $803E BIT $2002
+            0x10, 0xFB,       // $8041 BPL $803E
+            0x4C, 0x34, 0x80, // $8043 JMP $8034
+            0xE6, 0x10,       // $8046 INC $10     NMI handler
+            0xA5, 0x11,       // $8048 LDA $11
+            0x8D, 0x05, 0x20, // $804A STA $2005
+            0x8D, 0x05, 0x20, // $804D STA $2005
+            0x40              // $8050 RTI
+    };
+
+    @Test
+    public void skippingIdleLoopsKeepsInstructionModeExact() {
+        TestConsole skipping = new TestConsole(PROGRAM, 0x8046, ExecutionMode.INSTRUCTION, true);
+        TestConsole plain = new TestConsole(PROGRAM, 0x8046, ExecutionMode.INSTRUCTION, false);
+
+        for (int frame = 1; frame <= 10; frame++) {
+            skipping.runInstructionsUntil((long) frame * CYCLES_PER_FRAME);
+            // Every boundary of the skipping run is also one of the plain run, so both stop at the same cycle.
+            plain.runInstructionsUntil(skipping.cycles);
+            assertEquals(skipping.cycles, plain.cycles);
+
+            CpuState expected = plain.cpu.getState();
+            CpuState actual = skipping.cpu.getState();
+            assertEquals(expected.getPc(), actual.getPc(), "pc in frame " + frame);
+            assertEquals(expected.getA(), actual.getA(), "a in frame " + frame);
+            assertEquals(expected.getSp(), actual.getSp(), "sp in frame " + frame);
+            assertEquals(expected.isNegative(), actual.isNegative(), "negative in frame " + frame);
+            assertEquals(expected.isOverflow(), actual.isOverflow(), "overflow in frame " + frame);
+            assertEquals(expected.isZero(), actual.isZero(), "zero in frame " + frame);
+            TestConsole.assertSameRam(plain, skipping);
+            assertArrayEquals(plain.frame(), skipping.frame(), "frame " + frame);
+        }
+        assertTrue(plain.cpu.read(0x11) >= 8, "the NMI handler should have run every frame");
+        assertTrue(Arrays.stream(plain.frame()).distinct().count() > 1, "the frame should show the background");
+        assertTrue(skipping.steps * 2 < plain.steps, "idle loops should have been skipped");
+    }
+
+    @Test
+    public void skippingIdleLoopsKeepsCycleModeExact() {
+        TestConsole skipping = new TestConsole(PROGRAM, 0x8046, ExecutionMode.CYCLE, true);
+        TestConsole plain = new TestConsole(PROGRAM, 0x8046, ExecutionMode.CYCLE, false);
+
+        for (int frame = 1; frame <= 10; frame++) {
+            skipping.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+            plain.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+
+            TestConsole.assertSameRam(plain, skipping);
+            assertArrayEquals(plain.frame(), skipping.frame(), "frame " + frame);
+        }
+    }
+
+    @Test
+    public void skippingIdleLoopsKeepsInstructionModeExactCycleByCycle() {
+        TestConsole skipping = new TestConsole(PROGRAM, 0x8046, ExecutionMode.INSTRUCTION, true);
+        TestConsole plain = new TestConsole(PROGRAM, 0x8046, ExecutionMode.INSTRUCTION, false);
+
+        for (int frame = 1; frame <= 10; frame++) {
+            skipping.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+            plain.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+
+            TestConsole.assertSameRam(plain, skipping);
+            assertArrayEquals(plain.frame(), skipping.frame(), "frame " + frame);
+        }
+        assertTrue(plain.cpu.read(0x11) >= 8, "the NMI handler should have run every frame");
+    }
+
+    @Test
+    public void loopsWithSideEffectsAreNotSkipped() {
+        // Unlike LDA $10 / BEQ, a loop that writes must run every iteration.
+        Cartridge cartridge = new Cartridge(loopProgram(
+                        0xE6, 0x20,       // $8000 INC $20
+                        0x4C, 0x00, 0x80  // $8002 JMP $8000
+                ), new byte[0], new NROMMapper(0x8000), false, MirroringMode.HORIZONTAL);
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, null, null);
+        CPU cpu = new CPU(bus, ExecutionMode.INSTRUCTION);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+
+        int cycles = 0;
+        for (int i = 0; i < 100; i++) {
+            cycles += cpu.runInstruction();
+        }
+        assertEquals(50 * 8, cycles);
+        assertEquals(50, cpu.read(0x20));
+    }
+
+    @Test
+    public void idleLoopIsSkippedInWholeIterations() {
+        Cartridge cartridge = new Cartridge(loopProgram(
+                        0xA5, 0x10,       // $8000 LDA $10
+                        0xF0, 0xFC        // $8002 BEQ $8000
+                ), new byte[0], new NROMMapper(0x8000), false, MirroringMode.HORIZONTAL);
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, null, null);
+        CPU cpu = new CPU(bus, ExecutionMode.INSTRUCTION);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+
+        // Two iterations to find the loop and see it come back unchanged, then whole iterations at once.
+        for (int i = 0; i < 4; i++) {
+            assertTrue(cpu.runInstruction() <= 3);
+        }
+        int skipped = cpu.runInstruction();
+        assertTrue(skipped > 6, "expected a skip, got " + skipped);
+        assertEquals(0, skipped % 6);
+        assertEquals(0x8000, cpu.getState().getPc());
+    }
+
+    @Test
+    public void idleLoopIsSkippedThroughRunCycle() {
+        Cartridge cartridge = new Cartridge(loopProgram(
+                        0xA5, 0x10,       // $8000 LDA $10
+                        0xF0, 0xFC        // $8002 BEQ $8000
+                ), new byte[0], new NROMMapper(0x8000), false, MirroringMode.HORIZONTAL);
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, null, null);
+        CPU cpu = new CPU(bus, ExecutionMode.INSTRUCTION);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+
+        // Two iterations of 6 cycles, then the first cycle of the skip; the rest of it is still owed.
+        for (int i = 0; i < 13; i++) {
+            cpu.runCycle();
+        }
+        int owed = cpu.runInstruction();
+        assertTrue(owed > 6, "expected a skip, got " + owed);
+        assertEquals(5, owed % 6);
+        assertEquals(0x8000, cpu.getState().getPc());
+    }
+
+    private static byte[] loopProgram(int... code) {
+        byte[] prgRom = new byte[0x8000];
+        for (int i = 0; i < code.length; i++) {
+            prgRom[i] = (byte) code[i];
+        }
+        prgRom[0x7FFC] = 0x00;
+        prgRom[0x7FFD] = (byte) 0x80;
+        return prgRom;
+    }
+}
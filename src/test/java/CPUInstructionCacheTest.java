@@ -0,0 +1,154 @@
+import core.*;
+import mapper.BankedMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CPUInstructionCacheTest {
+
+    private static final int SIXTEEN_KB = 16384;
+
+    /**
+     * First 16KB bank fixed at $8000-$BFFF and banks 1 or 2 switchable at $C000-$FFFF, like UNROM 180.
+     */
+    private static class SwitchableMapper extends BankedMapper {
+        SwitchableMapper() {
+            super(3 * SIXTEEN_KB, 0);
+            setPrgBanks(0x8000, SIXTEEN_KB, 0);
+            setPrgBanks(0xC000, SIXTEEN_KB, 1);
+        }
+
+        void selectBank(int bank) {
+            setPrgBanks(0xC000, SIXTEEN_KB, bank);
+        }
+
+        @Override
+        protected void writeRegister(int address, int value) {
+        }
+
+        @Override
+        public int getId() {
+            return 180;
+        }
+    }
+
+    private final byte[] prgRom = new byte[3 * SIXTEEN_KB];
+    private final SwitchableMapper mapper = new SwitchableMapper();
+
+    private void writeRom(int offset, int... bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            prgRom[offset + i] = (byte) bytes[i];
+        }
+    }
+
+    private void setResetVector(int address) {
+        writeRom(SIXTEEN_KB + 0x3FFC, address & 0xFF, address >> 8);
+        writeRom(2 * SIXTEEN_KB + 0x3FFC, address & 0xFF, address >> 8);
+    }
+
+    private CPU createCpu(ExecutionMode mode) {
+        Cartridge cartridge = new Cartridge(prgRom, new byte[0], mapper, false, MirroringMode.HORIZONTAL);
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, null, null);
+        CPU cpu = new CPU(bus, mode);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+        return cpu;
+    }
+
+    @Test
+    public void cachedExecutionMatchesCycleMode() {
+        setResetVector(0x8000);
+        writeRom(0,
+                0xA2, 0x00,       // $8000 LDX #$00
+                0xBD, 0x00, 0x81, // $8002 LDA $8100,X
+                0x95, 0x10,       // $8005 STA $10,X
+                0x20, 0x20, 0x80, // $8007 JSR $8020
+                0xE8,             // $800A INX
+                0xD0, 0xF5,       // $800B BNE $8002
+                0x4C, 0x00, 0x80  // $800D JMP $8000
+        );
+        writeRom(0x20,
+                0x75, 0x10,       // $8020 ADC $10,X
+                0x85, 0x20,       // $8022 STA $20
+                0x60              // $8024 RTS
+        );
+        for (int i = 0; i < 0x100; i++) {
+            prgRom[0x100 + i] = (byte) (i * 7);
+        }
+
+        CPU cached = createCpu(ExecutionMode.INSTRUCTION);
+        int cycles = 0;
+        for (int i = 0; i < 5000; i++) {
+            cycles += cached.runInstruction();
+        }
+
+        CPU exact = createCpu(ExecutionMode.CYCLE);
+        for (int i = 0; i < cycles; i++) {
+            exact.runCycle();
+        }
+
+        CpuState expected = exact.getState();
+        CpuState actual = cached.getState();
+        assertEquals(expected.getPc(), actual.getPc());
+        assertEquals(expected.getA(), actual.getA());
+        assertEquals(expected.getX(), actual.getX());
+        assertEquals(expected.getSp(), actual.getSp());
+        assertEquals(expected.isCarry(), actual.isCarry());
+        for (int address = 0; address < 0x200; address++) {
+            assertEquals(exact.read(address), cached.read(address), "memory at " + address);
+        }
+    }
+
+    @Test
+    public void bankSwitchInvalidatesDecodedInstructions() {
+        setResetVector(0xC000);
+        writeRom(SIXTEEN_KB, 0xA9, 0x11, 0x4C, 0x00, 0xC0);     // bank 1: LDA #$11; JMP $C000
+        writeRom(2 * SIXTEEN_KB, 0xA9, 0x22, 0x4C, 0x00, 0xC0); // bank 2: LDA #$22; JMP $C000
+
+        CPU cpu = createCpu(ExecutionMode.INSTRUCTION);
+        TestConsole.runInstructions(cpu, 4);
+        assertEquals(0x11, cpu.getState().getA());
+
+        mapper.selectBank(2);
+        TestConsole.runInstructions(cpu, 2);
+        assertEquals(0x22, cpu.getState().getA());
+    }
+
+    @Test
+    public void bankSwitchInvalidatesInstructionsStraddlingTheWindow() {
+        setResetVector(0xBFFE);
+        // LDA $xx00 at $BFFE: opcode and low byte come from the fixed bank, the high byte from the switched one.
+        writeRom(0x3FFE, 0xAD, 0x00);
+        writeRom(SIXTEEN_KB, 0x03);
+        writeRom(2 * SIXTEEN_KB, 0x04);
+
+        CPU cpu = createCpu(ExecutionMode.INSTRUCTION);
+        cpu.getBus().write(0x0300, 0x11);
+        cpu.getBus().write(0x0400, 0x22);
+        cpu.runInstruction();
+        assertEquals(0x11, cpu.getState().getA());
+
+        mapper.selectBank(2);
+        cpu.fetchProgramCounter();
+        cpu.runInstruction();
+        assertEquals(0x22, cpu.getState().getA());
+    }
+
+    @Test
+    public void codeInPrgRamIsNotCached() {
+        setResetVector(0x6000);
+        CPU cpu = createCpu(ExecutionMode.INSTRUCTION);
+        Bus bus = cpu.getBus();
+        int[] code = {0xA9, 0x33, 0x4C, 0x00, 0x60}; // $6000: LDA #$33; JMP $6000
+        for (int i = 0; i < code.length; i++) {
+            bus.write(0x6000 + i, code[i]);
+        }
+
+        TestConsole.runInstructions(cpu, 2);
+        assertEquals(0x33, cpu.getState().getA());
+
+        bus.write(0x6001, 0x44); // self-modifying code
+        TestConsole.runInstructions(cpu, 1);
+        assertEquals(0x44, cpu.getState().getA());
+    }
+}
@@ -0,0 +1,204 @@
+import core.CPU;
+import core.CpuState;
+import core.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CPURunCyclesTest {
+
+    private static final int CYCLES_PER_FRAME = 29781;
+
+    // Like the idle loop test program, but after every NMI the main loop waits a different number of cycles
+    // and then changes the horizontal scroll mid-frame, so the frame shows exactly when the writes landed.
+    private static final int[] PROGRAM = {
+            0x78,             // $8000 SEI
+            0xA2, 0xFF,       // $8001 LDX #$FF
+            0x9A,             // $8003 TXS
+            0xA9, 0x3F,       // $8004 LDA #$3F
+            0x8D, 0x06, 0x20, // $8006 STA $2006
+            0xA9, 0x00,       // $8009 LDA #$00
+            0x8D, 0x06, 0x20, // $800B STA $2006
+            0xA9, 0x0F,       // $800E LDA #$0F
+            0x8D, 0x07, 0x20, // $8010 STA $2007   backdrop
+            0xA9, 0x21,       // $8013 LDA #$21
+            0x8D, 0x07, 0x20, // $8015 STA $2007   color 1
+            0xA9, 0x00,       // $8018 LDA #$00
+            0x8D, 0x06, 0x20, // $801A STA $2006
+            0x8D, 0x06, 0x20, // $801D STA $2006
+            0xA2, 0x08,       // $8020 LDX #$08
+            0xA9, 0xAA,       // $8022 LDA #$AA
+            0x8D, 0x07, 0x20, // $8024 STA $2007   tile 0, low plane
+            0xCA,             // $8027 DEX
+            0xD0, 0xFA,       // $8028 BNE $8024
+            0xA9, 0x80,       // $802A LDA #$80
+            0x8D, 0x00, 0x20, // $802C STA $2000   NMI on
+            0xA9, 0x1E,       // $802F LDA #$1E
+            0x8D, 0x01, 0x20, // $8031 STA $2001   background and sprites on
+            0xA5, 0x10,       // $8034 LDA $10
+            0xF0, 0xFC,       // $8036 BEQ $8034
+            0xA9, 0x00,       // $8038 LDA #$00
+            0x85, 0x10,       // $803A STA $10
+            0xE6, 0x11,       // $803C INC $11
+            0xA0, 0x08,       // $803E LDY #$08
+            0xA6, 0x11,       // $8040 LDX $11
+            0xCA,             // $8042 DEX
+            0xD0, 0xFD,       // $8043 BNE $8042
+            0x88,             // $8045 DEY
+            0xD0, 0xF8,       // $8046 BNE $8040
+            0xA5, 0x11,       // $8048 LDA $11
+            0x8D, 0x05, 0x20, // $804A STA $2005
+            0x8D, 0x05, 0x20, // $804D STA $2005
+            0x4C, 0x34, 0x80, // $8050 JMP $8034
+            0xE6, 0x10,       // $8053 INC $10     NMI handler
+            0xA9, 0x00,       // $8055 LDA #$00
+            0x8D, 0x05, 0x20, // $8057 STA $2005
+            0x8D, 0x05, 0x20, // $805A STA $2005
+            0x40              // $805D RTI
+    };
+    private static final int NMI_HANDLER = 0x8053;
+
+    private static CPU loopCpu(ExecutionMode mode) {
+        return new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withExecutionMode(mode)
+                .withInstruction(0x8000, 0xEA)             // NOP
+                .withInstruction(0x8001, 0xE6, 0x20)       // INC $20
+                .withInstruction(0x8003, 0x4C, 0x00, 0x80) // JMP $8000
+                .buildAndRun(0);
+    }
+
+    @Test
+    public void cycleModeRunsExactlyTheBudget() {
+        CPU cpu = loopCpu(ExecutionMode.CYCLE);
+        // 100 whole iterations of 10 cycles
+        assertEquals(1000, cpu.runCycles(1000));
+        assertEquals(0x8000, cpu.getState().getPc());
+        assertEquals(100, cpu.read(0x20));
+        assertEquals(1, cpu.runCycles(1));
+    }
+
+    @Test
+    public void instructionModeStopsAtTheFirstBoundaryAfterTheBudget() {
+        CPU cpu = loopCpu(ExecutionMode.INSTRUCTION);
+        assertEquals(1000, cpu.runCycles(999));
+        assertEquals(100, cpu.read(0x20));
+        assertEquals(2, cpu.runCycles(1));
+    }
+
+    @Test
+    public void ppuRegisterAccessesRunOnTheirOwn() {
+        CPUTestBuilder builder = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withRegisterX(0x10)
+                .withInstruction(0x8000, 0xEA)             // NOP
+                .withInstruction(0x8001, 0xEA)             // NOP
+                .withInstruction(0x8002, 0x9D, 0xF7, 0x1F) // STA $1FF7,X  ($2007)
+                .withInstruction(0x8005, 0xEA)             // NOP
+                .withInstruction(0x8006, 0x4C, 0x05, 0x80); // JMP $8005
+
+        CPU cycleMode = builder.withExecutionMode(ExecutionMode.CYCLE).buildAndRun(0);
+        assertEquals(4, cycleMode.runCycles(100));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, cycleMode.runCycles(100), "cycle " + i + " of the store");
+        }
+        assertEquals(100, cycleMode.runCycles(100));
+
+        CPU instructionMode = builder.withExecutionMode(ExecutionMode.INSTRUCTION).buildAndRun(0);
+        assertEquals(4, instructionMode.runCycles(100));
+        assertEquals(5, instructionMode.runCycles(100));
+        assertEquals(0x8005, instructionMode.getState().getPc());
+        assertTrue(instructionMode.runCycles(100) >= 100);
+    }
+
+    @Test
+    public void batchEndsWhenAnNmiIsTriggered() {
+        CPU[] cpu = new CPU[1];
+        MockBus nmiBus = new MockBus(new MockWRAM(new byte[0x10000])) {
+            @Override
+            public void write(int effectiveAddress, int value) {
+                super.write(effectiveAddress, value);
+                if (effectiveAddress == 0x4016) {
+                    cpu[0].triggerNMI();
+                }
+            }
+        };
+        cpu[0] = new CPUTestBuilder()
+                .withResetVector(0x8000)
+                .withInstruction(0x8000, 0xEA)             // NOP
+                .withInstruction(0x8001, 0x8D, 0x16, 0x40) // STA $4016
+                .withInstruction(0x8004, 0x4C, 0x04, 0x80) // JMP $8004
+                .withMemoryValue(0xFFFA, 0x00)
+                .withMemoryValue(0xFFFB, 0x90)
+                .withInstruction(0x9000, 0x4C, 0x00, 0x90) // JMP $9000
+                .buildAndRun(0, nmiBus);
+
+        assertEquals(6, cpu[0].runCycles(100));
+        assertEquals(0x8004, cpu[0].getState().getPc());
+        // The NMI sequence and 31 JMPs
+        assertEquals(100, cpu[0].runCycles(100));
+        assertEquals(0x9000, cpu[0].getState().getPc());
+    }
+
+    @Test
+    public void batchesMatchLockstepInCycleMode() {
+        TestConsole batched = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.CYCLE, true);
+        TestConsole lockstep = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.CYCLE, true);
+
+        for (int frame = 1; frame <= 10; frame++) {
+            batched.runBatchesUntil((long) frame * CYCLES_PER_FRAME);
+            lockstep.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+
+            TestConsole.assertSameRam(lockstep, batched);
+            assertArrayEquals(lockstep.frame(), batched.frame(), "frame " + frame);
+        }
+        assertTrue(lockstep.cpu.read(0x11) >= 8, "the NMI handler should have run every frame");
+        assertTrue(Arrays.stream(lockstep.frame()).distinct().count() > 1, "the frame should show the background");
+        assertTrue(batched.steps * 10 < lockstep.cycles, "the CPU should have run in batches");
+    }
+
+    @Test
+    public void batchesMatchLockstepInInstructionMode() {
+        // Idle loop skips are cut short at the end of a batch, which would move later instruction boundaries
+        TestConsole batched = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.INSTRUCTION, false);
+        TestConsole lockstep = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.INSTRUCTION, false);
+
+        for (int frame = 1; frame <= 10; frame++) {
+            batched.runBatchesUntil((long) frame * CYCLES_PER_FRAME);
+            // Batches end on instruction boundaries, so the lockstep run can stop at the same cycle.
+            lockstep.runInstructionsUntil(batched.cycles);
+            assertEquals(batched.cycles, lockstep.cycles);
+
+            CpuState expected = lockstep.cpu.getState();
+            CpuState actual = batched.cpu.getState();
+            assertEquals(expected.getPc(), actual.getPc(), "pc in frame " + frame);
+            assertEquals(expected.getA(), actual.getA(), "a in frame " + frame);
+            assertEquals(expected.getX(), actual.getX(), "x in frame " + frame);
+            assertEquals(expected.getY(), actual.getY(), "y in frame " + frame);
+            TestConsole.assertSameRam(lockstep, batched);
+            assertArrayEquals(lockstep.frame(), batched.frame(), "frame " + frame);
+        }
+        assertTrue(batched.steps * 2 < lockstep.steps, "the CPU should have run in batches");
+    }
+
+    @Test
+    public void lazyPpuMatchesLockstep() {
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.CYCLE, ExecutionMode.INSTRUCTION}) {
+            TestConsole lazy = new TestConsole(PROGRAM, NMI_HANDLER, mode, true);
+            TestConsole lockstep = new TestConsole(PROGRAM, NMI_HANDLER, mode, true);
+
+            for (int frame = 1; frame <= 10; frame++) {
+                lazy.runLazyBatchesUntil((long) frame * CYCLES_PER_FRAME);
+                lockstep.runBatchesUntil(lazy.cycles);
+                assertEquals(lazy.cycles, lockstep.cycles);
+
+                TestConsole.assertSameRam(lockstep, lazy);
+                assertArrayEquals(lockstep.frame(), lazy.frame(), mode + " frame " + frame);
+            }
+            // Only around the NMI, at most twice a frame; everything else happened at PPU accesses
+            assertTrue(lazy.catchUps <= 2 * 10, mode + " caught up " + lazy.catchUps + " times");
+        }
+    }
+}
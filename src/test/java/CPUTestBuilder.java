@@ -4,10 +4,11 @@ public class CPUTestBuilder {
 
     private final WRAM wram;
     private final CpuState.Builder cpuStateBuilder;
+    private ExecutionMode executionMode = ExecutionMode.CYCLE;
 
     public CPUTestBuilder() {
         // Initialize core.WRAM with a 64K memory array.
-        wram = new MockWRAM(new int[0x10000]);
+        wram = new MockWRAM(new byte[0x10000]);
         cpuStateBuilder = new CpuState.Builder();
     }
 
@@ -176,6 +177,17 @@ public class CPUTestBuilder {
         return this;
     }
 
+    /**
+     * Sets the execution mode the core.CPU is built with.
+     *
+     * @param executionMode The execution mode.
+     * @return The builder instance.
+     */
+    public CPUTestBuilder withExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+        return this;
+    }
+
     /**
      * Builds the core.CPU and runs it for the given number of cycles.
      *
@@ -184,7 +196,7 @@ public class CPUTestBuilder {
      */
     public CPU buildAndRun(int cycles) {
         Bus bus = new MockBus(wram);
-        CPU cpu = new CPU(bus);
+        CPU cpu = new CPU(bus, executionMode);
         EmulatorState state = new EmulatorState(cpuStateBuilder.build(), wram);
         cpu.loadState(state);
         cpu.fetchProgramCounter();
@@ -204,7 +216,7 @@ public class CPUTestBuilder {
      */
     public CPU buildAndRun(int cycles, Bus bus) {
         bus.loadWRamState(wram);
-        CPU cpu = new CPU(bus);
+        CPU cpu = new CPU(bus, executionMode);
         EmulatorState state = new EmulatorState(cpuStateBuilder.build(), wram);
         cpu.loadState(state);
         cpu.fetchProgramCounter();
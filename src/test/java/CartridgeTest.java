@@ -1,9 +1,13 @@
 import core.Cartridge;
 import core.MirroringMode;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -16,8 +20,8 @@ class CartridgeTest {
 
     @Test
     void testConstructorValidSizes() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[EIGHT_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[EIGHT_KB];
 
         MockMapper mapper = new MockMapper();
 
@@ -34,8 +38,8 @@ class CartridgeTest {
     @Test
     void testConstructorInvalidPrgRomSize() {
         // Invalid PRG ROM size (not multiple of 16KB)
-        int[] prgRom = new int[10000];
-        int[] chrRom = new int[EIGHT_KB];
+        byte[] prgRom = new byte[10000];
+        byte[] chrRom = new byte[EIGHT_KB];
 
         MockMapper mapper = new MockMapper();
 
@@ -48,8 +52,8 @@ class CartridgeTest {
 
     @Test
     void testConstructorInvalidChrRomSize() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[5000];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[5000];
 
         MockMapper mapper = new MockMapper();
 
@@ -62,8 +66,8 @@ class CartridgeTest {
 
     @Test
     void testConstructorEmptyChrRom() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[0];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[0];
 
         MockMapper mapper = new MockMapper();
 
@@ -79,12 +83,12 @@ class CartridgeTest {
 
     @Test
     void testCpuReadFromPrgRom() {
-        int[] prgRom = createPrgRomWithPattern(SIXTEEN_KB);
+        byte[] prgRom = createPrgRomWithPattern(SIXTEEN_KB);
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 false,
                 MirroringMode.HORIZONTAL);
@@ -97,12 +101,12 @@ class CartridgeTest {
 
     @Test
     void testCpuReadFromPrgRam() {
-        int[] prgRom = new int[SIXTEEN_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 true,
                 MirroringMode.HORIZONTAL);
@@ -115,12 +119,12 @@ class CartridgeTest {
 
     @Test
     void testCpuReadOutOfRange() {
-        int[] prgRom = new int[SIXTEEN_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 false,
                 MirroringMode.HORIZONTAL);
@@ -132,8 +136,8 @@ class CartridgeTest {
 
     @Test
     void testPpuReadFromChrRom() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = createChrRomWithPattern(EIGHT_KB);
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = createChrRomWithPattern(EIGHT_KB);
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -151,8 +155,8 @@ class CartridgeTest {
 
     @Test
     void testPpuReadFromChrRam() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[0];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[0];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -171,8 +175,8 @@ class CartridgeTest {
 
     @Test
     void testPpuReadOutOfRange() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[EIGHT_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[EIGHT_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -188,12 +192,12 @@ class CartridgeTest {
 
     @Test
     void testGetSaveDataWithBatteryBackedRam() {
-        int[] prgRom = new int[SIXTEEN_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 true,
                 MirroringMode.HORIZONTAL);
@@ -211,12 +215,12 @@ class CartridgeTest {
 
     @Test
     void testGetSaveDataWithoutBatteryBackedRam() {
-        int[] prgRom = new int[SIXTEEN_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 false,
                 MirroringMode.HORIZONTAL);
@@ -229,12 +233,12 @@ class CartridgeTest {
 
     @Test
     void testLoadSaveData() {
-        int[] prgRom = new int[SIXTEEN_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 true,
                 MirroringMode.HORIZONTAL);
@@ -330,11 +334,41 @@ class CartridgeTest {
         assertEquals(0x42, cartridge.ppuRead(0x1000));
     }
 
+    @Test
+    void testFromNesFileOnDiskMatchesInMemory(@TempDir Path directory) throws IOException {
+        byte[] fileData = createMockNesRom(2, 1, 0x01, false, true, false, MirroringMode.VERTICAL);
+        Path file = directory.resolve("test.nes");
+        Files.write(file, fileData);
+
+        Cartridge expected = Cartridge.fromNesFile(fileData);
+        Cartridge mapped = Cartridge.fromNesFile(file);
+        Cartridge mappedAgain = Cartridge.fromNesFile(file);
+
+        assertEquals(expected.getMirroringMode(), mapped.getMirroringMode());
+        for (int address = 0x8000; address <= 0xFFFF; address += 0x101) {
+            assertEquals(expected.cpuRead(address), mapped.cpuRead(address), "PRG at " + address);
+            assertEquals(expected.cpuRead(address), mappedAgain.cpuRead(address), "PRG at " + address);
+        }
+        for (int address = 0; address < 0x2000; address += 0x81) {
+            assertEquals(expected.ppuRead(address), mapped.ppuRead(address), "CHR at " + address);
+        }
+    }
+
+    @Test
+    void testFromNesFileReadsMapperNumberAsUnsigned() {
+        byte[] fileData = createMockNesRom(1, 1, 0, false, false, false, MirroringMode.HORIZONTAL);
+        fileData[6] = (byte) 0x90; // Mapper 9 in the low nibble; the sign bit must not leak into the high nibble
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> Cartridge.fromNesFile(fileData));
+
+        assertEquals("Unsupported mapper number: 9", exception.getMessage());
+    }
+
     @Test
     void testWithMaximumAllowedPrgRomSize() {
         int maxPrgUnits = 64;
-        int[] prgRom = new int[maxPrgUnits * SIXTEEN_KB];
-        int[] chrRom = new int[EIGHT_KB];
+        byte[] prgRom = new byte[maxPrgUnits * SIXTEEN_KB];
+        byte[] chrRom = new byte[EIGHT_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -350,8 +384,8 @@ class CartridgeTest {
     @Test
     void testWithMaximumAllowedChrRomSize() {
         int maxChrUnits = 128;
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[maxChrUnits * EIGHT_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[maxChrUnits * EIGHT_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -367,13 +401,13 @@ class CartridgeTest {
     @Test
     void testWithMultiUnitPrgRom() {
         // Test with 32KB PRG ROM (2 units)
-        int[] prgRom = new int[2 * SIXTEEN_KB];
-        int[] chrRom = new int[EIGHT_KB];
+        byte[] prgRom = new byte[2 * SIXTEEN_KB];
+        byte[] chrRom = new byte[EIGHT_KB];
         MockMapper mapper = new MockMapper();
 
         // Fill PRG ROM with a pattern to verify reading
         for (int i = 0; i < prgRom.length; i++) {
-            prgRom[i] = i & 0xFF;
+            prgRom[i] = (byte) i;
         }
 
         Cartridge cartridge = new Cartridge(
@@ -394,8 +428,8 @@ class CartridgeTest {
 
     @Test
     void testMapperAddressBoundaries() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[EIGHT_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[EIGHT_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -419,8 +453,8 @@ class CartridgeTest {
 
     @Test
     void testPpuWriteOutOfBounds() {
-        int[] prgRom = new int[SIXTEEN_KB];
-        int[] chrRom = new int[0];
+        byte[] prgRom = new byte[SIXTEEN_KB];
+        byte[] chrRom = new byte[0];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
@@ -442,12 +476,12 @@ class CartridgeTest {
 
     @Test
     void testLoadIncompleteSaveData() {
-        int[] prgRom = new int[SIXTEEN_KB];
+        byte[] prgRom = new byte[SIXTEEN_KB];
         MockMapper mapper = new MockMapper();
 
         Cartridge cartridge = new Cartridge(
                 prgRom,
-                new int[EIGHT_KB],
+                new byte[EIGHT_KB],
                 mapper,
                 true,
                 MirroringMode.HORIZONTAL);
@@ -486,18 +520,18 @@ class CartridgeTest {
 //        assertEquals(2, uxromCartridge.getMapperId());
 //    }
 
-    private int[] createPrgRomWithPattern(int size) {
-        int[] rom = new int[size];
+    private byte[] createPrgRomWithPattern(int size) {
+        byte[] rom = new byte[size];
         for (int i = 0; i < size; i++) {
-            rom[i] = i & 0xFF;
+            rom[i] = (byte) i;
         }
         return rom;
     }
 
-    private int[] createChrRomWithPattern(int size) {
-        int[] rom = new int[size];
+    private byte[] createChrRomWithPattern(int size) {
+        byte[] rom = new byte[size];
         for (int i = 0; i < size; i++) {
-            rom[i] = i & 0xFF;
+            rom[i] = (byte) i;
         }
         return rom;
     }
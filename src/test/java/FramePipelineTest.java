@@ -0,0 +1,91 @@
+import core.pipeline.Frame;
+import core.pipeline.FramePipeline;
+import core.pipeline.FrameQueue;
+import core.pipeline.LatencyCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramePipelineTest {
+
+    private static Frame frame(long number) {
+        return new Frame(number, System.nanoTime(), new int[0]);
+    }
+
+    @Test
+    void fullQueueDropsItsOldestEntry() throws InterruptedException {
+        FrameQueue<Integer> queue = new FrameQueue<>(2);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.poll(0));
+        assertEquals(3, queue.poll(0));
+        assertNull(queue.poll(0));
+    }
+
+    @Test
+    void stagesGetSubmittedFramesAndCountTheirLatency() throws InterruptedException {
+        FramePipeline pipeline = new FramePipeline();
+        List<Long> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        pipeline.addStage("recorder", 8, frame -> {
+            seen.add(frame.number());
+            done.countDown();
+        });
+        pipeline.start();
+        for (long number = 1; number <= 3; number++) {
+            pipeline.submit(frame(number));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+        assertEquals(List.of(1L, 2L, 3L), seen);
+        List<LatencyCounter> latencies = pipeline.getLatencies();
+        assertEquals(List.of("emulation", "presentation", "recorder"),
+                latencies.stream().map(LatencyCounter::getName).toList());
+        LatencyCounter recorder = latencies.get(2);
+        assertTrue(waitForCount(recorder, 3));
+        assertTrue(recorder.getMaxNanos() >= recorder.getAverageNanos());
+    }
+
+    @Test
+    void slowStageDropsFramesInsteadOfHoldingUpSubmit() throws InterruptedException {
+        FramePipeline pipeline = new FramePipeline();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> seen = new CopyOnWriteArrayList<>();
+        pipeline.addStage("encoder", 2, frame -> {
+            if (frame.number() == 1) {
+                started.countDown();
+                release.await();
+            }
+            seen.add(frame.number());
+        });
+        pipeline.start();
+        pipeline.submit(frame(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (long number = 2; number <= 10; number++) {
+            pipeline.submit(frame(number)); // Returns at once although the stage is stuck on frame 1
+        }
+        release.countDown();
+
+        assertTrue(waitForCount(pipeline.getLatencies().get(2), 3));
+        pipeline.stop();
+        assertEquals(List.of(1L, 9L, 10L), seen, "only the newest frames were kept");
+        assertEquals(7, pipeline.getDroppedFrames("encoder"));
+    }
+
+    private static boolean waitForCount(LatencyCounter counter, long count) throws InterruptedException {
+        for (int i = 0; i < 500 && counter.getCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        return counter.getCount() >= count;
+    }
+}
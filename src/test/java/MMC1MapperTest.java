@@ -0,0 +1,145 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.MMC1Mapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MMC1MapperTest {
+
+    public static final int SIXTEEN_KB = 16384;
+    public static final int FOUR_KB = 4096;
+
+    // Every 16KB PRG bank and every 4KB CHR bank starts with its own number
+    private static Cartridge createCartridge(int prgBanks, int chrBanks) {
+        byte[] prgRom = new byte[prgBanks * SIXTEEN_KB];
+        for (int bank = 0; bank < prgBanks; bank++) {
+            prgRom[bank * SIXTEEN_KB] = (byte) bank;
+        }
+        byte[] chrRom = new byte[chrBanks * FOUR_KB];
+        for (int bank = 0; bank < chrBanks; bank++) {
+            chrRom[bank * FOUR_KB] = (byte) bank;
+        }
+        return new Cartridge(prgRom, chrRom, new MMC1Mapper(prgRom.length, chrRom.length), false, MirroringMode.HORIZONTAL);
+    }
+
+    // Five writes, least significant bit first
+    private static void writeRegister(Cartridge cartridge, int address, int value) {
+        for (int i = 0; i < 5; i++) {
+            cartridge.cpuWrite(address, (value >> i) & 1);
+        }
+    }
+
+    @Test
+    void powerOnFixesLastBankAtC000() {
+        Cartridge cartridge = createCartridge(8, 2);
+        assertEquals(0, cartridge.cpuRead(0x8000));
+        assertEquals(7, cartridge.cpuRead(0xC000));
+        assertEquals(7 * SIXTEEN_KB, cartridge.getPrgRomOffset(0xC000));
+    }
+
+    @Test
+    void prgBankSwitchesAt8000InFixLastMode() {
+        Cartridge cartridge = createCartridge(8, 2);
+        writeRegister(cartridge, 0xE000, 5);
+        assertEquals(5, cartridge.cpuRead(0x8000));
+        assertEquals(7, cartridge.cpuRead(0xC000));
+    }
+
+    @Test
+    void prgBankSwitchesAtC000InFixFirstMode() {
+        Cartridge cartridge = createCartridge(8, 2);
+        writeRegister(cartridge, 0x8000, 0x08);
+        writeRegister(cartridge, 0xE000, 5);
+        assertEquals(0, cartridge.cpuRead(0x8000));
+        assertEquals(5, cartridge.cpuRead(0xC000));
+    }
+
+    @Test
+    void thirtyTwoKbModeIgnoresLowBit() {
+        Cartridge cartridge = createCartridge(8, 2);
+        writeRegister(cartridge, 0x8000, 0x00);
+        writeRegister(cartridge, 0xE000, 5);
+        assertEquals(4, cartridge.cpuRead(0x8000));
+        assertEquals(5, cartridge.cpuRead(0xC000));
+    }
+
+    @Test
+    void onlyTheFifthWriteSelectsTheRegister() {
+        Cartridge cartridge = createCartridge(8, 2);
+        // The first four writes go to $8000, but the fifth lands in the PRG register
+        for (int i = 0; i < 4; i++) {
+            cartridge.cpuWrite(0x8000, (3 >> i) & 1);
+        }
+        cartridge.cpuWrite(0xFFFF, 0);
+        assertEquals(3, cartridge.cpuRead(0x8000));
+    }
+
+    @Test
+    void resetWriteClearsShiftRegister() {
+        Cartridge cartridge = createCartridge(8, 2);
+        cartridge.cpuWrite(0xE000, 1);
+        cartridge.cpuWrite(0xE000, 1);
+        cartridge.cpuWrite(0xE000, 0x80);
+        writeRegister(cartridge, 0xE000, 2);
+        assertEquals(2, cartridge.cpuRead(0x8000));
+    }
+
+    @Test
+    void chrBanksSwitchInFourKbMode() {
+        Cartridge cartridge = createCartridge(2, 8);
+        writeRegister(cartridge, 0x8000, 0x1C);
+        writeRegister(cartridge, 0xA000, 3);
+        writeRegister(cartridge, 0xC000, 6);
+        assertEquals(3, cartridge.ppuRead(0x0000));
+        assertEquals(6, cartridge.ppuRead(0x1000));
+    }
+
+    @Test
+    void chrBankSwitchesAsOneEightKbBank() {
+        Cartridge cartridge = createCartridge(2, 8);
+        writeRegister(cartridge, 0xA000, 5);
+        assertEquals(4, cartridge.ppuRead(0x0000));
+        assertEquals(5, cartridge.ppuRead(0x1000));
+    }
+
+    @Test
+    void chrRamIsWritable() {
+        Cartridge cartridge = createCartridge(2, 0);
+        cartridge.ppuWrite(0x1234, 0x56);
+        assertEquals(0x56, cartridge.ppuRead(0x1234));
+    }
+
+    @Test
+    void controlRegisterSelectsMirroring() {
+        Cartridge cartridge = createCartridge(2, 2);
+        writeRegister(cartridge, 0x8000, 0x0E);
+        assertEquals(MirroringMode.VERTICAL, cartridge.getMirroringMode());
+        writeRegister(cartridge, 0x8000, 0x0F);
+        assertEquals(MirroringMode.HORIZONTAL, cartridge.getMirroringMode());
+        writeRegister(cartridge, 0x8000, 0x0D);
+        assertEquals(MirroringMode.SINGLE_SCREEN_UPPER, cartridge.getMirroringMode());
+    }
+
+    @Test
+    void largePrgRomSelectsHalfThroughChrRegister() {
+        Cartridge cartridge = createCartridge(32, 0);
+        writeRegister(cartridge, 0xA000, 0x10);
+        assertEquals(16, cartridge.cpuRead(0x8000));
+        assertEquals(31, cartridge.cpuRead(0xC000));
+    }
+
+    @Test
+    void bankSwitchNotifiesOnlyChangedWindows() {
+        Cartridge cartridge = createCartridge(8, 2);
+        List<Integer> changed = new ArrayList<>();
+        cartridge.addBankSwitchListener((cpuAddress, length) -> changed.add(cpuAddress));
+        writeRegister(cartridge, 0xE000, 0);
+        assertTrue(changed.isEmpty());
+        writeRegister(cartridge, 0xE000, 1);
+        assertEquals(List.of(0x8000), changed);
+    }
+}
@@ -0,0 +1,167 @@
+import core.*;
+import mapper.MMC3Mapper;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MMC3MapperTest {
+
+    public static final int EIGHT_KB = 8192;
+    public static final int ONE_KB = 1024;
+    private static final int DOTS_PER_FRAME = 341 * 262;
+
+    private static class CountingMMC3Mapper extends MMC3Mapper {
+        int rises;
+
+        CountingMMC3Mapper(int prgRomSize, int chrRomSize) {
+            super(prgRomSize, chrRomSize);
+        }
+
+        @Override
+        public void a12Rose() {
+            rises++;
+            super.a12Rose();
+        }
+    }
+
+    // Every 8KB PRG bank and every 1KB CHR bank starts with its own number
+    private static byte[] prgRom(int banks) {
+        byte[] prgRom = new byte[banks * EIGHT_KB];
+        for (int bank = 0; bank < banks; bank++) {
+            prgRom[bank * EIGHT_KB] = (byte) bank;
+        }
+        return prgRom;
+    }
+
+    private static Cartridge createCartridge(MMC3Mapper mapper, byte[] prgRom, int chrBanks) {
+        byte[] chrRom = new byte[chrBanks * ONE_KB];
+        for (int bank = 0; bank < chrBanks; bank++) {
+            chrRom[bank * ONE_KB] = (byte) bank;
+        }
+        return new Cartridge(prgRom, chrRom, mapper, false, MirroringMode.HORIZONTAL);
+    }
+
+    private static Cartridge createCartridge(int prgBanks, int chrBanks) {
+        return createCartridge(new MMC3Mapper(prgBanks * EIGHT_KB, chrBanks * ONE_KB), prgRom(prgBanks), chrBanks);
+    }
+
+    @Test
+    void lastTwoPrgBanksAreFixed() {
+        Cartridge cartridge = createCartridge(16, 8);
+        assertEquals(14, cartridge.cpuRead(0xC000));
+        assertEquals(15, cartridge.cpuRead(0xE000));
+
+        cartridge.cpuWrite(0x8000, 6);
+        cartridge.cpuWrite(0x8001, 3);
+        cartridge.cpuWrite(0x8000, 7);
+        cartridge.cpuWrite(0x8001, 5);
+        assertEquals(3, cartridge.cpuRead(0x8000));
+        assertEquals(5, cartridge.cpuRead(0xA000));
+        assertEquals(14, cartridge.cpuRead(0xC000));
+    }
+
+    @Test
+    void prgModeSwapsSwitchableAndSecondLastBank() {
+        Cartridge cartridge = createCartridge(16, 8);
+        cartridge.cpuWrite(0x8000, 0x46);
+        cartridge.cpuWrite(0x8001, 3);
+        assertEquals(14, cartridge.cpuRead(0x8000));
+        assertEquals(3, cartridge.cpuRead(0xC000));
+        assertEquals(15, cartridge.cpuRead(0xE000));
+        assertEquals(3 * EIGHT_KB, cartridge.getPrgRomOffset(0xC000));
+    }
+
+    @Test
+    void chrBanksSwapHalvesWithInversion() {
+        Cartridge cartridge = createCartridge(4, 32);
+        int[] banks = {4, 10, 20, 21, 22, 23};
+        for (int register = 0; register < banks.length; register++) {
+            cartridge.cpuWrite(0x8000, register);
+            cartridge.cpuWrite(0x8001, banks[register]);
+        }
+        assertEquals(4, cartridge.ppuRead(0x0000));
+        assertEquals(5, cartridge.ppuRead(0x0400));
+        assertEquals(10, cartridge.ppuRead(0x0800));
+        assertEquals(20, cartridge.ppuRead(0x1000));
+        assertEquals(23, cartridge.ppuRead(0x1C00));
+
+        cartridge.cpuWrite(0x8000, 0x80);
+        assertEquals(20, cartridge.ppuRead(0x0000));
+        assertEquals(23, cartridge.ppuRead(0x0C00));
+        assertEquals(4, cartridge.ppuRead(0x1000));
+        assertEquals(11, cartridge.ppuRead(0x1C00));
+    }
+
+    @Test
+    void mirroringIsSelectedAtA000() {
+        Cartridge cartridge = createCartridge(4, 8);
+        cartridge.cpuWrite(0xA000, 1);
+        assertEquals(MirroringMode.HORIZONTAL, cartridge.getMirroringMode());
+        cartridge.cpuWrite(0xA000, 0);
+        assertEquals(MirroringMode.VERTICAL, cartridge.getMirroringMode());
+    }
+
+    @Test
+    void ppuReportsOneA12RisePerRenderedScanline() {
+        assertEquals(241, a12RisesInOneFrame(0x08)); // Background at $0000, sprites at $1000
+        assertEquals(241, a12RisesInOneFrame(0x10)); // Background at $1000, sprites at $0000
+        assertEquals(0, a12RisesInOneFrame(0x00));   // Both at $0000
+    }
+
+    private static int a12RisesInOneFrame(int ppuCtrl) {
+        CountingMMC3Mapper mapper = new CountingMMC3Mapper(4 * EIGHT_KB, 8 * ONE_KB);
+        PPUImpl ppu = new PPUImpl(createCartridge(mapper, prgRom(4), 8));
+        ppu.write(0x2000, ppuCtrl);
+        ppu.write(0x2001, 0x18);
+        // Settle into the steady state before counting, so the first background fetch doesn't count
+        for (int i = 0; i < DOTS_PER_FRAME; i++) {
+            ppu.runCycle();
+        }
+        mapper.rises = 0;
+        for (int i = 0; i < DOTS_PER_FRAME; i++) {
+            ppu.runCycle();
+        }
+        return mapper.rises;
+    }
+
+    @Test
+    void scanlineCounterRaisesCpuIrqUntilAcknowledged() {
+        byte[] prgRom = prgRom(4);
+        int[] code = {
+                0x58,             // $E000 CLI
+                0xA9, 0x01,       // $E001 LDA #$01
+                0x8D, 0x00, 0xC0, // $E003 STA $C000   IRQ latch
+                0x8D, 0x01, 0xC0, // $E006 STA $C001   IRQ reload
+                0x8D, 0x01, 0xE0, // $E009 STA $E001   IRQ enable
+                0x4C, 0x0C, 0xE0, // $E00C JMP $E00C
+                0x00,
+                0xE6, 0x10,       // $E010 INC $10     IRQ handler
+                0x8D, 0x00, 0xE0, // $E012 STA $E000   acknowledge
+                0x40              // $E015 RTI
+        };
+        for (int i = 0; i < code.length; i++) {
+            prgRom[3 * EIGHT_KB + i] = (byte) code[i];
+        }
+        prgRom[0x7FFC] = 0x00;
+        prgRom[0x7FFD] = (byte) 0xE0;
+        prgRom[0x7FFE] = 0x10;
+        prgRom[0x7FFF] = (byte) 0xE0;
+        MMC3Mapper mapper = new MMC3Mapper(prgRom.length, 8 * ONE_KB);
+        CPUBus bus = new CPUBus(new WRAMImpl(), createCartridge(mapper, prgRom, 8), null, null);
+        CPU cpu = new CPU(bus, ExecutionMode.INSTRUCTION);
+        bus.setCpu(cpu);
+        cpu.fetchProgramCounter();
+
+        TestConsole.runInstructions(cpu, 10);
+        mapper.a12Rose(); // Reloads the counter with the latch
+        TestConsole.runInstructions(cpu, 10);
+        assertEquals(0, cpu.read(0x10));
+
+        mapper.a12Rose(); // Counts down to zero
+        TestConsole.runInstructions(cpu, 10);
+        assertEquals(1, cpu.read(0x10));
+        TestConsole.runInstructions(cpu, 10);
+        assertEquals(1, cpu.read(0x10), "the handler should have acknowledged the IRQ");
+    }
+}
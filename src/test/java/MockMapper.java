@@ -4,6 +4,48 @@ public class MockMapper implements Mapper {
     int mappedPrgAddress = 0;
     int mappedChrAddress = 0;
 
+    private byte[] prgRom;
+    private byte[] prgRam;
+    private byte[] chr;
+    private boolean chrWritable;
+
+    @Override
+    public void connect(byte[] prgRom, byte[] prgRam, byte[] chr, boolean chrWritable) {
+        this.prgRom = prgRom;
+        this.prgRam = prgRam;
+        this.chr = chr;
+        this.chrWritable = chrWritable;
+    }
+
+    @Override
+    public int cpuRead(int address) {
+        if (address >= 0x8000) {
+            return mappedPrgAddress < prgRom.length ? prgRom[mappedPrgAddress] & 0xFF : 0;
+        } else if (address >= 0x6000) {
+            return prgRam[address - 0x6000] & 0xFF;
+        }
+        return 0;
+    }
+
+    @Override
+    public void cpuWrite(int address, int value) {
+        if (address >= 0x6000 && address < 0x8000) {
+            prgRam[address - 0x6000] = (byte) value;
+        }
+    }
+
+    @Override
+    public int ppuRead(int address) {
+        return mappedChrAddress < chr.length ? chr[mappedChrAddress] & 0xFF : 0;
+    }
+
+    @Override
+    public void ppuWrite(int address, int value) {
+        if (chrWritable && mappedChrAddress < chr.length) {
+            chr[mappedChrAddress] = (byte) value;
+        }
+    }
+
     @Override
     public int mapPrgRomAddress(int cpuAddress) {
         return mappedPrgAddress;
@@ -1,16 +1,16 @@
 import core.WRAM;
 
 public class MockWRAM implements WRAM {
-    public int[] memory;
+    public byte[] memory;
 
     /**
      * Create a MockWRAM with default size of 2048 bytes
      */
     public MockWRAM() {
-        this(new int[2048]);
+        this(new byte[2048]);
     }
 
-    public MockWRAM(int[] sourceMemory) {
+    public MockWRAM(byte[] sourceMemory) {
         this.memory = sourceMemory;
     }
 
@@ -18,7 +18,7 @@ public class MockWRAM implements WRAM {
     public int read(int address) {
         // Allow reading from any address by using modulo to wrap around if needed
         if (address >= 0) {
-            return memory[address % memory.length];
+            return memory[address % memory.length] & 0xFF;
         }
         return 0;
     }
@@ -27,7 +27,7 @@ public class MockWRAM implements WRAM {
     public void write(int address, int value) {
         // Allow writing to any address by using modulo to wrap around if needed
         if (address >= 0) {
-            memory[address % memory.length] = value;
+            memory[address % memory.length] = (byte) value;
         }
     }
 
@@ -36,7 +36,7 @@ public class MockWRAM implements WRAM {
         memory = sourceMemory.getMemory();
     }
 
-    public int[] getMemory() {
+    public byte[] getMemory() {
         return memory;
     }
 }
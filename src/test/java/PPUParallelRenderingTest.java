@@ -0,0 +1,61 @@
+import core.Cartridge;
+import core.ExecutionMode;
+import core.MirroringMode;
+import mapper.MMC3Mapper;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PPUParallelRenderingTest {
+
+    private static final int[] PROGRAM = PPUScanlineRenderingTest.PROGRAM;
+    private static final int NMI_HANDLER = PPUScanlineRenderingTest.NMI_HANDLER;
+    private static final int CYCLES_PER_FRAME = PPUScanlineRenderingTest.CYCLES_PER_FRAME;
+
+    @Test
+    public void workerThreadRendersTheSameFrames() {
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.CYCLE, ExecutionMode.INSTRUCTION}) {
+            TestConsole parallel = new TestConsole(PROGRAM, NMI_HANDLER, mode, true);
+            TestConsole serial = new TestConsole(PROGRAM, NMI_HANDLER, mode, true);
+            parallel.ppu.setParallelRendering(true);
+            assertTrue(parallel.ppu.isParallelRendering());
+
+            for (int frame = 1; frame <= 20; frame++) {
+                parallel.runLazyBatchesUntil((long) frame * CYCLES_PER_FRAME);
+                serial.runLazyBatchesUntil(parallel.cycles);
+
+                assertEquals(serial.cycles, parallel.cycles);
+                assertEquals(serial.cpu.read(0x11), parallel.cpu.read(0x11), mode + " frame counter in frame " + frame);
+                assertArrayEquals(serial.frame(), parallel.frame(), mode + " frame " + frame);
+            }
+            assertTrue(parallel.ppu.isParallelRendering(), "the NMI prediction should have held");
+            assertTrue(serial.cpu.read(0x11) >= 15, "the main loop should have seen sprite 0 hit every frame");
+            parallel.ppu.setParallelRendering(false);
+        }
+    }
+
+    @Test
+    public void switchingBackKeepsTheFrameGoing() {
+        TestConsole switching = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.CYCLE, true);
+        TestConsole serial = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.CYCLE, true);
+
+        switching.ppu.setParallelRendering(true);
+        switching.runLazyBatchesUntil(3 * CYCLES_PER_FRAME + 1000);
+        switching.ppu.setParallelRendering(false);
+        assertFalse(switching.ppu.isParallelRendering());
+        switching.runLazyBatchesUntil(5 * CYCLES_PER_FRAME);
+        serial.runLazyBatchesUntil(switching.cycles);
+
+        assertArrayEquals(serial.frame(), switching.frame());
+    }
+
+    @Test
+    public void scanlineCounterKeepsRenderingOnTheCallingThread() {
+        Cartridge cartridge = new Cartridge(new byte[4 * 8192], new byte[8192], new MMC3Mapper(4 * 8192, 8192),
+                false, MirroringMode.HORIZONTAL);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        ppu.setParallelRendering(true);
+        assertFalse(ppu.isParallelRendering());
+    }
+}
@@ -0,0 +1,208 @@
+import core.Cartridge;
+import core.ExecutionMode;
+import core.MirroringMode;
+import mapper.MMC3Mapper;
+import mapper.NROMMapper;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PPUScanlineRenderingTest {
+
+    static final int CYCLES_PER_FRAME = 29781;
+    private static final int DOTS_PER_LINE = 341;
+
+    // Striped background with sprite 0 on top. After every NMI the main loop polls $2002 for the sprite 0 hit,
+    // then changes the scroll, the left-column clipping and finally the VRAM address at points that move
+    // from frame to frame, so most writes land in the middle of a visible line.
+    static final int[] PROGRAM = {
+            0x78,             // $8000 SEI
+            0xA2, 0xFF,       // $8001 LDX #$FF
+            0x9A,             // $8003 TXS
+            0xA9, 0x3F,       // $8004 LDA #$3F
+            0x8D, 0x06, 0x20, // $8006 STA $2006
+            0xA9, 0x00,       // $8009 LDA #$00
+            0x8D, 0x06, 0x20, // $800B STA $2006
+            0xA9, 0x0F,       // $800E LDA #$0F
+            0x8D, 0x07, 0x20, // $8010 STA $2007   backdrop
+            0xA9, 0x21,       // $8013 LDA #$21
+            0x8D, 0x07, 0x20, // $8015 STA $2007   color 1
+            0xA9, 0x00,       // $8018 LDA #$00
+            0x8D, 0x06, 0x20, // $801A STA $2006
+            0x8D, 0x06, 0x20, // $801D STA $2006
+            0xA2, 0x08,       // $8020 LDX #$08
+            0xA9, 0xAA,       // $8022 LDA #$AA
+            0x8D, 0x07, 0x20, // $8024 STA $2007   tile 0, low plane
+            0xCA,             // $8027 DEX
+            0xD0, 0xFA,       // $8028 BNE $8024
+            0xA9, 0x80,       // $802A LDA #$80
+            0x8D, 0x00, 0x20, // $802C STA $2000   NMI on
+            0xA9, 0x1E,       // $802F LDA #$1E
+            0x8D, 0x01, 0x20, // $8031 STA $2001   background and sprites on
+            0xA5, 0x10,       // $8034 LDA $10
+            0xF0, 0xFC,       // $8036 BEQ $8034
+            0xA9, 0x00,       // $8038 LDA #$00
+            0x85, 0x10,       // $803A STA $10
+            0xE6, 0x11,       // $803C INC $11
+            0x2C, 0x02, 0x20, // $803E BIT $2002
+            0x50, 0xFB,       // $8041 BVC $803E   wait for sprite 0 hit
+            0xA6, 0x11,       // $8043 LDX $11
+            0xCA,             // $8045 DEX
+            0xD0, 0xFD,       // $8046 BNE $8045
+            0xA5, 0x11,       // $8048 LDA $11
+            0x8D, 0x05, 0x20, // $804A STA $2005
+            0x8D, 0x05, 0x20, // $804D STA $2005
+            0x29, 0x06,       // $8050 AND #$06
+            0x09, 0x18,       // $8052 ORA #$18
+            0x8D, 0x01, 0x20, // $8054 STA $2001   left-column clipping
+            0xA6, 0x11,       // $8057 LDX $11
+            0xCA,             // $8059 DEX
+            0xD0, 0xFD,       // $805A BNE $8059
+            0xA9, 0x00,       // $805C LDA #$00
+            0x8D, 0x06, 0x20, // $805E STA $2006
+            0x8D, 0x06, 0x20, // $8061 STA $2006
+            0x4C, 0x34, 0x80, // $8064 JMP $8034
+            0xE6, 0x10,       // $8067 INC $10     NMI handler
+            0xA9, 0x00,       // $8069 LDA #$00
+            0x8D, 0x05, 0x20, // $806B STA $2005
+            0x8D, 0x05, 0x20, // $806E STA $2005
+            0xA9, 0x1E,       // $8071 LDA #$1E
+            0x8D, 0x01, 0x20, // $8073 STA $2001
+            0x40              // $8076 RTI
+    };
+    static final int NMI_HANDLER = 0x8067;
+
+    @Test
+    public void scanlineRenderingMatchesDotRendering() {
+        TestConsole scanline = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.CYCLE, false);
+        TestConsole dots = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.CYCLE, false);
+        dots.ppu.setScanlineRendering(false);
+
+        for (int frame = 1; frame <= 20; frame++) {
+            scanline.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+            dots.runCyclesUntil((long) frame * CYCLES_PER_FRAME);
+
+            assertEquals(dots.cpu.read(0x11), scanline.cpu.read(0x11), "frame counter in frame " + frame);
+            assertArrayEquals(dots.frame(), scanline.frame(), "frame " + frame);
+        }
+        assertTrue(dots.cpu.read(0x11) >= 15, "the main loop should have seen sprite 0 hit every frame");
+        assertTrue(Arrays.stream(dots.frame()).distinct().count() > 1, "the frame should show the background");
+    }
+
+    @Test
+    public void scanlineRenderingMatchesDotRenderingInBatches() {
+        TestConsole scanline = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.INSTRUCTION, true);
+        TestConsole dots = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.INSTRUCTION, true);
+        dots.ppu.setScanlineRendering(false);
+
+        for (int frame = 1; frame <= 20; frame++) {
+            scanline.runBatchesUntil((long) frame * CYCLES_PER_FRAME);
+            dots.runBatchesUntil(scanline.cycles);
+
+            assertEquals(dots.cycles, scanline.cycles);
+            assertArrayEquals(dots.frame(), scanline.frame(), "frame " + frame);
+        }
+    }
+
+    @Test
+    public void chrBankSwitchMidLineKeepsTheDotsBeforeIt() {
+        int[] scanlineFrame = renderWithBankSwitch(true);
+        int[] dotFrame = renderWithBankSwitch(false);
+        assertArrayEquals(dotFrame, scanlineFrame);
+
+        // Line 100 shows the first bank up to the switch and the second one after it
+        int row = 100 * 256;
+        assertNotEquals(scanlineFrame[row + 1], scanlineFrame[row + 200]);
+    }
+
+    @Test
+    public void leftColumnClippingHidesTheFirstEightPixels() {
+        for (boolean scanlineRendering : new boolean[]{true, false}) {
+            int[] frame = renderSolidTiles(scanlineRendering, 0x18); // Background and sprites, both clipped
+            int row = 20 * 256;
+            assertEquals(BACKDROP, frame[row]);
+            assertEquals(BACKDROP, frame[row + 7]);
+            assertEquals(COLOR_1, frame[row + 8]);
+            assertEquals(COLOR_1, frame[row + 16], "only the left column is clipped");
+            // The sprite at x = 4 shows from x = 8 on
+            int spriteRow = 40 * 256;
+            assertEquals(BACKDROP, frame[spriteRow + 7]);
+            assertEquals(SPRITE_COLOR, frame[spriteRow + 8]);
+            assertEquals(SPRITE_COLOR, frame[spriteRow + 11]);
+            assertEquals(COLOR_1, frame[spriteRow + 12]);
+        }
+    }
+
+    // As getRGB() returns them, with an opaque alpha channel
+    private static final int BACKDROP = 0xFF000000;
+    private static final int COLOR_1 = 0xFF3CBCFC;
+    private static final int SPRITE_COLOR = 0xFFF83800;
+
+    // Every background tile is solid color 1; one sprite of solid color 1 in palette 4 sits at (4, 40).
+    private static int[] renderSolidTiles(boolean scanlineRendering, int ppuMask) {
+        byte[] chrRom = new byte[8 * 1024];
+        Arrays.fill(chrRom, 0x0000, 0x0008, (byte) 0xFF);
+        Cartridge cartridge = new Cartridge(new byte[2 * 16384], chrRom, new NROMMapper(2 * 16384),
+                false, MirroringMode.HORIZONTAL);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        ppu.setScanlineRendering(scanlineRendering);
+        ppu.write(0x2006, 0x3F);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2007, 0x0F);
+        ppu.write(0x2007, 0x21);
+        ppu.write(0x2006, 0x3F);
+        ppu.write(0x2006, 0x11);
+        ppu.write(0x2007, 0x16);
+        ppu.write(0x2003, 0x00);
+        ppu.write(0x2004, 39); // Y is one less than the first line
+        ppu.write(0x2004, 0x00);
+        ppu.write(0x2004, 0x00);
+        ppu.write(0x2004, 4);
+        for (int i = 4; i < 256; i++) {
+            ppu.write(0x2004, 0xFF);
+        }
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2001, ppuMask);
+        for (int i = 0; i < 2 * 262 * DOTS_PER_LINE; i++) {
+            ppu.runCycle();
+        }
+        return ppu.getFrameBuffer().getRGB(0, 0, 256, 240, null, 0, 256);
+    }
+
+    // Background tile 0 is solid color 1 in CHR bank 0 and color 2 in CHR bank 1. The bank at $0000 switches
+    // in the middle of line 100.
+    private static int[] renderWithBankSwitch(boolean scanlineRendering) {
+        byte[] chrRom = new byte[8 * 1024];
+        Arrays.fill(chrRom, 0x0000, 0x0008, (byte) 0xFF);
+        Arrays.fill(chrRom, 0x0808, 0x0810, (byte) 0xFF);
+        Cartridge cartridge = new Cartridge(new byte[4 * 8192], chrRom, new MMC3Mapper(4 * 8192, chrRom.length),
+                false, MirroringMode.HORIZONTAL);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        ppu.setScanlineRendering(scanlineRendering);
+        ppu.write(0x2006, 0x3F);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2007, 0x0F);
+        ppu.write(0x2007, 0x21);
+        ppu.write(0x2007, 0x16);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2001, 0x0A);
+
+        // Start of line 100 in the second frame, then 120 dots into it
+        int dots = 262 * DOTS_PER_LINE + 100 * DOTS_PER_LINE + 121;
+        for (int i = 0; i < dots; i++) {
+            ppu.runCycle();
+        }
+        cartridge.cpuWrite(0x8000, 0);
+        cartridge.cpuWrite(0x8001, 2); // 2KB bank 1 at $0000
+        // Through the rest of the visible lines
+        for (int i = 0; i < 140 * DOTS_PER_LINE; i++) {
+            ppu.runCycle();
+        }
+        return ppu.getFrameBuffer().getRGB(0, 0, 256, 240, null, 0, 256);
+    }
+}
@@ -0,0 +1,99 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.NROMMapper;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PPUSpriteEvaluationTest {
+
+    private static final int DOTS_PER_LINE = 341;
+    private static final int DOTS_PER_FRAME = 262 * DOTS_PER_LINE;
+    private static final int SPRITE_COLOR = 0xFFF83800; // As getRGB() returns it
+    private static final int SPRITE_Y = 49;
+    private static final int SPRITE_LINE = 52;          // Well inside the eight lines the sprites cover
+
+    // Tile 0 is solid color 1, the background is off and sprite palette 4 shows color 1 as $16.
+    private static PPUImpl createPpu() {
+        byte[] chrRom = new byte[8 * 1024];
+        Arrays.fill(chrRom, 0x0000, 0x0008, (byte) 0xFF);
+        Cartridge cartridge = new Cartridge(new byte[2 * 16384], chrRom, new NROMMapper(2 * 16384),
+                false, MirroringMode.HORIZONTAL);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        ppu.write(0x2006, 0x3F);
+        ppu.write(0x2006, 0x11);
+        ppu.write(0x2007, 0x16);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2006, 0x00);
+        return ppu;
+    }
+
+    // Sprite n at x = 16 * n and y = SPRITE_Y for every n in sprites, every other sprite off screen
+    private static void writeOam(PPUImpl ppu, int... sprites) {
+        int[] oam = new int[256];
+        Arrays.fill(oam, 0xFF);
+        for (int n : sprites) {
+            oam[n * 4] = SPRITE_Y;
+            oam[n * 4 + 1] = 0;
+            oam[n * 4 + 2] = 0;
+            oam[n * 4 + 3] = (n * 16) & 0xFF;
+        }
+        ppu.write(0x2003, 0);
+        for (int value : oam) {
+            ppu.write(0x2004, value);
+        }
+    }
+
+    private static void runDots(PPUImpl ppu, int dots) {
+        for (int i = 0; i < dots; i++) {
+            ppu.runCycle();
+        }
+    }
+
+    private static int pixel(PPUImpl ppu, int x, int y) {
+        return ppu.getFrameBuffer().getRGB(x, y);
+    }
+
+    @Test
+    void onlyTheFirstEightSpritesOnALineAreDrawn() {
+        PPUImpl ppu = createPpu();
+        writeOam(ppu, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        ppu.write(0x2001, 0x14);
+        runDots(ppu, 2 * DOTS_PER_FRAME);
+
+        assertEquals(SPRITE_COLOR, pixel(ppu, 16, SPRITE_LINE));
+        assertEquals(SPRITE_COLOR, pixel(ppu, 8 * 16, SPRITE_LINE));
+        assertNotEquals(SPRITE_COLOR, pixel(ppu, 9 * 16, SPRITE_LINE), "the ninth sprite is dropped");
+    }
+
+    @Test
+    void overflowIsFlaggedWhenTheEighthSpriteInRangeIsTheLastInOam() {
+        PPUImpl ppu = createPpu();
+        writeOam(ppu, 1, 2, 3, 4, 5, 6, 7, 63);
+        ppu.write(0x2001, 0x14);
+        // Just past the first evaluation that finds the sprites, before the next line clears the flags again
+        runDots(ppu, DOTS_PER_FRAME + SPRITE_Y * DOTS_PER_LINE + 258);
+        assertEquals(0x20, ppu.read(0x2002) & 0x20);
+
+        writeOam(ppu, 1, 2, 3, 4, 5, 6, 7, 8, 63);
+        runDots(ppu, DOTS_PER_FRAME);
+        assertEquals(0, ppu.read(0x2002) & 0x20);
+    }
+
+    @Test
+    void oamWritesBetweenFramesMoveSprites() {
+        PPUImpl ppu = createPpu();
+        writeOam(ppu, 1);
+        ppu.write(0x2001, 0x14);
+        runDots(ppu, 2 * DOTS_PER_FRAME);
+        assertEquals(SPRITE_COLOR, pixel(ppu, 16, SPRITE_LINE));
+
+        writeOam(ppu, 2);
+        runDots(ppu, DOTS_PER_FRAME);
+        assertNotEquals(SPRITE_COLOR, pixel(ppu, 16, SPRITE_LINE));
+        assertEquals(SPRITE_COLOR, pixel(ppu, 32, SPRITE_LINE));
+    }
+}
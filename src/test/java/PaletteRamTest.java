@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Test;
+import ppu.PaletteRam;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteRamTest {
+
+    @Test
+    void spriteBackdropEntriesMirrorBackgroundOnes() {
+        PaletteRam paletteRam = new PaletteRam();
+        paletteRam.write(0x14, 0x21);
+        assertEquals(0x21, paletteRam.read(0x04));
+        assertEquals(0x3CBCFC, paletteRam.getColors()[0x04]);
+        assertEquals(0x3CBCFC, paletteRam.getColors()[0x14]);
+
+        paletteRam.write(0x15, 0x16);
+        assertEquals(0, paletteRam.read(0x05), "only entries 0 of each palette are shared");
+    }
+
+    @Test
+    void colorTableFollowsWrites() {
+        PaletteRam paletteRam = new PaletteRam();
+        int[] colors = paletteRam.getColors();
+        paletteRam.write(0x01, 0x30);
+        assertEquals(0xFCFCFC, colors[0x01]);
+        paletteRam.write(0x01, 0x0F);
+        assertEquals(0x000000, colors[0x01]);
+    }
+
+    @Test
+    void maskSelectsGrayscaleAndEmphasisTables() {
+        PaletteRam paletteRam = new PaletteRam();
+        paletteRam.write(0x01, 0x21);
+
+        paletteRam.setMask(0x01);
+        assertEquals(0xF8F8F8, paletteRam.getColors()[0x01]); // $21 with the hue dropped is $20
+
+        paletteRam.setMask(0x20); // Emphasize red: green and blue dim
+        int emphasized = paletteRam.getColors()[0x01];
+        assertEquals(0x3C, emphasized >> 16);
+        assertTrue((emphasized & 0xFF) < 0xFC);
+
+        paletteRam.setMask(0x00);
+        assertEquals(0x3CBCFC, paletteRam.getColors()[0x01]);
+    }
+}
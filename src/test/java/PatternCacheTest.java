@@ -0,0 +1,77 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.CNROMMapper;
+import mapper.MMC1Mapper;
+import mapper.PpuMappingListener;
+import org.junit.jupiter.api.Test;
+import ppu.PatternCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternCacheTest {
+
+    public static final int SIXTEEN_KB = 16384;
+    public static final int EIGHT_KB = 8192;
+
+    // Wired to the cartridge the way the PPU does it
+    private static PatternCache connect(Cartridge cartridge) {
+        PatternCache cache = new PatternCache(cartridge);
+        cartridge.addPpuMappingListener(new PpuMappingListener() {
+            @Override
+            public void chrBanksChanged(int ppuAddress, int length) {
+                cache.invalidate(ppuAddress, length);
+            }
+
+            @Override
+            public void chrWritten(int ppuAddress) {
+                cache.invalidateWrite(ppuAddress);
+            }
+        });
+        return cache;
+    }
+
+    @Test
+    void rowsPackBothPlanesLeftmostPixelFirst() {
+        byte[] chrRom = new byte[EIGHT_KB];
+        chrRom[0x0013] = (byte) 0b1100_0001; // Tile 1, row 3, low plane
+        chrRom[0x001B] = (byte) 0b1010_0000; // Tile 1, row 3, high plane
+        Cartridge cartridge = new Cartridge(new byte[SIXTEEN_KB], chrRom, new CNROMMapper(SIXTEEN_KB, EIGHT_KB),
+                false, MirroringMode.HORIZONTAL);
+        PatternCache cache = connect(cartridge);
+
+        // Pixels 3, 1, 2, 0, 0, 0, 0, 1
+        assertEquals(0b11_01_10_00_00_00_00_01, cache.row(0x0013));
+        assertEquals(cache.row(0x0013), cache.row(0x001B), "the plane bit of the address is ignored");
+        assertEquals(0b01_00_00_00_00_10_01_11, cache.flippedRow(0x0013));
+    }
+
+    @Test
+    void chrBankSwitchDropsTheSwitchedTiles() {
+        byte[] chrRom = new byte[2 * EIGHT_KB];
+        chrRom[EIGHT_KB] = (byte) 0xFF;
+        Cartridge cartridge = new Cartridge(new byte[SIXTEEN_KB], chrRom, new CNROMMapper(SIXTEEN_KB, chrRom.length),
+                false, MirroringMode.HORIZONTAL);
+        PatternCache cache = connect(cartridge);
+
+        assertEquals(0, cache.row(0x0000));
+        cartridge.cpuWrite(0x8000, 1);
+        assertEquals(PatternCache.LOW_PLANE, cache.row(0x0000));
+    }
+
+    @Test
+    void chrRamWriteDropsTheTileInEveryWindowShowingIt() {
+        Cartridge cartridge = new Cartridge(new byte[2 * SIXTEEN_KB], new byte[0], new MMC1Mapper(2 * SIXTEEN_KB, 0),
+                false, MirroringMode.HORIZONTAL);
+        PatternCache cache = connect(cartridge);
+        // 4KB CHR mode with both halves showing the first 4KB of CHR RAM
+        for (int i = 0; i < 5; i++) {
+            cartridge.cpuWrite(0x8000, (0x10 >> i) & 1);
+        }
+
+        assertEquals(0, cache.row(0x0020));
+        assertEquals(0, cache.row(0x1020));
+        cartridge.ppuWrite(0x0028, 0xFF);
+        assertEquals(PatternCache.HIGH_PLANE, cache.row(0x0020));
+        assertEquals(PatternCache.HIGH_PLANE, cache.row(0x1020));
+    }
+}
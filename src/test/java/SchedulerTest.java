@@ -0,0 +1,48 @@
+import core.ExecutionMode;
+import core.Scheduler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulerTest {
+
+    private static final int[] PROGRAM = PPUScanlineRenderingTest.PROGRAM;
+    private static final int NMI_HANDLER = PPUScanlineRenderingTest.NMI_HANDLER;
+
+    @Test
+    public void scheduledFramesMatchBatchedLockstep() {
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.CYCLE, ExecutionMode.INSTRUCTION}) {
+            TestConsole scheduled = new TestConsole(PROGRAM, NMI_HANDLER, mode, true);
+            TestConsole lockstep = new TestConsole(PROGRAM, NMI_HANDLER, mode, true);
+
+            for (int frame = 1; frame <= 20; frame++) {
+                scheduled.runFrames(1);
+                lockstep.runBatchesUntil(scheduled.cycles);
+                assertEquals(scheduled.cycles, lockstep.cycles);
+
+                assertEquals(lockstep.cpu.read(0x11), scheduled.cpu.read(0x11), mode + " frame counter in frame " + frame);
+                assertArrayEquals(lockstep.frame(), scheduled.frame(), mode + " frame " + frame);
+            }
+            assertTrue(lockstep.cpu.read(0x11) >= 15, "the NMI handler should have run every frame");
+        }
+    }
+
+    @Test
+    public void framesFollowTheMasterClock() {
+        TestConsole console = new TestConsole(PROGRAM, NMI_HANDLER, ExecutionMode.INSTRUCTION, true);
+        Scheduler scheduler = console.scheduler;
+
+        for (int frame = 1; frame <= 60; frame++) {
+            scheduler.runFrame();
+            assertEquals(frame, scheduler.getFrameCount());
+            long frameEnd = frame * Scheduler.MASTER_CYCLES_PER_FRAME;
+            assertTrue(scheduler.getMasterCycle() >= frameEnd, "frame " + frame + " ended early");
+            // Instructions take at most 7 cycles; an NMI sequence may follow the last one
+            assertTrue(scheduler.getMasterCycle() < frameEnd + 14 * Scheduler.MASTER_CYCLES_PER_CPU_CYCLE,
+                    "frame " + frame + " overran");
+            assertEquals(frameEnd + Scheduler.MASTER_CYCLES_PER_FRAME, scheduler.getDue(Scheduler.Event.FRAME_END));
+        }
+        // 60 frames of 29780.5 CPU cycles, give or take the last instruction
+        assertEquals(60 * 29780.5, scheduler.getMasterCycle() / 12.0, 14);
+    }
+}
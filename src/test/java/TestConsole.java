@@ -0,0 +1,123 @@
+import core.*;
+import mapper.NROMMapper;
+import ppu.PPUImpl;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * CPU and PPU on an NROM cartridge, without APU or UI, stepped the way the main loop does it.
+ */
+public class TestConsole {
+    final CPU cpu;
+    final PPUImpl ppu;
+    final Scheduler scheduler;
+    long cycles;
+    int steps;
+    int catchUps; // By runLazyBatchesUntil() itself, not counting the CPU bus
+
+    /**
+     * @param program    Code loaded at $8000, which is also the reset vector.
+     * @param nmiHandler Address of the NMI handler.
+     */
+    TestConsole(int[] program, int nmiHandler, ExecutionMode mode, boolean idleLoopSkipping) {
+        byte[] prgRom = new byte[0x8000];
+        for (int i = 0; i < program.length; i++) {
+            prgRom[i] = (byte) program[i];
+        }
+        prgRom[0x7FFA] = (byte) nmiHandler;
+        prgRom[0x7FFB] = (byte) (nmiHandler >> 8);
+        prgRom[0x7FFC] = 0x00;
+        prgRom[0x7FFD] = (byte) 0x80;
+        Cartridge cartridge = new Cartridge(prgRom, new byte[0], new NROMMapper(prgRom.length), false, MirroringMode.HORIZONTAL);
+        ppu = new PPUImpl(cartridge);
+        CPUBus bus = new CPUBus(new WRAMImpl(), cartridge, ppu, null);
+        cpu = new CPU(bus, mode);
+        cpu.setIdleLoopSkipping(idleLoopSkipping);
+        bus.setCpu(cpu);
+        ppu.setCpu(cpu);
+        ppu.setCpuBus(bus);
+        cpu.fetchProgramCounter();
+        scheduler = new Scheduler(cpu, ppu);
+    }
+
+    void runInstructionsUntil(long target) {
+        while (cycles < target) {
+            int instructionCycles = cpu.runInstruction();
+            runPpu(instructionCycles);
+            cycles += instructionCycles;
+            steps++;
+        }
+    }
+
+    void runCyclesUntil(long target) {
+        while (cycles < target) {
+            cpu.runCycle();
+            runPpu(1);
+            cycles++;
+        }
+    }
+
+    // Steps like EmulatorUI: CPU batches that never reach past the next NMI.
+    void runBatchesUntil(long target) {
+        while (cycles < target) {
+            int budget = (int) Math.min(target - cycles, ppu.dotsUntilNextEvent(false) / 3);
+            int batchCycles = cpu.runCycles(Math.max(budget, 1));
+            runPpu(batchCycles);
+            cycles += batchCycles;
+            steps++;
+        }
+    }
+
+    // Steps like EmulatorUI with the PPU left behind between batches until it is needed.
+    void runLazyBatchesUntil(long target) {
+        while (cycles < target) {
+            int budget = (int) Math.min(target - cycles, ppu.dotsUntilNextEvent(false) / 3);
+            int batchCycles = cpu.runCycles(Math.max(budget, 1));
+            ppu.addDots(batchCycles * 3);
+            if (ppu.dotsUntilNextEvent(false) == 0) {
+                ppu.catchUp();
+                catchUps++;
+            }
+            cycles += batchCycles;
+            steps++;
+        }
+    }
+
+    // Steps like EmulatorUI does now: whole frames of master clock time through the scheduler.
+    void runFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            scheduler.runFrame();
+        }
+        cycles = scheduler.getMasterCycle() / Scheduler.MASTER_CYCLES_PER_CPU_CYCLE;
+    }
+
+    private void runPpu(int cpuCycles) {
+        for (int i = 0; i < cpuCycles * 3; i++) {
+            ppu.runCycle();
+        }
+    }
+
+    int[] frame() {
+        BufferedImage image = ppu.getFrameBuffer();
+        return image.getRGB(0, 0, 256, 240, null, 0, 256);
+    }
+
+    static void assertSameRam(TestConsole expected, TestConsole actual) {
+        for (int address = 0; address < 0x800; address++) {
+            assertEquals(expected.cpu.read(address), actual.cpu.read(address), "memory at " + address);
+        }
+    }
+
+    /**
+     * Runs whole instructions on a CPU of any setup and returns the cycles they took.
+     */
+    static int runInstructions(CPU cpu, int count) {
+        int cycles = 0;
+        for (int i = 0; i < count; i++) {
+            cycles += cpu.runInstruction();
+        }
+        return cycles;
+    }
+}
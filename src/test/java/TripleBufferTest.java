@@ -0,0 +1,90 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.NROMMapper;
+import org.junit.jupiter.api.Test;
+import ppu.PPUImpl;
+import ppu.TripleBuffer;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripleBufferTest {
+
+    private static final int DOTS_PER_FRAME = 262 * 341;
+
+    @Test
+    void consumerGetsTheLatestPublishedBuffer() {
+        TripleBuffer<int[]> frames = new TripleBuffer<>(new int[1], new int[1], new int[1]);
+        int[] initial = frames.latest();
+        assertNotSame(frames.back(), initial);
+
+        int[] first = frames.back();
+        frames.publish();
+        assertSame(first, frames.latest());
+        assertSame(first, frames.latest(), "nothing new was published");
+
+        frames.publish();
+        int[] third = frames.back();
+        int[] drawing = frames.publish();
+        assertSame(third, frames.latest(), "only the newest of the frames published since is shown");
+        assertNotSame(drawing, frames.latest(), "the consumer never gets the buffer being drawn");
+    }
+
+    @Test
+    void frameNumbersOnlyMoveForwardAcrossThreads() throws InterruptedException {
+        TripleBuffer<int[]> frames = new TripleBuffer<>(new int[2], new int[2], new int[2]);
+        int count = 100_000;
+        String failure = null;
+        Thread producer = new Thread(() -> {
+            int[] back = frames.back();
+            for (int frame = 1; frame <= count; frame++) {
+                back[0] = frame;
+                back[1] = -frame; // A torn frame would show a mismatch
+                back = frames.publish();
+            }
+        });
+        producer.start();
+        int last = 0;
+        while (last < count) {
+            int[] frame = frames.latest();
+            if (frame[1] != -frame[0]) {
+                failure = "torn frame " + frame[0];
+                break;
+            }
+            if (frame[0] < last) {
+                failure = "frame " + frame[0] + " after " + last;
+                break;
+            }
+            last = frame[0];
+        }
+        producer.join();
+        assertNull(failure);
+    }
+
+    @Test
+    void completedFrameStaysPutWhileTheNextIsDrawn() {
+        Cartridge cartridge = new Cartridge(new byte[2 * 16384], new byte[8 * 1024], new NROMMapper(2 * 16384),
+                false, MirroringMode.HORIZONTAL);
+        PPUImpl ppu = new PPUImpl(cartridge);
+        ppu.write(0x2006, 0x3F);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2007, 0x21); // Backdrop
+        for (int i = 0; i < DOTS_PER_FRAME; i++) {
+            ppu.runCycle();
+        }
+        BufferedImage completed = ppu.getCompletedFrame();
+        assertNotSame(ppu.getFrameBuffer(), completed);
+        assertEquals(0xFF3CBCFC, completed.getRGB(0, 239));
+
+        ppu.write(0x2006, 0x3F);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2007, 0x0F);
+        for (int i = 0; i < 100 * 341; i++) {
+            ppu.runCycle();
+        }
+        assertEquals(0xFF000000, ppu.getFrameBuffer().getRGB(0, 50), "the frame being drawn changes");
+        assertSame(completed, ppu.getCompletedFrame());
+        assertEquals(0xFF3CBCFC, completed.getRGB(0, 50), "the completed one doesn't");
+    }
+}
@@ -0,0 +1,47 @@
+import core.Cartridge;
+import core.MirroringMode;
+import mapper.UxROMMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UxROMMapperTest {
+
+    public static final int SIXTEEN_KB = 16384;
+
+    // Every 16KB PRG bank starts with its own number; CHR is RAM
+    private static Cartridge createCartridge(int prgBanks) {
+        byte[] prgRom = new byte[prgBanks * SIXTEEN_KB];
+        for (int bank = 0; bank < prgBanks; bank++) {
+            prgRom[bank * SIXTEEN_KB] = (byte) bank;
+        }
+        return new Cartridge(prgRom, new byte[0], new UxROMMapper(prgRom.length, 0), false, MirroringMode.VERTICAL);
+    }
+
+    @Test
+    void writeSelectsBankAt8000AndLastBankStaysFixed() {
+        Cartridge cartridge = createCartridge(8);
+        assertEquals(0, cartridge.cpuRead(0x8000));
+        assertEquals(7, cartridge.cpuRead(0xC000));
+
+        cartridge.cpuWrite(0xFFFF, 5);
+        assertEquals(5, cartridge.cpuRead(0x8000));
+        assertEquals(7, cartridge.cpuRead(0xC000));
+        assertEquals(5 * SIXTEEN_KB + 0x123, cartridge.getPrgRomOffset(0x8123));
+    }
+
+    @Test
+    void bankNumberWrapsAroundRomSize() {
+        Cartridge cartridge = createCartridge(8);
+        cartridge.cpuWrite(0x8000, 9);
+        assertEquals(1, cartridge.cpuRead(0x8000));
+    }
+
+    @Test
+    void chrRamIsWritableAndMirroringComesFromHeader() {
+        Cartridge cartridge = createCartridge(2);
+        cartridge.ppuWrite(0x1FFF, 0x42);
+        assertEquals(0x42, cartridge.ppuRead(0x1FFF));
+        assertEquals(MirroringMode.VERTICAL, cartridge.getMirroringMode());
+    }
+}